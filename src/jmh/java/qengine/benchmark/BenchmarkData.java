@@ -0,0 +1,88 @@
+package qengine.benchmark;
+
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.factory.api.TermFactory;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import qengine.model.RDFTriple;
+import qengine.model.StarQuery;
+import qengine.parser.RDFTriplesParser;
+import qengine.parser.StarQuerySparQLParser;
+import qengine.program.CompareWithInteGraal;
+import qengine.storage.RDFStorage;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Données partagées par les bancs d'essai : graphes synthétiques reproductibles, lecture des fichiers
+ * WatDiv (N-Triples + requêtes) et construction des stores.
+ */
+final class BenchmarkData {
+
+    private static final TermFactory FACTORY = SameObjectTermFactory.instance();
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Graphe synthétique de {@code triples} triplets (doublons compris), à la manière de WatDiv :
+     * environ 5 triplets par sujet, 20 prédicats de fréquences très inégales, et des objets qui sont
+     * pour moitié d'autres sujets, pour moitié des littéraux.
+     */
+    static List<RDFTriple> synthetic(int triples, long seed) {
+        Random random = new Random(seed);
+        int subjects = Math.max(1, triples / 5);
+        Term[] predicates = new Term[20];
+        for (int i = 0; i < predicates.length; i++) {
+            predicates[i] = FACTORY.createOrGetLiteral("http://example.org/p" + i);
+        }
+
+        List<RDFTriple> data = new ArrayList<>(triples);
+        for (int i = 0; i < triples; i++) {
+            Term s = FACTORY.createOrGetLiteral("http://example.org/s" + random.nextInt(subjects));
+            // p0 très fréquent, p19 rare
+            Term p = predicates[(int) (Math.pow(random.nextDouble(), 2) * predicates.length)];
+            Term o = random.nextBoolean()
+                    ? FACTORY.createOrGetLiteral("http://example.org/s" + random.nextInt(subjects))
+                    : FACTORY.createOrGetLiteral("valeur" + random.nextInt(Math.max(1, triples / 10)));
+            data.add(new RDFTriple(s, p, o));
+        }
+        return data;
+    }
+
+    static List<RDFTriple> parseNTriples(String path) throws IOException {
+        List<RDFTriple> data = new ArrayList<>();
+        try (RDFTriplesParser parser = new RDFTriplesParser(new FileReader(path), RDFFormat.NTRIPLES)) {
+            while (parser.hasNext()) {
+                data.add(parser.next());
+            }
+        }
+        return data;
+    }
+
+    static List<StarQuery> parseQueries(String path) throws IOException {
+        List<StarQuery> queries = new ArrayList<>();
+        try (StarQuerySparQLParser parser = new StarQuerySparQLParser(path)) {
+            while (parser.hasNext()) {
+                queries.add((StarQuery) parser.next());
+            }
+        }
+        return queries;
+    }
+
+    /**
+     * Store rempli avec les données puis figé ({@link RDFStorage#freeze()}), comme après un chargement complet.
+     */
+    static RDFStorage load(String store, List<RDFTriple> data) {
+        RDFStorage storage = CompareWithInteGraal.createStore(store);
+        for (RDFTriple t : data) {
+            storage.add(t);
+        }
+        storage.freeze();
+        return storage;
+    }
+}
@@ -0,0 +1,77 @@
+package qengine.benchmark;
+
+import fr.boreal.model.logicalElements.api.Term;
+import org.openjdk.jmh.annotations.*;
+import qengine.model.RDFTriple;
+import qengine.storage.Dictionary;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodage et décodage du dictionnaire, à plusieurs tailles de vocabulaire.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DictionaryBench {
+
+    @Param({"10000", "100000", "1000000"})
+    public int triples;
+
+    private Term[] terms;
+    private Dictionary dictionary;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Set<Term> distinct = new LinkedHashSet<>();
+        for (RDFTriple t : BenchmarkData.synthetic(triples, 42)) {
+            distinct.add(t.getTripleSubject());
+            distinct.add(t.getTriplePredicate());
+            distinct.add(t.getTripleObject());
+        }
+        terms = distinct.toArray(new Term[0]);
+        dictionary = new Dictionary();
+        for (Term term : terms) {
+            dictionary.encode(term);
+        }
+    }
+
+    private int nextIndex() {
+        if (++next == terms.length) next = 0;
+        return next;
+    }
+
+    /** Terme déjà connu : le cas de toutes les constantes des requêtes. */
+    @Benchmark
+    public int encodeExisting() {
+        return dictionary.encode(terms[nextIndex()]);
+    }
+
+    @Benchmark
+    public int encodeIfExists() {
+        return dictionary.encodeIfExists(terms[nextIndex()]);
+    }
+
+    @Benchmark
+    public Term decode() {
+        return dictionary.decode(nextIndex() + 1);
+    }
+
+    /** Construction complète du dictionnaire (un appel = tout le vocabulaire). */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Dictionary build() {
+        Dictionary fresh = new Dictionary();
+        for (Term term : terms) {
+            fresh.encode(term);
+        }
+        return fresh;
+    }
+}
@@ -0,0 +1,82 @@
+package qengine.benchmark;
+
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.factory.api.TermFactory;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import qengine.model.RDFTriple;
+import qengine.storage.RDFStorage;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code match(RDFTriple)} pour chaque forme de patron : "s", "p", "o" pour une position liée,
+ * "?" pour une variable. Les constantes sont tirées de triplets existants, les patrons ont donc
+ * au moins une réponse. Toutes les réponses sont consommées.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class MatchBench {
+
+    private static final int PATTERNS = 256;
+
+    @Param({"hexastore", "cs", "giant"})
+    public String store;
+
+    @Param({"10000", "100000", "1000000"})
+    public int triples;
+
+    @Param({"spo", "sp?", "s?o", "?po", "s??", "?p?", "??o", "???"})
+    public String shape;
+
+    private RDFStorage storage;
+    private RDFTriple[] patterns;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<RDFTriple> data = BenchmarkData.synthetic(triples, 42);
+        storage = BenchmarkData.load(store, data);
+
+        TermFactory factory = SameObjectTermFactory.instance();
+        Term x = factory.createOrGetVariable("?x");
+        Term y = factory.createOrGetVariable("?y");
+        Term z = factory.createOrGetVariable("?z");
+        Random random = new Random(7);
+        patterns = new RDFTriple[PATTERNS];
+        for (int i = 0; i < PATTERNS; i++) {
+            RDFTriple t = data.get(random.nextInt(data.size()));
+            patterns[i] = new RDFTriple(
+                    shape.charAt(0) == '?' ? x : t.getTripleSubject(),
+                    shape.charAt(1) == '?' ? y : t.getTriplePredicate(),
+                    shape.charAt(2) == '?' ? z : t.getTripleObject());
+        }
+    }
+
+    @Benchmark
+    public long match(Blackhole blackhole) {
+        next = (next + 1) % PATTERNS;
+        long count = 0;
+        Iterator<Substitution> it = storage.match(patterns[next]);
+        while (it.hasNext()) {
+            blackhole.consume(it.next());
+            count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public long howMany() {
+        next = (next + 1) % PATTERNS;
+        return storage.howMany(patterns[next]);
+    }
+}
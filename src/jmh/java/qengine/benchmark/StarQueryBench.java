@@ -0,0 +1,61 @@
+package qengine.benchmark;
+
+import fr.boreal.model.logicalElements.api.Substitution;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import qengine.model.StarQuery;
+import qengine.storage.RDFStorage;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Évaluation d'un jeu de requêtes en étoile complet (un appel du banc = toutes les requêtes).
+ * Par défaut l'échantillon du dépôt ; pour WatDiv, on passe les fichiers générés
+ * ({@code watdiv-mini-projet-partie-2}) à plusieurs échelles, par exemple :
+ * <pre>
+ *   java -jar target/benchmarks.jar StarQueryBench -prof gc \
+ *        -p dataFile=watdiv-500k.nt,watdiv-2M.nt -p queryFile=data/STAR_ALL_workload.queryset
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StarQueryBench {
+
+    @Param({"hexastore", "cs", "sharded"})
+    public String store;
+
+    @Param({"data/sample_data.nt"})
+    public String dataFile;
+
+    @Param({"data/sample_query.queryset"})
+    public String queryFile;
+
+    private RDFStorage storage;
+    private List<StarQuery> queries;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        storage = BenchmarkData.load(store, BenchmarkData.parseNTriples(dataFile));
+        queries = BenchmarkData.parseQueries(queryFile);
+    }
+
+    @Benchmark
+    public long workload(Blackhole blackhole) {
+        long answers = 0;
+        for (StarQuery q : queries) {
+            Iterator<Substitution> it = storage.match(q);
+            while (it.hasNext()) {
+                blackhole.consume(it.next());
+                answers++;
+            }
+        }
+        return answers;
+    }
+}
@@ -0,0 +1,44 @@
+package qengine.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import qengine.model.RDFTriple;
+import qengine.program.CompareWithInteGraal;
+import qengine.storage.RDFStorage;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chargement complet d'un store par des appels successifs à {@code add}
+ * (un appel du banc = toutes les données).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StorageAddBench {
+
+    @Param({"hexastore", "cs", "giant"})
+    public String store;
+
+    @Param({"10000", "100000", "1000000"})
+    public int triples;
+
+    private List<RDFTriple> data;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = BenchmarkData.synthetic(triples, 42);
+    }
+
+    @Benchmark
+    public RDFStorage add() {
+        RDFStorage storage = CompareWithInteGraal.createStore(store);
+        for (RDFTriple t : data) {
+            storage.add(t);
+        }
+        return storage;
+    }
+}
@@ -0,0 +1,164 @@
+package qengine.distributed;
+
+import fr.boreal.model.logicalElements.api.Constant;
+import fr.boreal.model.logicalElements.api.Literal;
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.logicalElements.factory.api.TermFactory;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
+import fr.boreal.model.logicalElements.impl.SubstitutionImpl;
+import qengine.model.RDFTriple;
+import qengine.model.StarQuery;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Échanges entre {@link StarQueryCoordinator} et {@link StarQueryWorker}, sur une connexion TCP
+ * ({@code DataOutputStream}, gros-boutiste). Une requête, puis sa réponse, et ainsi de suite :
+ * <pre>
+ *   'S' étiquette n patron*n m variable*m c  requête en étoile (variables réponses, variable centrale)
+ *   'P' patron variable                      valeurs distinctes de la variable pour un patron seul
+ *   'X'                                      arrêt du worker
+ *
+ *   'R' durée n réponse*n                    réponses, et durée de l'évaluation sur le worker (ns)
+ *   'E' message                              erreur pendant l'évaluation
+ * </pre>
+ * Un terme est un genre ('V' variable, 'L' littéral, 'C' constante) suivi de sa valeur ;
+ * une réponse est une liste de couples (variable, terme).
+ */
+final class Protocol {
+
+    static final byte STAR = 'S';
+    static final byte PATTERN = 'P';
+    static final byte STOP = 'X';
+    static final byte ANSWERS = 'R';
+    static final byte ERROR = 'E';
+
+    /** Réponses d'un worker à une requête. */
+    record Reply(long evalNanos, List<Substitution> answers) {
+    }
+
+    private Protocol() {
+    }
+
+    static void writeStar(DataOutputStream out, StarQuery q) throws IOException {
+        out.writeByte(STAR);
+        writeString(out, q.getLabel() == null ? "" : q.getLabel());
+        out.writeInt(q.getRdfAtoms().size());
+        for (RDFTriple t : q.getRdfAtoms()) writeTriple(out, t);
+        out.writeInt(q.getAnswerVariables().size());
+        for (Variable v : q.getAnswerVariables()) writeTerm(out, v);
+        writeTerm(out, q.getCentralVariable());
+    }
+
+    static StarQuery readStar(DataInputStream in) throws IOException {
+        String label = readString(in);
+        List<RDFTriple> atoms = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) atoms.add(readTriple(in));
+        List<Variable> answerVariables = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) answerVariables.add((Variable) readTerm(in));
+        // variable centrale imposée : le worker ne doit pas en choisir une autre (voir StarQuery)
+        return new StarQuery(label, atoms, answerVariables, (Variable) readTerm(in));
+    }
+
+    static void writePattern(DataOutputStream out, RDFTriple pattern, Variable variable) throws IOException {
+        out.writeByte(PATTERN);
+        writeTriple(out, pattern);
+        writeTerm(out, variable);
+    }
+
+    static void writeAnswers(DataOutputStream out, long evalNanos, List<Substitution> answers) throws IOException {
+        out.writeByte(ANSWERS);
+        out.writeLong(evalNanos);
+        out.writeInt(answers.size());
+        for (Substitution s : answers) {
+            Map<Variable, Term> map = s.toMap();
+            out.writeInt(map.size());
+            for (Map.Entry<Variable, Term> e : map.entrySet()) {
+                writeTerm(out, e.getKey());
+                writeTerm(out, e.getValue());
+            }
+        }
+    }
+
+    static void writeError(DataOutputStream out, String message) throws IOException {
+        out.writeByte(ERROR);
+        writeString(out, message);
+    }
+
+    /** Lit une réponse 'R' ; une réponse 'E' devient une IOException. */
+    static Reply readReply(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        if (type == ERROR) throw new IOException(readString(in));
+        if (type != ANSWERS) throw new IOException("Réponse inconnue '" + (char) type + "'");
+        long evalNanos = in.readLong();
+        int n = in.readInt();
+        List<Substitution> answers = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Substitution s = new SubstitutionImpl();
+            for (int k = in.readInt(); k > 0; k--) {
+                Variable v = (Variable) readTerm(in);
+                s.add(v, readTerm(in));
+            }
+            answers.add(s);
+        }
+        return new Reply(evalNanos, answers);
+    }
+
+    static void writeTriple(DataOutputStream out, RDFTriple t) throws IOException {
+        writeTerm(out, t.getTripleSubject());
+        writeTerm(out, t.getTriplePredicate());
+        writeTerm(out, t.getTripleObject());
+    }
+
+    static RDFTriple readTriple(DataInputStream in) throws IOException {
+        return new RDFTriple(readTerm(in), readTerm(in), readTerm(in));
+    }
+
+    static void writeTerm(DataOutputStream out, Term term) throws IOException {
+        if (term instanceof Variable) {
+            out.writeByte('V');
+            writeString(out, term.label());
+        } else if (term instanceof Literal<?> literal && literal.value() instanceof String value) {
+            out.writeByte('L');
+            writeString(out, value);
+        } else if (term instanceof Constant) {
+            out.writeByte('C');
+            writeString(out, term.label());
+        } else {
+            throw new IllegalArgumentException("Terme non pris en charge : " + term);
+        }
+    }
+
+    static Term readTerm(DataInputStream in) throws IOException {
+        byte kind = in.readByte();
+        String value = readString(in);
+        TermFactory factory = SameObjectTermFactory.instance();
+        return switch (kind) {
+            case 'V' -> factory.createOrGetVariable(value);
+            case 'L' -> factory.createOrGetLiteral(value);
+            case 'C' -> factory.createOrGetConstant(value);
+            default -> throw new IOException("Genre de terme inconnu '" + (char) kind + "'");
+        };
+    }
+
+    // writeUTF est limité à 64 Ko : longueur sur 4 octets, puis UTF-8
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,435 @@
+package qengine.distributed;
+
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.logicalElements.impl.SubstitutionImpl;
+import qengine.model.RDFTriple;
+import qengine.model.StarQuery;
+import qengine.parser.StarQuerySparQLParser;
+import qengine.storage.ShardedRDFStorage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinateur du mode distribué : N processus {@link StarQueryWorker} sur la même machine, chacun avec
+ * la tranche du fichier N-Triples de ses sujets ({@link #partition}, même répartition que
+ * {@link ShardedRDFStorage#shardOf}), joints par des sockets sur la boucle locale.
+ * <p>
+ * Chaque requête est envoyée à tous les workers en même temps, puis leurs réponses sont rassemblées :
+ * <ul>
+ *     <li>étoile centrée sur le sujet dans tous ses patrons : chaque worker l'évalue entièrement sur sa tranche,
+ *     les réponses sont disjointes et simplement mises bout à bout ;</li>
+ *     <li>sinon (variable centrale en objet, ...) : chaque patron est diffusé à tous les workers, qui renvoient
+ *     les valeurs de la variable centrale ; le coordinateur fait l'union par patron, puis l'intersection.</li>
+ * </ul>
+ * Pour repérer le déséquilibre entre tranches, {@link #match} donne aussi, par worker, la durée de l'aller-retour
+ * et celle de l'évaluation sur le worker.
+ * <p>
+ * Usage : {@code StarQueryCoordinator <données.nt> <requêtes.queryset>... [--workers N] [--runs N] [--jvm option]... [--out rép]}
+ */
+public final class StarQueryCoordinator implements Closeable {
+
+    private static final String DEFAULT_OUTPUT_DIR = "results/";
+
+    /** Réponses d'une requête, avec les durées par worker (aller-retour, et évaluation sur le worker) en ns. */
+    public record Answer(List<Substitution> substitutions, long[] workerNanos, long[] workerEvalNanos) {
+    }
+
+    /** Écrit une requête sur la connexion d'un worker. */
+    @FunctionalInterface
+    private interface Request {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private final List<Connection> workers = new ArrayList<>();
+    private final List<Process> processes;
+    private final ExecutorService pool;
+
+    // renseignés par launch : triplets et durée de chargement annoncés par chaque worker
+    private long[] workerTriples;
+    private long[] workerLoadMillis;
+
+    /** Se connecte à des workers déjà démarrés. */
+    public StarQueryCoordinator(List<InetSocketAddress> addresses) throws IOException {
+        this(addresses, List.of());
+    }
+
+    private StarQueryCoordinator(List<InetSocketAddress> addresses, List<Process> processes) throws IOException {
+        this.processes = processes;
+        this.pool = Executors.newFixedThreadPool(Math.max(1, addresses.size()), r -> {
+            Thread thread = new Thread(r, "coordinateur");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (InetSocketAddress address : addresses) {
+                workers.add(new Connection(address));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Découpe le fichier en workerCount tranches par sujet, démarre un processus worker par tranche
+     * (même java et même classpath, plus les options jvmOptions, par exemple {@code -Xmx4g}),
+     * attend qu'ils aient tous chargé leur tranche, puis s'y connecte.
+     */
+    public static StarQueryCoordinator launch(Path data, int workerCount, Path workDir, List<String> jvmOptions) throws IOException {
+        List<Path> slices = partition(data, workerCount, workDir);
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+
+        List<Process> processes = new ArrayList<>();
+        try {
+            for (Path slice : slices) {
+                List<String> command = new ArrayList<>();
+                command.add(java);
+                command.addAll(jvmOptions);
+                command.addAll(List.of("-cp", System.getProperty("java.class.path"),
+                        StarQueryWorker.class.getName(), slice.toString(), "0"));
+                processes.add(new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start());
+            }
+
+            // les workers chargent en même temps ; chacun annonce son port une fois prêt
+            List<InetSocketAddress> addresses = new ArrayList<>();
+            long[] triples = new long[workerCount];
+            long[] loadMillis = new long[workerCount];
+            for (int i = 0; i < workerCount; i++) {
+                BufferedReader out = new BufferedReader(new InputStreamReader(processes.get(i).getInputStream(), StandardCharsets.UTF_8));
+                String line = out.readLine();
+                if (line == null || !line.startsWith("READY ")) {
+                    throw new IOException("Le worker " + i + " n'a pas démarré" + (line == null ? "" : " : " + line));
+                }
+                String[] fields = line.split(" ");
+                addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(fields[1])));
+                triples[i] = Long.parseLong(fields[2]);
+                loadMillis[i] = Long.parseLong(fields[3]);
+            }
+
+            StarQueryCoordinator coordinator = new StarQueryCoordinator(addresses, processes);
+            coordinator.workerTriples = triples;
+            coordinator.workerLoadMillis = loadMillis;
+            return coordinator;
+        } catch (IOException | RuntimeException e) {
+            processes.forEach(Process::destroyForcibly);
+            throw e;
+        }
+    }
+
+    /**
+     * Découpe un fichier N-Triples en n tranches {@code part-i.nt} dans dir : chaque ligne va dans la tranche
+     * de son sujet (étiquette de l'IRI sans chevrons, ou du nœud blanc sans {@code _:}, comme {@code NTriplesFastParser}).
+     */
+    public static List<Path> partition(Path data, int n, Path dir) throws IOException {
+        Files.createDirectories(dir);
+        List<Path> slices = new ArrayList<>(n);
+        BufferedWriter[] writers = new BufferedWriter[n];
+        try (BufferedReader in = Files.newBufferedReader(data, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < n; i++) {
+                slices.add(dir.resolve("part-" + i + ".nt"));
+                writers[i] = Files.newBufferedWriter(slices.get(i), StandardCharsets.UTF_8);
+            }
+            String line;
+            while ((line = in.readLine()) != null) {
+                String trimmed = line.strip();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) continue;
+                BufferedWriter out = writers[ShardedRDFStorage.shardOf(subjectLabel(trimmed), n)];
+                out.write(trimmed);
+                out.newLine();
+            }
+        } finally {
+            for (BufferedWriter writer : writers) {
+                if (writer != null) writer.close();
+            }
+        }
+        return slices;
+    }
+
+    private static String subjectLabel(String line) {
+        if (line.startsWith("<")) {
+            int end = line.indexOf('>');
+            if (end > 0) return line.substring(1, end);
+        } else if (line.startsWith("_:")) {
+            int end = 2;
+            while (end < line.length() && !Character.isWhitespace(line.charAt(end))) end++;
+            return line.substring(2, end);
+        }
+        throw new IllegalArgumentException("Sujet illisible : " + line);
+    }
+
+    public int workerCount() {
+        return workers.size();
+    }
+
+    /** Triplets chargés par chaque worker (seulement après {@link #launch}, null sinon). */
+    public long[] workerTriples() {
+        return workerTriples;
+    }
+
+    /** Durée de chargement de chaque worker en ms (seulement après {@link #launch}, null sinon). */
+    public long[] workerLoadMillis() {
+        return workerLoadMillis;
+    }
+
+    /**
+     * Évalue la requête sur tous les workers (voir la description de la classe).
+     * Après une erreur de communication, le coordinateur n'est plus utilisable.
+     */
+    public synchronized Answer match(StarQuery q) throws IOException {
+        long[] nanos = new long[workers.size()];
+        long[] evalNanos = new long[workers.size()];
+        List<Substitution> answers = new ArrayList<>();
+        if (q.getRdfAtoms().isEmpty()) {
+            return new Answer(answers, nanos, evalNanos);
+        }
+
+        if (ShardedRDFStorage.isSubjectStar(q)) {
+            for (Protocol.Reply reply : scatter(out -> Protocol.writeStar(out, q), nanos, evalNanos)) {
+                answers.addAll(reply.answers());
+            }
+            return new Answer(answers, nanos, evalNanos);
+        }
+
+        // diffusion : valeurs de la variable centrale pour chaque patron, union sur les workers puis intersection
+        Variable center = q.getCentralVariable();
+        Set<Term> candidates = null;
+        for (RDFTriple pattern : q.getRdfAtoms()) {
+            Set<Term> values = new HashSet<>();
+            for (Protocol.Reply reply : scatter(out -> Protocol.writePattern(out, pattern, center), nanos, evalNanos)) {
+                for (Substitution s : reply.answers()) values.add(s.toMap().get(center));
+            }
+            if (candidates == null) {
+                candidates = values;
+            } else {
+                candidates.retainAll(values);
+            }
+            if (candidates.isEmpty()) break;
+        }
+        for (Term value : candidates) {
+            Substitution s = new SubstitutionImpl();
+            s.add(center, value);
+            answers.add(s);
+        }
+        return new Answer(answers, nanos, evalNanos);
+    }
+
+    // envoie la requête à tous les workers en parallèle, et ajoute les durées de chacun
+    private Protocol.Reply[] scatter(Request request, long[] nanos, long[] evalNanos) throws IOException {
+        List<Future<Protocol.Reply>> futures = new ArrayList<>(workers.size());
+        for (int i = 0; i < workers.size(); i++) {
+            Connection worker = workers.get(i);
+            int w = i;
+            futures.add(pool.submit(() -> {
+                long start = System.nanoTime();
+                request.write(worker.out);
+                worker.out.flush();
+                Protocol.Reply reply = Protocol.readReply(worker.in);
+                nanos[w] += System.nanoTime() - start;
+                evalNanos[w] += reply.evalNanos();
+                return reply;
+            }));
+        }
+        Protocol.Reply[] replies = new Protocol.Reply[futures.size()];
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                replies[i] = futures.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Requête interrompue", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException io) throw new IOException("Worker " + i + " : " + io.getMessage(), io);
+                if (e.getCause() instanceof RuntimeException re) throw re;
+                throw new IOException(e.getCause());
+            }
+        }
+        return replies;
+    }
+
+    /** Arrête les workers (et attend leurs processus, s'ils ont été démarrés par {@link #launch}). */
+    @Override
+    public void close() throws IOException {
+        for (Connection worker : workers) {
+            try {
+                worker.out.writeByte(Protocol.STOP);
+                worker.out.flush();
+            } catch (IOException e) {
+                // déjà arrêté
+            }
+            worker.socket.close();
+        }
+        pool.shutdownNow();
+        for (Process process : processes) {
+            try {
+                if (!process.waitFor(10, TimeUnit.SECONDS)) process.destroyForcibly();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    /** Connexion à un worker ; utilisée par une seule tâche à la fois. */
+    private static final class Connection {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        Connection(InetSocketAddress address) throws IOException {
+            socket = new Socket(address.getAddress(), address.getPort());
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage : StarQueryCoordinator <données.nt> <requêtes.queryset>... "
+                    + "[--workers N] [--runs N] [--jvm option]... [--out répertoire]");
+            System.exit(1);
+        }
+
+        Path dataFile = Paths.get(args[0]);
+        List<String> queryFiles = new ArrayList<>();
+        int workerCount = Runtime.getRuntime().availableProcessors();
+        int runs = 3;
+        List<String> jvmOptions = new ArrayList<>();
+        String outputDir = DEFAULT_OUTPUT_DIR;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--workers" -> workerCount = Integer.parseInt(args[++i]);
+                case "--runs" -> runs = Integer.parseInt(args[++i]);
+                case "--jvm" -> jvmOptions.add(args[++i]);
+                case "--out" -> outputDir = args[++i];
+                default -> queryFiles.add(args[i]);
+            }
+        }
+
+        List<String> report = new ArrayList<>();
+        Path workDir = Files.createTempDirectory("qengine-tranches");
+        long t0 = System.nanoTime();
+        try (StarQueryCoordinator coordinator = launch(dataFile, workerCount, workDir, jvmOptions)) {
+            report.add(line("load", "", "workers", workerCount));
+            report.add(line("load", "", "launch_ms", millis(System.nanoTime() - t0)));
+            for (int w = 0; w < workerCount; w++) {
+                System.out.printf("Worker %d : %d triplets, chargés en %d ms%n",
+                        w, coordinator.workerTriples()[w], coordinator.workerLoadMillis()[w]);
+                report.add(line("worker", String.valueOf(w), "triples", coordinator.workerTriples()[w]));
+                report.add(line("worker", String.valueOf(w), "load_ms", coordinator.workerLoadMillis()[w]));
+            }
+
+            for (String queryFile : queryFiles) {
+                List<StarQuery> queries = parseSparQLQueries(queryFile);
+                long[] total = new long[queries.size() * runs];
+                long[][] perWorker = new long[workerCount][queries.size() * runs];
+                for (int r = 0; r < runs; r++) {
+                    for (int q = 0; q < queries.size(); q++) {
+                        long start = System.nanoTime();
+                        Answer answer = coordinator.match(queries.get(q));
+                        int k = r * queries.size() + q;
+                        total[k] = System.nanoTime() - start;
+                        for (int w = 0; w < workerCount; w++) perWorker[w][k] = answer.workerNanos()[w];
+
+                        String name = queryFile + "#" + q;
+                        if (r == 0) report.add(line("query", name, "answers", answer.substitutions().size()));
+                        report.add(line("query", name, "run" + r + "_ms", millis(total[k])));
+                        for (int w = 0; w < workerCount; w++) {
+                            report.add(line("query", name, "run" + r + "_worker" + w + "_ms", millis(answer.workerNanos()[w])));
+                            report.add(line("query", name, "run" + r + "_worker" + w + "_eval_ms", millis(answer.workerEvalNanos()[w])));
+                        }
+                    }
+                }
+
+                // déséquilibre : p50 du worker le plus lent sur celui du plus rapide
+                long slowest = 0, fastest = Long.MAX_VALUE;
+                StringBuilder workersLine = new StringBuilder();
+                for (int w = 0; w < workerCount; w++) {
+                    long p50 = percentile(perWorker[w], 50);
+                    slowest = Math.max(slowest, p50);
+                    fastest = Math.min(fastest, p50);
+                    workersLine.append(String.format(" w%d=%.3f", w, millis(p50)));
+                    report.add(line("queryset", queryFile, "worker" + w + "_p50_ms", millis(p50)));
+                    report.add(line("queryset", queryFile, "worker" + w + "_p95_ms", millis(percentile(perWorker[w], 95))));
+                }
+                double skew = fastest == 0 ? 1 : (double) slowest / fastest;
+                report.add(line("queryset", queryFile, "queries", queries.size()));
+                report.add(line("queryset", queryFile, "p50_ms", millis(percentile(total, 50))));
+                report.add(line("queryset", queryFile, "p95_ms", millis(percentile(total, 95))));
+                report.add(line("queryset", queryFile, "worker_skew", skew));
+                System.out.printf("%s : %d requêtes, p50 = %.3f ms, p95 = %.3f ms ; p50 par worker (ms) :%s ; déséquilibre %.2f%n",
+                        queryFile, queries.size(), millis(percentile(total, 50)), millis(percentile(total, 95)), workersLine, skew);
+            }
+        } finally {
+            try (var files = Files.list(workDir)) {
+                for (Path file : files.toList()) Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(workDir);
+        }
+
+        Path dir = Paths.get(outputDir);
+        Files.createDirectories(dir);
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        Path output = dir.resolve(dataFile.getFileName() + "-distributed-" + workerCount + "-" + timestamp + ".csv");
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(output))) {
+            out.println("section;nom;mesure;valeur");
+            report.forEach(out::println);
+        }
+        System.out.println("Rapport écrit dans " + output);
+    }
+
+    private static String line(String section, String name, String metric, Object value) {
+        return String.join(";", section, name, metric, String.valueOf(value));
+    }
+
+    private static List<StarQuery> parseSparQLQueries(String queryFilePath) throws IOException {
+        List<StarQuery> starQueries = new ArrayList<>();
+        try (StarQuerySparQLParser queryParser = new StarQuerySparQLParser(queryFilePath)) {
+            while (queryParser.hasNext()) {
+                starQueries.add((StarQuery) queryParser.next());
+            }
+        }
+        return starQueries;
+    }
+
+    private static long percentile(long[] values, int p) {
+        if (values.length == 0) return 0;
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,162 @@
+package qengine.distributed;
+
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.logicalElements.impl.SubstitutionImpl;
+import qengine.model.RDFTriple;
+import qengine.model.StarQuery;
+import qengine.parser.NTriplesFastParser;
+import qengine.storage.RDFHexaStore;
+import qengine.storage.RDFStorage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Worker du mode distribué : un store (en pratique la tranche d'un {@link RDFHexaStore} partitionné par sujet,
+ * voir {@link StarQueryCoordinator#partition}) servi sur un port de la boucle locale.
+ * <p>
+ * Les connexions sont servies une par une ; chacune enchaîne les requêtes (voir {@link Protocol})
+ * jusqu'à sa fermeture, ou jusqu'à une demande d'arrêt qui arrête le worker.
+ * <p>
+ * Usage : {@code StarQueryWorker <tranche.nt> [port]} (port 0 ou absent : port libre). Une fois chargé,
+ * le worker écrit {@code READY <port> <triplets> <ms de chargement>} sur la sortie standard.
+ */
+public final class StarQueryWorker implements Closeable {
+
+    private final RDFStorage store;
+    private final ServerSocket server;
+
+    /** Ouvre le port (0 : port libre) sur la boucle locale ; les requêtes sont servies par {@link #serve()}. */
+    public StarQueryWorker(RDFStorage store, int port) throws IOException {
+        this.store = store;
+        this.server = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+    }
+
+    public int port() {
+        return server.getLocalPort();
+    }
+
+    /** Sert les connexions jusqu'à une demande d'arrêt ou {@link #close()}. */
+    public void serve() throws IOException {
+        while (!server.isClosed()) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (SocketException e) {
+                if (server.isClosed()) return;
+                throw e;
+            }
+            boolean stop;
+            try (socket) {
+                stop = !handle(socket);
+            }
+            if (stop) close();
+        }
+    }
+
+    /** @return false si le coordinateur a demandé l'arrêt */
+    private boolean handle(Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        while (true) {
+            byte type;
+            try {
+                type = in.readByte();
+            } catch (EOFException e) {
+                return true;
+            }
+            if (type == Protocol.STOP) return false;
+
+            StarQuery query = null;
+            RDFTriple pattern = null;
+            Variable variable = null;
+            if (type == Protocol.STAR) {
+                query = Protocol.readStar(in);
+            } else if (type == Protocol.PATTERN) {
+                pattern = Protocol.readTriple(in);
+                variable = (Variable) Protocol.readTerm(in);
+            } else {
+                throw new IOException("Requête inconnue '" + (char) type + "'");
+            }
+
+            long start = System.nanoTime();
+            List<Substitution> answers;
+            try {
+                answers = query != null ? star(query) : values(pattern, variable);
+            } catch (RuntimeException e) {
+                Protocol.writeError(out, "Worker " + port() + " : " + e);
+                out.flush();
+                continue;
+            }
+            Protocol.writeAnswers(out, System.nanoTime() - start, answers);
+            out.flush();
+        }
+    }
+
+    private List<Substitution> star(StarQuery q) {
+        List<Substitution> answers = new ArrayList<>();
+        store.match(q).forEachRemaining(answers::add);
+        return answers;
+    }
+
+    // valeurs distinctes de la variable parmi les réponses du patron
+    private List<Substitution> values(RDFTriple pattern, Variable variable) {
+        Set<Term> values = new LinkedHashSet<>();
+        store.match(pattern).forEachRemaining(s -> {
+            Term value = s.toMap().get(variable);
+            if (value != null) values.add(value);
+        });
+        List<Substitution> answers = new ArrayList<>(values.size());
+        for (Term value : values) {
+            Substitution s = new SubstitutionImpl();
+            s.add(variable, value);
+            answers.add(s);
+        }
+        return answers;
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage : StarQueryWorker <tranche.nt> [port]");
+            System.exit(1);
+        }
+        Path slice = Paths.get(args[0]);
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+
+        long t0 = System.nanoTime();
+        RDFHexaStore store = new RDFHexaStore();
+        new NTriplesFastParser(slice).load(store);
+        store.freeze();
+        long loadMillis = (System.nanoTime() - t0) / 1_000_000;
+
+        try (StarQueryWorker worker = new StarQueryWorker(store, port)) {
+            // lu par le coordinateur : rien d'autre n'est écrit sur la sortie standard ensuite
+            System.out.println("READY " + worker.port() + " " + store.size() + " " + loadMillis);
+            System.out.flush();
+            worker.serve();
+        }
+    }
+}
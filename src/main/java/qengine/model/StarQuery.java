@@ -51,6 +51,26 @@ public class StarQuery implements Query {
         validateAnswerVariables(answerVariables, rdfTriples);
     }
 
+    /**
+     * Constructeur avec une variable centrale imposée, pour les étoiles où plusieurs variables
+     * apparaissent dans tous les triplets (par exemple un seul triplet {@code ?x p ?y}) : la requête
+     * garde alors la même variable centrale d'un processus à l'autre.
+     *
+     * @param centralVariable la variable centrale, présente dans tous les triplets
+     * @throws IllegalArgumentException si un triplet ne contient pas la variable centrale
+     */
+    public StarQuery(String label, List<RDFTriple> rdfTriples, Collection<Variable> answerVariables, Variable centralVariable) {
+        this.label = Objects.requireNonNull(label, "Le label ne peut pas être null.");
+        this.rdfTriples = Objects.requireNonNull(rdfTriples, "Les triplets RDF ne peuvent pas être null.");
+        this.answerVariables = Objects.requireNonNull(answerVariables, "Les variables réponses ne peuvent pas être null.");
+        this.centralVariable = Objects.requireNonNull(centralVariable, "La variable centrale ne peut pas être null.");
+
+        if (!rdfTriples.stream().allMatch(triple -> Arrays.asList(triple.getTerms()).contains(centralVariable))) {
+            throw new IllegalArgumentException("La variable centrale " + centralVariable + " n'est pas dans tous les triplets RDF.");
+        }
+        validateAnswerVariables(answerVariables, rdfTriples);
+    }
+
     /**
      * Détermine la variable centrale partagée par tous les triplets RDF.
      *
@@ -0,0 +1,278 @@
+package qengine.parser;
+
+import qengine.storage.Dictionary;
+import qengine.storage.EncodedRDFStorage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Lecteur N-Triples rapide, sans passer par rdf4j / Integraal.
+ * <p>
+ * Le fichier est lu par grands blocs d'octets ; chaque terme est repéré directement dans le bloc
+ * et donné au {@link Dictionary} sous forme de tranche d'octets ({@link Dictionary#encode(byte[], int, int)}) :
+ * un terme déjà connu ne crée aucun objet. Seuls les termes nouveaux deviennent des Term,
+ * avec la même valeur que {@link RDFTriplesParser} en mode Raw :
+ * <ul>
+ *     <li>IRI : sans les chevrons ;</li>
+ *     <li>littéral : la forme lexicale seule (la langue et le type sont ignorés), échappements décodés ;</li>
+ *     <li>nœud blanc : son étiquette, sans le préfixe {@code _:}.</li>
+ * </ul>
+ */
+public class NTriplesFastParser {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /** Reçoit chaque triplet encodé, dans l'ordre du fichier. */
+    @FunctionalInterface
+    public interface EncodedTripleSink {
+        void accept(int s, int p, int o);
+    }
+
+    private final Path file;
+
+    // termes échappés (\" \\uXXXX ...) : décodés dans ce tampon avant d'être encodés
+    private byte[] scratch = new byte[256];
+    private int scratchSize;
+
+    private final int[] ids = new int[3];
+
+    // pour les messages d'erreur
+    private long chunkStart;
+    private long lineNumber;
+    private long lineOffset;
+
+    public NTriplesFastParser(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Charge tout le fichier dans le store : les termes sont encodés par le dictionnaire du store,
+     * les IDs mis bout à bout, puis insérés en un seul bloc ({@link EncodedRDFStorage#addAllEncoded}),
+     * pour que le store puisse construire ses index d'un coup.
+     *
+     * @return le nombre de triplets lus (doublons compris)
+     */
+    public long load(EncodedRDFStorage store) throws IOException {
+        int[][] buffer = {new int[3 * 1024]};
+        int[] size = {0};
+        long read = parse(store.getDictionary(), (s, p, o) -> {
+            if (size[0] + 3 > buffer[0].length) buffer[0] = Arrays.copyOf(buffer[0], buffer[0].length * 2);
+            buffer[0][size[0]++] = s;
+            buffer[0][size[0]++] = p;
+            buffer[0][size[0]++] = o;
+        });
+        store.addAllEncoded(buffer[0], size[0]);
+        return read;
+    }
+
+    /**
+     * Lit tout le fichier, encode les termes avec le dictionnaire donné et passe chaque triplet au sink.
+     *
+     * @return le nombre de triplets lus
+     */
+    public long parse(Dictionary dict, EncodedTripleSink sink) throws IOException {
+        return parse(dict, sink, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Lit les lignes qui commencent dans l'intervalle d'octets [from, to) du fichier.
+     * Une ligne à cheval sur from appartient au morceau précédent : découper un fichier en intervalles
+     * contigus, quelles que soient les bornes, lit donc chaque ligne exactement une fois.
+     *
+     * @return le nombre de triplets lus
+     */
+    public long parse(Dictionary dict, EncodedTripleSink sink, long from, long to) throws IOException {
+        long triples = 0;
+        lineNumber = 0;
+        chunkStart = from;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            boolean skipFirstLine = from > 0 && !startsLine(channel, from);
+            byte[] buf = new byte[BUFFER_SIZE];
+            long base = from;   // position dans le fichier de buf[0]
+            int size = 0;
+            boolean eof = false;
+            while (!eof) {
+                int n = channel.read(ByteBuffer.wrap(buf, size, buf.length - size), base + size);
+                if (n < 0) {
+                    eof = true;
+                } else {
+                    size += n;
+                }
+
+                // on traite toutes les lignes complètes du bloc, le reste est recopié au début
+                int start = 0;
+                int end;
+                while ((end = indexOf(buf, (byte) '\n', start, size)) >= 0 || (eof && start < size)) {
+                    if (base + start >= to) return triples;
+                    int lineEnd = end >= 0 ? end : size;
+                    lineNumber++;
+                    lineOffset = base + start;
+                    if (skipFirstLine) {
+                        skipFirstLine = false;
+                    } else if (parseLine(buf, start, lineEnd, dict)) {
+                        sink.accept(ids[0], ids[1], ids[2]);
+                        triples++;
+                    }
+                    start = end >= 0 ? end + 1 : size;
+                }
+                System.arraycopy(buf, start, buf, 0, size - start);
+                base += start;
+                size -= start;
+                if (size == buf.length) {
+                    // ligne plus longue que le tampon
+                    buf = Arrays.copyOf(buf, buf.length << 1);
+                }
+            }
+        }
+        return triples;
+    }
+
+    // vrai si l'octet at est le début d'une ligne
+    private static boolean startsLine(FileChannel channel, long at) throws IOException {
+        ByteBuffer previous = ByteBuffer.allocate(1);
+        return channel.read(previous, at - 1) == 1 && previous.get(0) == '\n';
+    }
+
+    private static int indexOf(byte[] buf, byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == b) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Analyse une ligne {@code sujet prédicat objet .} et range les trois IDs dans {@link #ids}.
+     *
+     * @return false pour une ligne vide ou un commentaire
+     */
+    private boolean parseLine(byte[] buf, int pos, int end, Dictionary dict) {
+        pos = skipSpaces(buf, pos, end);
+        if (pos >= end || buf[pos] == '#') return false;
+
+        for (int k = 0; k < 3; k++) {
+            if (pos >= end) throw error("triplet incomplet");
+            pos = parseTerm(buf, pos, end, dict, k);
+            pos = skipSpaces(buf, pos, end);
+        }
+        if (pos >= end || buf[pos] != '.') throw error("'.' attendu en fin de triplet");
+        pos = skipSpaces(buf, pos + 1, end);
+        if (pos < end && buf[pos] != '#') throw error("contenu inattendu après '.'");
+        return true;
+    }
+
+    /** Lit le terme qui commence en pos, range son ID dans ids[k] et renvoie la position qui le suit. */
+    private int parseTerm(byte[] buf, int pos, int end, Dictionary dict, int k) {
+        byte c = buf[pos];
+        if (c == '<') {
+            int close = indexOf(buf, (byte) '>', pos + 1, end);
+            if (close < 0) throw error("'>' manquant");
+            ids[k] = encode(buf, pos + 1, close, dict);
+            return close + 1;
+        }
+        if (c == '_' && pos + 1 < end && buf[pos + 1] == ':') {
+            int labelEnd = pos + 2;
+            while (labelEnd < end && buf[labelEnd] != ' ' && buf[labelEnd] != '\t') labelEnd++;
+            // une étiquette ne peut pas finir par '.', qui est alors la fin du triplet
+            if (buf[labelEnd - 1] == '.') labelEnd--;
+            ids[k] = dict.encode(buf, pos + 2, labelEnd);
+            return labelEnd;
+        }
+        if (c == '"' && k == 2) {
+            int close = pos + 1;
+            while (close < end && buf[close] != '"') {
+                close += buf[close] == '\\' ? 2 : 1;
+            }
+            if (close >= end) throw error("'\"' manquant");
+            ids[k] = encode(buf, pos + 1, close, dict);
+
+            // langue (@fr) ou type (^^<...>) : ignorés en mode Raw
+            int next = close + 1;
+            if (next < end && buf[next] == '@') {
+                while (next < end && buf[next] != ' ' && buf[next] != '\t' && buf[next] != '.') next++;
+            } else if (next + 1 < end && buf[next] == '^' && buf[next + 1] == '^') {
+                int typeEnd = indexOf(buf, (byte) '>', next, end);
+                if (typeEnd < 0) throw error("type de littéral mal formé");
+                next = typeEnd + 1;
+            }
+            return next;
+        }
+        throw error("terme inattendu");
+    }
+
+    /** Encode la tranche [from, to), après décodage des échappements s'il y en a. */
+    private int encode(byte[] buf, int from, int to, Dictionary dict) {
+        if (indexOf(buf, (byte) '\\', from, to) < 0) {
+            return dict.encode(buf, from, to);
+        }
+        scratchSize = 0;
+        for (int i = from; i < to; i++) {
+            byte c = buf[i];
+            if (c != '\\') {
+                append(c);
+                continue;
+            }
+            if (++i >= to) throw error("échappement incomplet");
+            switch (buf[i]) {
+                case 't' -> append((byte) '\t');
+                case 'b' -> append((byte) '\b');
+                case 'n' -> append((byte) '\n');
+                case 'r' -> append((byte) '\r');
+                case 'f' -> append((byte) '\f');
+                case '"' -> append((byte) '"');
+                case '\'' -> append((byte) '\'');
+                case '\\' -> append((byte) '\\');
+                case 'u' -> i = appendCodePoint(buf, i + 1, 4, to) - 1;
+                case 'U' -> i = appendCodePoint(buf, i + 1, 8, to) - 1;
+                default -> throw error("échappement inconnu \\" + (char) buf[i]);
+            }
+        }
+        return dict.encode(scratch, 0, scratchSize);
+    }
+
+    /** Lit digits chiffres hexadécimaux en pos, ajoute le caractère en UTF-8 et renvoie la position qui suit. */
+    private int appendCodePoint(byte[] buf, int pos, int digits, int to) {
+        if (pos + digits > to) throw error("échappement unicode incomplet");
+        int cp = 0;
+        for (int i = pos; i < pos + digits; i++) {
+            int d = Character.digit(buf[i], 16);
+            if (d < 0) throw error("échappement unicode invalide");
+            cp = (cp << 4) | d;
+        }
+        if (cp < 0x80) {
+            append((byte) cp);
+        } else if (cp < 0x800) {
+            append((byte) (0xC0 | (cp >> 6)));
+            append((byte) (0x80 | (cp & 0x3F)));
+        } else if (cp < 0x10000) {
+            append((byte) (0xE0 | (cp >> 12)));
+            append((byte) (0x80 | ((cp >> 6) & 0x3F)));
+            append((byte) (0x80 | (cp & 0x3F)));
+        } else {
+            append((byte) (0xF0 | (cp >> 18)));
+            append((byte) (0x80 | ((cp >> 12) & 0x3F)));
+            append((byte) (0x80 | ((cp >> 6) & 0x3F)));
+            append((byte) (0x80 | (cp & 0x3F)));
+        }
+        return pos + digits;
+    }
+
+    private void append(byte b) {
+        if (scratchSize == scratch.length) scratch = Arrays.copyOf(scratch, scratch.length << 1);
+        scratch[scratchSize++] = b;
+    }
+
+    private static int skipSpaces(byte[] buf, int pos, int end) {
+        while (pos < end && (buf[pos] == ' ' || buf[pos] == '\t' || buf[pos] == '\r')) pos++;
+        return pos;
+    }
+
+    private IllegalArgumentException error(String message) {
+        String where = chunkStart == 0 ? "ligne " + lineNumber : "octet " + lineOffset;
+        return new IllegalArgumentException(file + ", " + where + " : " + message);
+    }
+}
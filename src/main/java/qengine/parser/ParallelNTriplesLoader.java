@@ -0,0 +1,148 @@
+package qengine.parser;
+
+import qengine.model.RDFTriple;
+import qengine.storage.Dictionary;
+import qengine.storage.EncodedRDFStorage;
+import qengine.storage.RDFStorage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+/**
+ * Chargement parallèle d'un fichier N-Triples.
+ * <ol>
+ *     <li>le fichier est coupé en intervalles d'octets ; chaque intervalle est lu par {@link NTriplesFastParser}
+ *     dans un pool fork-join, avec son propre dictionnaire local (aucune synchronisation) ;</li>
+ *     <li>les dictionnaires locaux sont fusionnés dans celui du store, morceau par morceau, dans l'ordre
+ *     du fichier : chaque terme n'est encodé globalement qu'une fois par morceau, et les IDs sont
+ *     les mêmes qu'avec un chargement séquentiel ;</li>
+ *     <li>les IDs locaux sont traduits en IDs globaux (en parallèle), puis tous les triplets sont insérés
+ *     en un seul bloc ({@link EncodedRDFStorage#addAllEncoded}).</li>
+ * </ol>
+ */
+public final class ParallelNTriplesLoader {
+
+    // en dessous, le découpage coûte plus qu'il ne rapporte
+    private static final long MIN_CHUNK_BYTES = 1 << 20;
+
+    private ParallelNTriplesLoader() {
+    }
+
+    /** Charge le fichier avec autant de tâches que de cœurs. */
+    public static long load(Path file, RDFStorage store) throws IOException {
+        return load(file, store, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism nombre de tâches de lecture simultanées
+     * @return le nombre de triplets lus (doublons compris)
+     */
+    public static long load(Path file, RDFStorage store, int parallelism) throws IOException {
+        List<Chunk> chunks = parseChunks(file, parallelism);
+
+        if (!(store instanceof EncodedRDFStorage encodedStore)) {
+            // store sans dictionnaire accessible : on repasse par des RDFTriple, mais en un seul ajout en bloc
+            // (un store partitionné répartit alors les triplets, puis charge chaque partition d'un coup)
+            long read = 0;
+            for (Chunk chunk : chunks) read += chunk.size / 3;
+            store.addAll(chunks.stream().flatMap(chunk -> IntStream.range(0, chunk.size / 3)
+                    .mapToObj(i -> new RDFTriple(chunk.dict.decode(chunk.ids[3 * i]),
+                            chunk.dict.decode(chunk.ids[3 * i + 1]), chunk.dict.decode(chunk.ids[3 * i + 2])))));
+            return read;
+        }
+
+        // fusion des dictionnaires, dans l'ordre du fichier
+        Dictionary global = encodedStore.getDictionary();
+        List<int[]> mappings = new ArrayList<>(chunks.size());
+        for (Chunk chunk : chunks) {
+            int[] toGlobal = new int[chunk.dict.size() + 1];
+            for (int id = 1; id <= chunk.dict.size(); id++) {
+                toGlobal[id] = global.encode(chunk.dict.decode(id));
+            }
+            mappings.add(toGlobal);
+        }
+
+        // traduction des IDs, indépendante d'un morceau à l'autre
+        IntStream.range(0, chunks.size()).parallel().forEach(c -> {
+            Chunk chunk = chunks.get(c);
+            int[] toGlobal = mappings.get(c);
+            for (int i = 0; i < chunk.size; i++) {
+                chunk.ids[i] = toGlobal[chunk.ids[i]];
+            }
+        });
+
+        // un seul ajout en bloc, pour que le store puisse tout construire d'un coup
+        int total = 0;
+        for (Chunk chunk : chunks) total += chunk.size;
+        int[] all = new int[total];
+        int offset = 0;
+        for (Chunk chunk : chunks) {
+            System.arraycopy(chunk.ids, 0, all, offset, chunk.size);
+            offset += chunk.size;
+        }
+        encodedStore.addAllEncoded(all, total);
+        return total / 3;
+    }
+
+    /** Lit les morceaux en parallèle, chacun avec son dictionnaire local ; le résultat suit l'ordre du fichier. */
+    private static List<Chunk> parseChunks(Path file, int parallelism) throws IOException {
+        long length = Files.size(file);
+        int count = (int) Math.max(1, Math.min(4L * parallelism, length / MIN_CHUNK_BYTES));
+        long step = length / count + 1;
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            List<Future<Chunk>> futures = new ArrayList<>(count);
+            for (int c = 0; c < count; c++) {
+                long from = c * step;
+                long to = Math.min(length, from + step);
+                futures.add(pool.submit(() -> parseChunk(file, from, to)));
+            }
+            List<Chunk> chunks = new ArrayList<>(count);
+            for (Future<Chunk> future : futures) {
+                chunks.add(future.get());
+            }
+            return chunks;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Chargement interrompu", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) throw io.getCause();
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static Chunk parseChunk(Path file, long from, long to) {
+        Chunk chunk = new Chunk();
+        try {
+            new NTriplesFastParser(file).parse(chunk.dict, (s, p, o) -> {
+                if (chunk.size + 3 > chunk.ids.length) chunk.ids = Arrays.copyOf(chunk.ids, chunk.ids.length * 2);
+                chunk.ids[chunk.size++] = s;
+                chunk.ids[chunk.size++] = p;
+                chunk.ids[chunk.size++] = o;
+            }, from, to);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return chunk;
+    }
+
+    /** Triplets d'un morceau, encodés avec son dictionnaire local. */
+    private static final class Chunk {
+        private final Dictionary dict = new Dictionary();
+        private int[] ids = new int[3 * 1024];
+        private int size;
+    }
+}
@@ -13,8 +13,11 @@ import qengine.model.RDFTriple;
 import qengine.model.StarQuery;
 import qengine.parser.RDFTriplesParser;
 import qengine.parser.StarQuerySparQLParser;
+import qengine.storage.CharacteristicSetStore;
+import qengine.storage.GiantTable;
 import qengine.storage.RDFHexaStore;
 import qengine.storage.RDFStorage;
+import qengine.storage.ShardedRDFStorage;
 
 import java.io.FileReader;
 import java.io.IOException;
@@ -34,7 +37,8 @@ public class CompareWithInteGraal {
 
         // Préparer les deux systèmes
         FactBase factBase = new SimpleInMemoryGraphStore();
-        RDFStorage myStore = new RDFHexaStore(); // ou new GiantTable() aussi
+        // moteur choisi en argument : hexastore (par défaut), cs ou giant
+        RDFStorage myStore = createStore(args.length > 0 ? args[0] : "hexastore");
 
         for (RDFTriple triple : rdfAtoms) {
             factBase.add(triple);
@@ -52,6 +56,17 @@ public class CompareWithInteGraal {
         }
     }
 
+    /** @param name hexastore, cs, giant ou sharded (hexastores partitionnés par sujet, un par cœur) */
+    public static RDFStorage createStore(String name) {
+        return switch (name) {
+            case "hexastore" -> new RDFHexaStore();
+            case "cs" -> new CharacteristicSetStore();
+            case "giant" -> new GiantTable();
+            case "sharded" -> new ShardedRDFStorage();
+            default -> throw new IllegalArgumentException("Moteur inconnu : " + name + " (hexastore, cs, giant ou sharded)");
+        };
+    }
+
     private static List<RDFTriple> parseRDFData() throws IOException {
         FileReader rdfFile = new FileReader(CompareWithInteGraal.SAMPLE_DATA_FILE);
         List<RDFTriple> rdfAtoms = new ArrayList<>();
@@ -0,0 +1,150 @@
+package qengine.program;
+
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
+import qengine.storage.Dictionary;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Compare l'ancien dictionnaire (deux HashMap boxées) et le {@link Dictionary} actuel
+ * (table à adressage ouvert + tableau pour le décodage) :
+ * mémoire occupée, débit d'encodage (insertion puis termes déjà connus) et débit de décodage.
+ * Mesure aussi l'insertion par plusieurs threads dans le même {@link Dictionary}.
+ * <p>
+ * Usage : {@code DictionaryBenchmark [nbTermes] [nbRépétitions]}
+ */
+public final class DictionaryBenchmark {
+
+    private static final int DEFAULT_TERMS = 1_000_000;
+    private static final int DEFAULT_ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_TERMS;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+
+        // Les termes sont créés une seule fois : ils ne comptent pas dans la mémoire mesurée
+        Term[] terms = new Term[n];
+        for (int i = 0; i < n; i++) {
+            terms[i] = SameObjectTermFactory.instance()
+                    .createOrGetLiteral("http://db.uwaterloo.ca/~galuc/wsdbm/Resource" + i);
+        }
+        int[] randomIds = new int[n];
+        Random random = new Random(42);
+        for (int i = 0; i < n; i++) {
+            randomIds[i] = 1 + random.nextInt(n);
+        }
+
+        System.out.println("=== Dictionary benchmark : " + n + " termes, " + rounds + " répétitions ===");
+        for (int r = 1; r <= rounds; r++) {
+            System.out.println("--- Répétition " + r + " ---");
+            run("HashMap (ancien)", new HashMapDictionary(), terms, randomIds);
+            run("Primitif (actuel)", new PrimitiveDictionary(), terms, randomIds);
+            runParallel(terms, Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    // chaque thread insère une tranche des termes, puis tous encodent tous les termes (déjà connus)
+    private static void runParallel(Term[] terms, int threads) {
+        Dictionary dict = new Dictionary();
+        int slice = (terms.length + threads - 1) / threads;
+
+        long t0 = System.nanoTime();
+        IntStream.range(0, threads).parallel().forEach(w -> {
+            for (int i = w * slice; i < Math.min(terms.length, (w + 1) * slice); i++) dict.encode(terms[i]);
+        });
+        long t1 = System.nanoTime();
+        long checksum = IntStream.range(0, threads).parallel().mapToLong(w -> {
+            long sum = 0;
+            for (Term t : terms) sum += dict.encode(t);
+            return sum;
+        }).sum();
+        long t2 = System.nanoTime();
+
+        System.out.printf("%-18s | insert %7.2f Mops/s | encode(hit) %7.2f Mops/s | (checksum %d)%n",
+                "Primitif " + threads + " thr.",
+                throughput(terms.length, t1 - t0),
+                throughput(terms.length * threads, t2 - t1),
+                checksum);
+        if (dict.size() != terms.length) throw new IllegalStateException("Taille inattendue : " + dict.size());
+    }
+
+    private static void run(String name, BenchDictionary dict, Term[] terms, int[] randomIds) {
+        long heapBefore = usedHeap();
+
+        long t0 = System.nanoTime();
+        for (Term t : terms) dict.encode(t);
+        long t1 = System.nanoTime();
+        long checksum = 0;
+        for (Term t : terms) checksum += dict.encode(t);
+        long t2 = System.nanoTime();
+        for (int id : randomIds) checksum += dict.decode(id).hashCode();
+        long t3 = System.nanoTime();
+
+        long heapAfter = usedHeap();
+
+        System.out.printf("%-18s | heap %8.1f Mo | insert %7.2f Mops/s | encode(hit) %7.2f Mops/s | decode %7.2f Mops/s | (checksum %d)%n",
+                name,
+                (heapAfter - heapBefore) / (1024.0 * 1024.0),
+                throughput(terms.length, t1 - t0),
+                throughput(terms.length, t2 - t1),
+                throughput(randomIds.length, t3 - t2),
+                checksum);
+
+        // garde le dictionnaire vivant jusqu'à la mesure de la mémoire
+        if (dict.size() != terms.length) throw new IllegalStateException("Taille inattendue : " + dict.size());
+    }
+
+    private static double throughput(int ops, long nanos) {
+        return ops / (nanos / 1_000.0);
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private interface BenchDictionary {
+        int encode(Term t);
+        Term decode(int id);
+        int size();
+    }
+
+    private static final class PrimitiveDictionary implements BenchDictionary {
+        private final Dictionary dict = new Dictionary();
+
+        public int encode(Term t) { return dict.encode(t); }
+        public Term decode(int id) { return dict.decode(id); }
+        public int size() { return dict.size(); }
+    }
+
+    /** Ancienne implémentation du dictionnaire, conservée comme point de comparaison. */
+    private static final class HashMapDictionary implements BenchDictionary {
+        private final Map<Term, Integer> term2id = new HashMap<>();
+        private final Map<Integer, Term> id2term = new HashMap<>();
+        private int nextId = 1;
+
+        public int encode(Term t) {
+            Integer id = term2id.get(t);
+            if (id != null) return id;
+            int nid = nextId++;
+            term2id.put(t, nid);
+            id2term.put(nid, t);
+            return nid;
+        }
+
+        public Term decode(int id) { return id2term.get(id); }
+        public int size() { return term2id.size(); }
+    }
+}
@@ -0,0 +1,305 @@
+package qengine.program;
+
+import fr.boreal.model.logicalElements.api.Substitution;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import qengine.model.RDFTriple;
+import qengine.model.StarQuery;
+import qengine.parser.NTriplesFastParser;
+import qengine.parser.ParallelNTriplesLoader;
+import qengine.parser.RDFTriplesParser;
+import qengine.parser.StarQuerySparQLParser;
+import qengine.storage.Dictionary;
+import qengine.storage.EncodedRDFStorage;
+import qengine.storage.RDFHexaStore;
+import qengine.storage.RDFStorage;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Banc d'essai de bout en bout sur un jeu de données WatDiv :
+ * <ol>
+ *     <li>temps de parsing, d'encodage (dictionnaire) et de construction des index, mesurés séparément ;</li>
+ *     <li>latence par requête à froid (première exécution) et à chaud (après plusieurs passes), p50/p95/p99 ;</li>
+ *     <li>mémoire utilisée après chargement et options de la JVM.</li>
+ * </ol>
+ * Chaque exécution écrit un CSV (format long : {@code section;nom;mesure;valeur}) dans le répertoire de sortie.
+ * <p>
+ * Usage : {@code WatDivBenchmark <données.nt> <hexastore|giant|cs|sharded> <requêtes.queryset>... [--warmup N] [--runs N] [--out rép] [--fast | --parallel N] [--snapshot fichier]}
+ * <p>
+ * Avec {@code --fast}, les données sont lues par {@link NTriplesFastParser} : parsing et encodage
+ * ne font plus qu'une étape ({@code parse_encode_ms}). Avec {@code --parallel N}, le fichier est chargé
+ * par {@link ParallelNTriplesLoader} sur N cœurs ({@code parallel_load_ms}, puis {@code freeze_ms}).
+ * Avec {@code --snapshot fichier} (hexastore seulement), un instantané existant est ouvert à la place
+ * du chargement ({@code snapshot_open_ms}) ; sinon il est écrit après le chargement ({@code snapshot_save_ms}).
+ */
+public final class WatDivBenchmark {
+
+    private static final int DEFAULT_WARMUP = 5;
+    private static final int DEFAULT_RUNS = 10;
+    private static final String DEFAULT_OUTPUT_DIR = "results/";
+
+    private WatDivBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage : WatDivBenchmark <données.nt> <hexastore|giant|cs|sharded> <requêtes.queryset>... "
+                    + "[--warmup N] [--runs N] [--out répertoire] [--fast | --parallel N] [--snapshot fichier]");
+            System.exit(1);
+        }
+
+        String dataFile = args[0];
+        String storeName = args[1];
+        List<String> queryFiles = new ArrayList<>();
+        int warmup = DEFAULT_WARMUP;
+        int runs = DEFAULT_RUNS;
+        String outputDir = DEFAULT_OUTPUT_DIR;
+        boolean fast = false;
+        int parallelism = 0;
+        Path snapshot = null;
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+                case "--runs" -> runs = Integer.parseInt(args[++i]);
+                case "--out" -> outputDir = args[++i];
+                case "--fast" -> fast = true;
+                case "--parallel" -> parallelism = Integer.parseInt(args[++i]);
+                case "--snapshot" -> snapshot = Paths.get(args[++i]);
+                default -> queryFiles.add(args[i]);
+            }
+        }
+
+        Report report = new Report();
+        report.add("run", "", "dataset", dataFile);
+        report.add("run", "", "store", storeName);
+        report.add("run", "", "warmup", warmup);
+        report.add("run", "", "runs", runs);
+        report.add("run", "", "parser", parallelism > 0 ? "parallel-" + parallelism : fast ? "fast" : "rdf4j");
+        report.add("run", "", "jvm", System.getProperty("java.vm.name") + " " + System.getProperty("java.version"));
+        report.add("run", "", "jvm_flags", String.join(" ", ManagementFactory.getRuntimeMXBean().getInputArguments()));
+        report.add("run", "", "max_heap_mb", Runtime.getRuntime().maxMemory() / (1024 * 1024));
+
+        // 1) chargement, étape par étape
+        RDFStorage store = CompareWithInteGraal.createStore(storeName);
+        if (snapshot != null && !(store instanceof RDFHexaStore)) {
+            throw new IllegalArgumentException("--snapshot n'existe que pour l'hexastore : " + storeName);
+        }
+        if (snapshot != null && Files.exists(snapshot)) {
+            long t0 = System.nanoTime();
+            store = RDFHexaStore.open(snapshot);
+            report.add("load", "", "snapshot_open_ms", millis(System.nanoTime() - t0));
+        } else if (parallelism > 0) {
+            long t0 = System.nanoTime();
+            long read = ParallelNTriplesLoader.load(Paths.get(dataFile), store, parallelism);
+            long t1 = System.nanoTime();
+            store.freeze();
+            report.add("load", "", "triples_parsed", read);
+            report.add("load", "", "parallel_load_ms", millis(t1 - t0));
+            report.add("load", "", "freeze_ms", millis(System.nanoTime() - t1));
+        } else if (fast) {
+            if (!(store instanceof EncodedRDFStorage encodedStore)) {
+                throw new IllegalArgumentException("--fast demande un store encodé : " + storeName);
+            }
+            loadFast(Paths.get(dataFile), encodedStore, report);
+        } else {
+            loadWithRdf4j(dataFile, store, report);
+        }
+        if (snapshot != null && !Files.exists(snapshot)) {
+            long t0 = System.nanoTime();
+            ((RDFHexaStore) store).save(snapshot);
+            report.add("load", "", "snapshot_save_ms", millis(System.nanoTime() - t0));
+        }
+        report.add("load", "", "triples_stored", store.size());
+
+        // les triplets parsés ne sont plus référencés : seuls le dictionnaire et les index sont mesurés
+        report.add("load", "", "heap_used_mb", usedHeapMegabytes());
+
+        // 2) requêtes, un jeu après l'autre
+        for (String queryFile : queryFiles) {
+            List<StarQuery> queries = parseSparQLQueries(queryFile);
+            long[] cold = new long[queries.size()];
+            long[][] warm = new long[queries.size()][runs];
+            long[] answers = new long[queries.size()];
+
+            for (int q = 0; q < queries.size(); q++) {
+                long start = System.nanoTime();
+                answers[q] = evaluate(store, queries.get(q));
+                cold[q] = System.nanoTime() - start;
+            }
+            for (int w = 0; w < warmup; w++) {
+                for (StarQuery query : queries) evaluate(store, query);
+            }
+            for (int r = 0; r < runs; r++) {
+                for (int q = 0; q < queries.size(); q++) {
+                    long start = System.nanoTime();
+                    evaluate(store, queries.get(q));
+                    warm[q][r] = System.nanoTime() - start;
+                }
+            }
+
+            long zero = Arrays.stream(answers).filter(a -> a == 0).count();
+            long[] allWarm = Arrays.stream(warm).flatMapToLong(Arrays::stream).toArray();
+            report.add("queryset", queryFile, "queries", queries.size());
+            report.add("queryset", queryFile, "zero_answer_queries", zero);
+            report.addPercentiles("queryset", queryFile, "cold", cold);
+            report.addPercentiles("queryset", queryFile, "warm", allWarm);
+
+            for (int q = 0; q < queries.size(); q++) {
+                String name = queryFile + "#" + q;
+                report.add("query", name, "answers", answers[q]);
+                report.add("query", name, "cold_ms", millis(cold[q]));
+                report.addPercentiles("query", name, "warm", warm[q]);
+            }
+
+            System.out.printf("%s : %d requêtes (%d sans réponse), froid p50 = %.3f ms, chaud p50 = %.3f ms%n",
+                    queryFile, queries.size(), zero, millis(percentile(cold, 50)), millis(percentile(allWarm, 50)));
+        }
+
+        Path output = report.write(outputDir, Paths.get(dataFile).getFileName() + "-" + storeName);
+        System.out.println("Rapport écrit dans " + output);
+    }
+
+    private static void loadWithRdf4j(String dataFile, RDFStorage store, Report report) throws IOException {
+        long t0 = System.nanoTime();
+        List<RDFTriple> triples = parseRDFData(dataFile);
+        long t1 = System.nanoTime();
+        report.add("load", "", "triples_parsed", triples.size());
+        report.add("load", "", "parse_ms", millis(t1 - t0));
+
+        if (store instanceof EncodedRDFStorage encodedStore) {
+            Dictionary dict = encodedStore.getDictionary();
+            int[] ids = new int[triples.size() * 3];
+            for (int i = 0; i < triples.size(); i++) {
+                RDFTriple t = triples.get(i);
+                ids[3 * i] = dict.encode(t.getTripleSubject());
+                ids[3 * i + 1] = dict.encode(t.getTriplePredicate());
+                ids[3 * i + 2] = dict.encode(t.getTripleObject());
+            }
+            long t2 = System.nanoTime();
+            build(encodedStore, ids, ids.length);
+            long t3 = System.nanoTime();
+            report.add("load", "", "encode_ms", millis(t2 - t1));
+            report.add("load", "", "build_ms", millis(t3 - t2));
+            report.add("load", "", "distinct_terms", dict.size());
+        } else {
+            // store sans dictionnaire accessible : encodage et index mesurés ensemble
+            store.addAll(triples);
+            store.freeze();
+            report.add("load", "", "encode_and_build_ms", millis(System.nanoTime() - t1));
+        }
+    }
+
+    private static void loadFast(Path dataFile, EncodedRDFStorage store, Report report) throws IOException {
+        long t0 = System.nanoTime();
+        int[][] ids = {new int[3 * 1024]};
+        int[] size = {0};
+        long read = new NTriplesFastParser(dataFile).parse(store.getDictionary(), (s, p, o) -> {
+            if (size[0] + 3 > ids[0].length) ids[0] = Arrays.copyOf(ids[0], ids[0].length * 2);
+            ids[0][size[0]++] = s;
+            ids[0][size[0]++] = p;
+            ids[0][size[0]++] = o;
+        });
+        long t1 = System.nanoTime();
+        build(store, ids[0], size[0]);
+        long t2 = System.nanoTime();
+        report.add("load", "", "triples_parsed", read);
+        report.add("load", "", "parse_encode_ms", millis(t1 - t0));
+        report.add("load", "", "build_ms", millis(t2 - t1));
+        report.add("load", "", "distinct_terms", store.getDictionary().size());
+    }
+
+    /** Insère en bloc les triplets encodés ids[0..size) (par 3) puis fige le store. */
+    private static void build(EncodedRDFStorage store, int[] ids, int size) {
+        store.addAllEncoded(ids, size);
+        store.freeze();
+    }
+
+    /** Évalue la requête jusqu'au bout (toutes les réponses sont consommées). */
+    private static long evaluate(RDFStorage store, StarQuery query) {
+        long count = 0;
+        Iterator<Substitution> it = store.match(query);
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+        return count;
+    }
+
+    /** Percentile par rang le plus proche. */
+    private static long percentile(long[] values, int p) {
+        if (values.length == 0) return 0;
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static long usedHeapMegabytes() {
+        System.gc();
+        Runtime rt = Runtime.getRuntime();
+        return (rt.totalMemory() - rt.freeMemory()) / (1024 * 1024);
+    }
+
+    private static List<RDFTriple> parseRDFData(String rdfFilePath) throws IOException {
+        List<RDFTriple> rdfAtoms = new ArrayList<>();
+        try (RDFTriplesParser rdfParser = new RDFTriplesParser(new FileReader(rdfFilePath), RDFFormat.NTRIPLES)) {
+            while (rdfParser.hasNext()) {
+                rdfAtoms.add(rdfParser.next());
+            }
+        }
+        return rdfAtoms;
+    }
+
+    private static List<StarQuery> parseSparQLQueries(String queryFilePath) throws IOException {
+        List<StarQuery> starQueries = new ArrayList<>();
+        try (StarQuerySparQLParser queryParser = new StarQuerySparQLParser(queryFilePath)) {
+            while (queryParser.hasNext()) {
+                starQueries.add((StarQuery) queryParser.next());
+            }
+        }
+        return starQueries;
+    }
+
+    /** Lignes du CSV, dans l'ordre des mesures. */
+    private static final class Report {
+        private final List<String> lines = new ArrayList<>();
+
+        void add(String section, String name, String metric, Object value) {
+            lines.add(String.join(";", section, name, metric, String.valueOf(value)));
+        }
+
+        void addPercentiles(String section, String name, String prefix, long[] nanos) {
+            add(section, name, prefix + "_p50_ms", millis(percentile(nanos, 50)));
+            add(section, name, prefix + "_p95_ms", millis(percentile(nanos, 95)));
+            add(section, name, prefix + "_p99_ms", millis(percentile(nanos, 99)));
+        }
+
+        Path write(String directory, String prefix) throws IOException {
+            Path dir = Paths.get(directory);
+            Files.createDirectories(dir);
+            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+            Path file = dir.resolve(prefix + "-" + timestamp + ".csv");
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+                out.println("section;nom;mesure;valeur");
+                lines.forEach(out::println);
+            }
+            return file;
+        }
+    }
+}
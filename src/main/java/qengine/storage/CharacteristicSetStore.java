@@ -0,0 +1,314 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.*;
+import fr.boreal.model.logicalElements.impl.SubstitutionImpl;
+import qengine.model.RDFTriple;
+import qengine.model.StarQuery;
+
+import java.util.*;
+
+/**
+ * Stockage regroupant les sujets par ensemble caractéristique (voir {@link CharacteristicSets}) :
+ * chaque ensemble distinct de prédicats devient une {@link PropertyTable}, avec une ligne par sujet
+ * et une colonne par prédicat.
+ * <p>
+ * Une étoile centrée sur le sujet {?x p1 o1 . ... ?x pk ok} se lit alors sans aucune jointure :
+ * on ne parcourt que les tables dont l'ensemble de prédicats contient {p1..pk}, et on teste les objets
+ * imposés ligne par ligne. Les autres formes de requêtes passent par l'évaluation générique.
+ * <p>
+ * Les ajouts vont dans un delta sujet -> prédicat -> {objets} ; à la lecture suivante, seules les tables
+ * touchées sont reconstruites : celles que quittent les sujets du delta, et celles où ils arrivent.
+ * Les autres restent telles quelles.
+ * <p>
+ * Les tables sont immuables une fois construites. Les ajouts, la reconstruction et la prise des tables
+ * par une lecture se font sous le verrou du store ; les curseurs parcourent ensuite leurs tables sans
+ * verrou. Plusieurs threads peuvent donc lire et ajouter en même temps.
+ */
+public class CharacteristicSetStore implements EncodedRDFStorage {
+
+    private final Dictionary dict = new Dictionary();
+
+    // une table par ensemble caractéristique, et la table de chaque sujet (sous le verrou du store)
+    private final Map<CharacteristicSets.Key, PropertyTable> tables = new HashMap<>();
+    private final Map<Integer, PropertyTable> tableOf = new HashMap<>();
+    private Map<Integer, Map<Integer, Set<Integer>>> delta = new HashMap<>();
+
+    private long tripleCount = 0;
+
+    @Override
+    public boolean add(RDFTriple triple) {
+        int s = dict.encode(triple.getTripleSubject());
+        int p = dict.encode(triple.getTriplePredicate());
+        int o = dict.encode(triple.getTripleObject());
+        return addEncoded(s, p, o);
+    }
+
+    @Override
+    public Dictionary getDictionary() {
+        return dict;
+    }
+
+    @Override
+    public synchronized boolean addEncoded(int s, int p, int o) {
+        PropertyTable table = tableOf.get(s);
+        if (table != null) {
+            int k = table.column(p);
+            if (k >= 0 && table.hasObject(table.rowOf(s), k, o)) {
+                return false;
+            }
+        }
+        boolean added = delta
+                .computeIfAbsent(s, key -> new HashMap<>())
+                .computeIfAbsent(p, key -> new HashSet<>())
+                .add(o);
+        if (added) {
+            tripleCount++;
+        }
+        return added;
+    }
+
+    /** Construit tout de suite les tables, au lieu d'attendre la prochaine lecture. */
+    @Override
+    public synchronized void freeze() {
+        layout();
+    }
+
+    /** Nombre de tables, c'est-à-dire d'ensembles caractéristiques distincts. */
+    public synchronized int tableCount() {
+        layout();
+        return tables.size();
+    }
+
+    /** Table qui contient le sujet après les ajouts en attente, ou null (pour les tests). */
+    synchronized PropertyTable tableOf(Term subject) {
+        layout();
+        int s = dict.encodeIfExists(subject);
+        return s < 0 ? null : tableOf.get(s);
+    }
+
+    /**
+     * Reconstruit les tables touchées par le delta : la ligne d'un sujet du delta est fusionnée avec
+     * ses nouveaux triplets, puis rangée dans la table de son (nouvel) ensemble caractéristique ; dans
+     * la table qu'il quitte et dans celle où il arrive, les lignes des autres sujets sont recopiées
+     * telles quelles. Les tables sans sujet du delta ne sont pas touchées. Sous le verrou du store.
+     */
+    private void layout() {
+        if (delta.isEmpty()) return;
+
+        // on rapatrie dans le delta la ligne actuelle de chaque sujet touché ; sa table est à refaire
+        Map<CharacteristicSets.Key, PropertyTable.Builder> builders = new HashMap<>();
+        for (Map.Entry<Integer, Map<Integer, Set<Integer>>> e : delta.entrySet()) {
+            PropertyTable table = tableOf.get(e.getKey());
+            if (table == null) continue;
+            int row = table.rowOf(e.getKey());
+            int[] predicates = table.predicates();
+            for (int k = 0; k < predicates.length; k++) {
+                Set<Integer> objects = e.getValue().computeIfAbsent(predicates[k], key -> new HashSet<>());
+                for (int o : table.objects(row, k)) objects.add(o);
+            }
+            builderFor(builders, predicates);
+        }
+
+        for (Map.Entry<Integer, Map<Integer, Set<Integer>>> e : delta.entrySet()) {
+            Map<Integer, Set<Integer>> row = e.getValue();
+            int[] predicates = FrozenIndex.sortedKeys(row.keySet());
+            int[][] objects = new int[predicates.length][];
+            for (int k = 0; k < predicates.length; k++) {
+                objects[k] = FrozenIndex.sortedKeys(row.get(predicates[k]));
+            }
+            builderFor(builders, predicates).add(e.getKey(), objects);
+        }
+
+        // les autres lignes des tables à refaire sont recopiées
+        for (Map.Entry<CharacteristicSets.Key, PropertyTable.Builder> e : builders.entrySet()) {
+            PropertyTable table = tables.get(e.getKey());
+            if (table == null) continue;
+            int[] predicates = table.predicates();
+            for (int row = 0; row < table.rows(); row++) {
+                int s = table.subject(row);
+                if (delta.containsKey(s)) continue;
+                int[][] objects = new int[predicates.length][];
+                for (int k = 0; k < predicates.length; k++) {
+                    objects[k] = table.objects(row, k);
+                }
+                e.getValue().add(s, objects);
+            }
+        }
+
+        for (Map.Entry<CharacteristicSets.Key, PropertyTable.Builder> e : builders.entrySet()) {
+            PropertyTable table = e.getValue().build();
+            if (table.rows() == 0) {
+                // tous ses sujets sont partis ailleurs
+                tables.remove(e.getKey());
+                continue;
+            }
+            tables.put(e.getKey(), table);
+            for (int row = 0; row < table.rows(); row++) {
+                tableOf.put(table.subject(row), table);
+            }
+        }
+        delta = new HashMap<>();
+    }
+
+    private static PropertyTable.Builder builderFor(Map<CharacteristicSets.Key, PropertyTable.Builder> builders, int[] predicates) {
+        return builders.computeIfAbsent(new CharacteristicSets.Key(predicates), k -> new PropertyTable.Builder(predicates));
+    }
+
+    @Override
+    public Iterator<Substitution> match(RDFTriple pattern) {
+        TripleCursor cursor = cursor(pattern);
+        if (cursor == null) return Collections.emptyIterator();
+        return TripleCursor.substitutions(cursor, dict::decode,
+                pattern.getTripleSubject(), pattern.getTriplePredicate(), pattern.getTripleObject());
+    }
+
+    /**
+     * Curseur (s, p, o) sur les triplets compatibles avec les constantes du patron,
+     * ou null si une constante est inconnue du dictionnaire.
+     * Sujet connu : une seule ligne ; prédicat connu : seulement les tables qui ont cette colonne.
+     */
+    private synchronized TripleCursor cursor(RDFTriple pattern) {
+        int s = idOrAny(pattern.getTripleSubject());
+        int p = idOrAny(pattern.getTriplePredicate());
+        int o = idOrAny(pattern.getTripleObject());
+        if (s < 0 || p < 0 || o < 0) return null;
+
+        layout();
+        if (s != PropertyTable.ANY) {
+            PropertyTable table = tableOf.get(s);
+            if (table == null) return TripleCursor.EMPTY;
+            int row = table.rowOf(s);
+            return table.cursor(row, row + 1, p, o);
+        }
+
+        List<TripleCursor> cursors = new ArrayList<>();
+        for (PropertyTable table : tables.values()) {
+            if (p == PropertyTable.ANY || table.column(p) >= 0) {
+                cursors.add(table.cursor(0, table.rows(), p, o));
+            }
+        }
+        return TripleCursor.concat(cursors);
+    }
+
+    // ANY pour une variable, -1 pour une constante inconnue
+    private int idOrAny(Term term) {
+        return term instanceof Variable ? PropertyTable.ANY : dict.encodeIfExists(term);
+    }
+
+    /**
+     * Requête en étoile centrée sur le sujet, à prédicats constants : parcours des seules tables
+     * dont l'ensemble de prédicats contient ceux de la requête. Comme chaque ligne a au moins un objet
+     * par colonne, les patrons à objet variable sont satisfaits d'office ; seuls les objets constants
+     * sont vérifiés.
+     */
+    @Override
+    public Iterator<Substitution> match(StarQuery q) {
+        Variable center = q.getCentralVariable();
+        List<RDFTriple> patterns = q.getRdfAtoms();
+        if (patterns.isEmpty()) {
+            return Collections.emptyIterator();
+        }
+
+        int[] predicates = new int[patterns.size()];
+        int[] objects = new int[patterns.size()];
+        for (int i = 0; i < patterns.size(); i++) {
+            RDFTriple pattern = patterns.get(i);
+            Term pTerm = pattern.getTriplePredicate();
+            Term oTerm = pattern.getTripleObject();
+            if (!pattern.getTripleSubject().equals(center) || oTerm.equals(center) || pTerm instanceof Variable) {
+                return EncodedRDFStorage.super.match(q);
+            }
+            predicates[i] = dict.encodeIfExists(pTerm);
+            objects[i] = idOrAny(oTerm);
+            if (predicates[i] < 0 || objects[i] < 0) {
+                return Collections.emptyIterator();
+            }
+        }
+
+        int[] wanted = Arrays.stream(predicates).distinct().sorted().toArray();
+        int[] answers = new int[16];
+        int n = 0;
+        int[] columns = new int[patterns.size()];
+        for (PropertyTable table : tablesFor(wanted)) {
+            for (int i = 0; i < predicates.length; i++) {
+                columns[i] = table.column(predicates[i]);
+            }
+            for (int row = 0; row < table.rows(); row++) {
+                if (matchesObjects(table, row, columns, objects)) {
+                    if (n == answers.length) answers = Arrays.copyOf(answers, n * 2);
+                    answers[n++] = table.subject(row);
+                }
+            }
+        }
+
+        return Arrays.stream(answers, 0, n)
+                .mapToObj(id -> {
+                    Substitution sub = new SubstitutionImpl();
+                    sub.add(center, dict.decode(id));
+                    return sub;
+                })
+                .iterator();
+    }
+
+    /** Les tables dont l'ensemble de prédicats contient ceux demandés (distincts et triés). */
+    private synchronized List<PropertyTable> tablesFor(int[] wanted) {
+        layout();
+        List<PropertyTable> matching = new ArrayList<>();
+        for (PropertyTable table : tables.values()) {
+            if (table.hasAllPredicates(wanted)) matching.add(table);
+        }
+        return matching;
+    }
+
+    private static boolean matchesObjects(PropertyTable table, int row, int[] columns, int[] objects) {
+        for (int i = 0; i < objects.length; i++) {
+            if (objects[i] != PropertyTable.ANY && !table.hasObject(row, columns[i], objects[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long howMany(RDFTriple pattern) {
+        Term sTerm = pattern.getTripleSubject();
+        Term pTerm = pattern.getTriplePredicate();
+        Term oTerm = pattern.getTripleObject();
+
+        // une variable répétée impose une égalité : on compte les réponses
+        if ((sTerm instanceof Variable && (sTerm.equals(pTerm) || sTerm.equals(oTerm)))
+                || (pTerm instanceof Variable && pTerm.equals(oTerm))) {
+            long count = 0;
+            Iterator<Substitution> it = match(pattern);
+            while (it.hasNext()) {
+                it.next();
+                count++;
+            }
+            return count;
+        }
+
+        TripleCursor cursor = cursor(pattern);
+        if (cursor == null) return 0;
+        long count = 0;
+        while (cursor.next()) count++;
+        return count;
+    }
+
+    @Override
+    public synchronized long size() {
+        return tripleCount;
+    }
+
+    @Override
+    public synchronized Collection<RDFTriple> getAtoms() {
+        layout();
+        List<RDFTriple> decoded = new ArrayList<>();
+        for (PropertyTable table : tables.values()) {
+            TripleCursor cursor = table.cursor(0, table.rows(), PropertyTable.ANY, PropertyTable.ANY);
+            while (cursor.next()) {
+                decoded.add(new RDFTriple(dict.decode(cursor.first()), dict.decode(cursor.second()), dict.decode(cursor.third())));
+            }
+        }
+        return Collections.unmodifiableList(decoded);
+    }
+}
@@ -0,0 +1,149 @@
+package qengine.storage;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Ensembles caractéristiques (characteristic sets) d'un graphe RDF :
+ * l'ensemble caractéristique d'un sujet est l'ensemble des prédicats qu'il utilise.
+ * Pour chaque ensemble distinct, on garde le nombre de sujets qui l'ont et, pour chacun de ses prédicats,
+ * le nombre total de triplets (un prédicat multi-valué compte plusieurs fois).
+ * <p>
+ * Une étoile centrée sur le sujet {?x p1 o1 . ... ?x pk ok} ne peut avoir de réponses que parmi
+ * les sujets dont l'ensemble contient {p1..pk} : l'estimation se fait ensemble par ensemble,
+ * sans supposer les prédicats indépendants.
+ */
+public final class CharacteristicSets {
+
+    private final Map<Key, Stats> sets;
+    private final long subjects;
+
+    private CharacteristicSets(Map<Key, Stats> sets, long subjects) {
+        this.sets = sets;
+        this.subjects = subjects;
+    }
+
+    /**
+     * Calcule les ensembles caractéristiques à partir d'un index spo :
+     * pour chaque sujet, ses prédicats (triés) et le nombre de triplets par prédicat.
+     */
+    static CharacteristicSets compute(TripleIndex.View spo) {
+        Map<Key, Stats> sets = new HashMap<>();
+        long subjects = 0;
+
+        PostingList subjectIds = spo.firsts();
+        while (!subjectIds.atEnd()) {
+            int s = subjectIds.current();
+            subjectIds.next();
+            subjects++;
+
+            PostingList predicateIds = spo.seconds(s);
+            int[] predicates = new int[predicateIds.sizeEstimate()];
+            long[] occurrences = new long[predicates.length];
+            int n = 0;
+            while (!predicateIds.atEnd()) {
+                int p = predicateIds.current();
+                predicateIds.next();
+                predicates[n] = p;
+                occurrences[n] = spo.count(s, p);
+                n++;
+            }
+
+            Stats stats = sets.computeIfAbsent(new Key(Arrays.copyOf(predicates, n)), k -> new Stats(k.predicates.length));
+            stats.subjects++;
+            for (int i = 0; i < n; i++) {
+                stats.occurrences[i] += occurrences[i];
+            }
+        }
+        return new CharacteristicSets(sets, subjects);
+    }
+
+    /** Nombre d'ensembles caractéristiques distincts. */
+    public int size() {
+        return sets.size();
+    }
+
+    /** Nombre de sujets distincts du graphe. */
+    public long distinctSubjects() {
+        return subjects;
+    }
+
+    /** Nombre exact de sujets ayant au moins un triplet pour chacun des prédicats donnés. */
+    public long subjectsWithAll(int... predicates) {
+        int[] wanted = distinctSorted(predicates);
+        long count = 0;
+        for (Map.Entry<Key, Stats> e : sets.entrySet()) {
+            if (e.getKey().containsAll(wanted)) {
+                count += e.getValue().subjects;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Estime le nombre de valeurs distinctes du sujet central d'une étoile.
+     *
+     * @param predicates  le prédicat de chaque patron (répétitions possibles)
+     * @param selectivity pour chaque patron, la fraction des triplets du prédicat qui ont le bon objet
+     *                    (1 si l'objet est une variable)
+     */
+    public double estimateStar(int[] predicates, double[] selectivity) {
+        int[] wanted = distinctSorted(predicates);
+        double estimate = 0;
+        for (Map.Entry<Key, Stats> e : sets.entrySet()) {
+            Key key = e.getKey();
+            if (!key.containsAll(wanted)) continue;
+
+            Stats stats = e.getValue();
+            double matching = stats.subjects;
+            for (int i = 0; i < predicates.length; i++) {
+                if (selectivity[i] >= 1) continue;
+                // nombre moyen de triplets du prédicat par sujet de cet ensemble, filtré par l'objet
+                double perSubject = (double) stats.occurrences[key.indexOf(predicates[i])] / stats.subjects;
+                matching *= Math.min(1.0, perSubject * selectivity[i]);
+            }
+            estimate += matching;
+        }
+        return estimate;
+    }
+
+    private static int[] distinctSorted(int[] values) {
+        return Arrays.stream(values).distinct().sorted().toArray();
+    }
+
+    /** Ensemble de prédicats, trié. */
+    record Key(int[] predicates) {
+
+        int indexOf(int predicate) {
+            return Arrays.binarySearch(predicates, predicate);
+        }
+
+        boolean containsAll(int[] sortedWanted) {
+            if (sortedWanted.length > predicates.length) return false;
+            for (int p : sortedWanted) {
+                if (indexOf(p) < 0) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && Arrays.equals(predicates, other.predicates);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(predicates);
+        }
+    }
+
+    private static final class Stats {
+        private long subjects;
+        private final long[] occurrences;
+
+        Stats(int predicates) {
+            this.occurrences = new long[predicates];
+        }
+    }
+}
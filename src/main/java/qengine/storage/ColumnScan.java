@@ -0,0 +1,75 @@
+package qengine.storage;
+
+/**
+ * Sélection des lignes d'une table en colonnes (sujets, prédicats, objets) qui ont les valeurs voulues,
+ * 0 signifiant "n'importe laquelle". Le résultat est un vecteur de sélection : les numéros de ligne
+ * retenus, dans l'ordre.
+ * <p>
+ * Si le module {@code jdk.incubator.vector} est présent ({@code --add-modules jdk.incubator.vector}),
+ * la comparaison se fait par vecteurs ({@link VectorColumnScan}) ; sinon, ou avec
+ * {@code -Dqengine.scan.scalar=true}, par une simple boucle.
+ */
+final class ColumnScan {
+
+    static final int ANY = 0;
+
+    /** Vrai si les sélections passent par l'API Vector. */
+    static final boolean VECTORIZED = vectorAvailable();
+
+    private ColumnScan() {
+    }
+
+    // VectorColumnScan n'est chargée qu'ici : sans le module, son chargement échoue et on reste en scalaire
+    private static boolean vectorAvailable() {
+        if (Boolean.getBoolean("qengine.scan.scalar")) return false;
+        try {
+            return VectorColumnScan.lanes() > 1;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Range dans selection, à partir de l'indice 0, les lignes de [from, to) qui correspondent.
+     * selection doit pouvoir contenir to - from entrées.
+     *
+     * @return le nombre de lignes retenues
+     */
+    static int select(int[] subjects, int[] predicates, int[] objects, int from, int to,
+                      int s, int p, int o, int[] selection) {
+        if (s == ANY && p == ANY && o == ANY) {
+            for (int row = from; row < to; row++) selection[row - from] = row;
+            return to - from;
+        }
+        if (VECTORIZED) {
+            return VectorColumnScan.select(subjects, predicates, objects, from, to, s, p, o, selection);
+        }
+        return selectScalar(subjects, predicates, objects, from, to, s, p, o, selection, 0);
+    }
+
+    /** Nombre de lignes de [from, to) qui correspondent, sans les ranger. */
+    static int count(int[] subjects, int[] predicates, int[] objects, int from, int to, int s, int p, int o) {
+        if (s == ANY && p == ANY && o == ANY) return to - from;
+        if (VECTORIZED) {
+            return VectorColumnScan.count(subjects, predicates, objects, from, to, s, p, o);
+        }
+        int n = 0;
+        for (int row = from; row < to; row++) {
+            if ((s == ANY || subjects[row] == s) && (p == ANY || predicates[row] == p) && (o == ANY || objects[row] == o)) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /** Version scalaire, qui sert aussi pour la fin de bloc qui ne remplit pas un vecteur. */
+    static int selectScalar(int[] subjects, int[] predicates, int[] objects, int from, int to,
+                            int s, int p, int o, int[] selection, int n) {
+        for (int row = from; row < to; row++) {
+            if ((s == ANY || subjects[row] == s) && (p == ANY || predicates[row] == p) && (o == ANY || objects[row] == o)) {
+                selection[n++] = row;
+            }
+        }
+        return n;
+    }
+}
@@ -1,44 +1,508 @@
 package qengine.storage;
 
 import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
 
+/**
+ * Dictionnaire Term <-> ID spécialisé sur les entiers primitifs.
+ * <ul>
+ *     <li>term -> id : tables de hachage à adressage ouvert (sondage linéaire), deux tableaux parallèles
+ *     {@code Term[]} / {@code int[]}, aucun {@code Integer} alloué ; les termes sont répartis sur
+ *     {@value #SEGMENTS} segments selon leur hash, chacun avec sa table et son verrou ;</li>
+ *     <li>id -> term : tableau {@code Term[]} indexé par l'ID, découpé en pages de taille fixe
+ *     (les IDs sont denses et commencent à 1).</li>
+ *     <li>un ID libéré par {@link #release} (terme plus utilisé par aucun triplet) n'est jamais réattribué :
+ *     il ne se décode plus, et le terme, s'il revient, reçoit un nouvel ID ; les IDs libérés sont notés
+ *     à part ({@link #isReleased}). Leur case garde le terme ({@link #releasedTerm}), pour qu'un ID encodé
+ *     avant sa libération puisse être ré-encodé (voir {@code RDFHexaStore#addAllEncoded}).</li>
+ *     <li>octets -> id : second index, rempli par {@link #encode(byte[], int, int)} pendant le chargement rapide
+ *     (voir {@code NTriplesFastParser}) ; les octets des termes sont rangés bout à bout dans une seule arène.</li>
+ * </ul>
+ * Plusieurs threads peuvent encoder en même temps ({@link #encode(Term)}) : un terme déjà connu est trouvé
+ * sans verrou ; un nouveau terme est inséré sous le verrou de son segment seulement, et reçoit son ID
+ * d'un compteur atomique, donc deux threads qui insèrent dans des segments différents ne s'attendent pas.
+ * Les lectures ({@link #encodeIfExists}, {@link #decode}) ne prennent aucun verrou : les tables sont publiées
+ * par des références {@code volatile}, une table agrandie est remplie avant d'être publiée, et dans une table
+ * publiée l'ID puis le terme sont écrits en mode release (lus en acquire). Un ID n'est visible qu'une fois
+ * publié : son terme rangé des deux côtés, et tous les IDs plus petits publiés aussi ({@code published},
+ * qui avance dans l'ordre des IDs). {@link #size()} ne compte que ceux-là, et chacun se décode (sauf s'il
+ * est libéré) ; un ID est publié avant que {@code encode} le renvoie.
+ * {@link #encoder()} et {@link #decoder()} figent les deux sens pour une lecture qui doit voir le dictionnaire
+ * d'un instant donné (voir {@code RDFHexaStore}). {@link #release} et {@link #reserve} prennent tous les verrous.
+ * L'index octets -> id reste réservé à un seul thread (un dictionnaire local par morceau de fichier).
+ */
 public class Dictionary {
 
-    private final Map<Term, Integer> term2id = new HashMap<>();
-    private final Map<Integer, Term> id2term = new HashMap<>();
-    private int nextId = 1; // on commence à 1 pour éviter 0 comme valeur "spéciale"
+    private static final int NO_ID = -1;
+
+    private static final int SEGMENT_BITS = 6;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+    private static final int SEGMENT_CAPACITY = 1 << 4;   // toujours une puissance de 2
+    private static final int INITIAL_CAPACITY = 1 << 10;  // index octets -> id
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+
+    private static final VarHandle KEYS = MethodHandles.arrayElementVarHandle(Term[].class);
+    private static final VarHandle IDS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle BITS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /** Table term -> id (slot libre <=> keys[i] == null ; ids[i] == 0 pour un terme libéré ou pas encore publié). */
+    private static final class Table {
+        final Term[] keys;
+        final int[] ids;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new Term[capacity];
+            ids = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        private Table(Term[] keys, int[] ids) {
+            this.keys = keys;
+            this.ids = ids;
+            this.mask = keys.length - 1;
+        }
+
+        Table copy() {
+            return new Table(keys.clone(), ids.clone());
+        }
+
+        /**
+         * Cherche la case du terme : soit la case qui le contient, soit la première case libre
+         * de sa séquence de sondage (là où il faudrait l'insérer).
+         */
+        int slotOf(Term t) {
+            int i = mix(t.hashCode()) & mask;
+            Term k;
+            while ((k = (Term) KEYS.getAcquire(keys, i)) != null && !k.equals(t)) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        /** L'ID du terme, ou 0 s'il est absent, libéré ou pas encore publié (ID >= limit). */
+        int find(Term t, int limit) {
+            int slot = slotOf(t);
+            if (keys[slot] == null) return 0;
+            int id = (int) IDS.getAcquire(ids, slot);
+            return id < limit ? id : 0;
+        }
+
+        // l'ID d'abord : une lecture qui voit le terme voit aussi son ID
+        void put(int slot, Term t, int id) {
+            IDS.setRelease(ids, slot, id);
+            KEYS.setRelease(keys, slot, t);
+        }
+    }
+
+    /** Un segment de la table term -> id ; le verrou protège les insertions et le rehash. */
+    private static final class Segment extends ReentrantLock {
+        volatile Table table = new Table(SEGMENT_CAPACITY);
+        int used;   // cases occupées, termes libérés compris (sous le verrou)
+
+        // la nouvelle table est remplie entièrement avant d'être publiée ; les termes libérés disparaissent
+        void rehash(int capacity) {
+            Table old = table;
+            Table tab = new Table(capacity);
+            int kept = 0;
+            for (int j = 0; j < old.keys.length; j++) {
+                if (old.keys[j] == null || old.ids[j] == 0) continue;
+                int i = mix(old.keys[j].hashCode()) & tab.mask;
+                while (tab.keys[i] != null) {
+                    i = (i + 1) & tab.mask;
+                }
+                tab.keys[i] = old.keys[j];
+                tab.ids[i] = old.ids[j];
+                kept++;
+            }
+            used = kept;
+            table = tab;
+        }
+    }
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    // tables actuelles des segments, republiées quand l'une d'elles est remplacée (rehash, release) :
+    // encoder() n'a rien à recopier
+    private volatile Table[] tables = new Table[SEGMENTS];
+
+    // table id -> term par pages de 2^PAGE_BITS (la case 0 n'est jamais utilisée) ; pages créées à la demande
+    private volatile Term[][] pages = {new Term[1 << PAGE_BITS]};
+    private final AtomicInteger nextId = new AtomicInteger(1); // on commence à 1 pour éviter 0 comme valeur "spéciale"
+    // les IDs < published sont publiés : terme rangé dans les pages et dans la table
+    private final AtomicInteger published = new AtomicInteger(1);
+    private volatile int released = 0;
+
+    // IDs libérés (ou réservés sans terme), un bit par ID : écrit sous tous les verrous, lu sans verrou
+    private volatile long[] releasedIds = new long[1];
+
+    // prévenu de chaque ID libéré, sous tous les verrous, avant que les tables qui l'oublient soient publiées
+    private volatile IntConsumer releaseListener = id -> {
+    };
+
+    // IDs retenus par hold, avec leur nombre de retenues : release les saute (sous le verrou de held)
+    private final Map<Integer, Integer> held = new HashMap<>();
+
+    // index octets -> id, créé au premier appel de encode(byte[], ...) (slot libre <=> byteIds[i] == 0)
+    private int[] byteIds;
+    private int[] byteHashes;
+    private int[] byteStarts;
+    private int[] byteLengths;
+    private int byteMask;
+    private int byteCount;
+    private byte[] arena;
+    private int arenaSize;
+
+    public Dictionary() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+        publishTables();
+    }
+
+    // sous le verrou du segment dont la table vient d'être remplacée (ou de tous) : aucune insertion
+    // ne va dans la nouvelle table avant qu'elle soit publiée ici
+    private synchronized void publishTables() {
+        Table[] published = new Table[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            published[i] = segments[i].table;
+        }
+        tables = published;
+    }
+
+    private Segment segmentOf(Term t) {
+        return segments[mix(t.hashCode()) >>> (32 - SEGMENT_BITS)];
+    }
 
     /** renvoie l’ID d’un terme :
-     * s’il n’existe pas, on crée un nouvel ID, on l'insère dans les deux maps, et puis on renvoie l’ID. */
+     * s’il n’existe pas, on crée un nouvel ID, on l'insère dans les deux tables, et puis on renvoie l’ID. */
     public int encode(Term t) {
-        Integer id = term2id.get(t);
-        if (id != null) return id;
-        int nid = nextId++;
-        term2id.put(t, nid);
-        id2term.put(nid, t);
-        return nid;
+        Segment seg = segmentOf(t);
+        int id = seg.table.find(t, published.get());
+        if (id != 0) return id;
+
+        seg.lock();
+        try {
+            // un autre thread l'a peut-être inséré entre-temps
+            Table tab = seg.table;
+            int slot = tab.slotOf(t);
+            boolean fresh = tab.keys[slot] == null;
+            if (!fresh && tab.ids[slot] != 0) return tab.ids[slot];
+
+            int nid = nextId.getAndIncrement();
+            store(nid, t);
+            tab.put(slot, t, nid);
+            publish(nid);
+
+            // facteur de charge max 1/2 : les sondes restent courtes
+            if (fresh && ++seg.used * 2 > tab.keys.length) {
+                seg.rehash(tab.keys.length << 1);
+                publishTables();
+            }
+            return nid;
+        } finally {
+            seg.unlock();
+        }
+    }
+
+    /**
+     * Publie l'ID une fois son terme rangé. Les IDs sont publiés dans l'ordre : on attend que les IDs
+     * précédents, donnés au même moment à d'autres threads (sous d'autres verrous de segment), le soient.
+     * Il ne leur reste que quelques écritures à faire, sans attendre de verrou tenu ici.
+     */
+    private void publish(int id) {
+        while (published.get() != id) {
+            Thread.onSpinWait();
+        }
+        published.set(id + 1);
+    }
+
+    // range le terme de l'ID (sous le verrou d'un segment, ou de tous) ; visible des lectures une fois publié
+    private void store(int id, Term t) {
+        int p = id >>> PAGE_BITS;
+        Term[][] dir = pages;
+        if (p >= dir.length || dir[p] == null) dir = addPage(p);
+        dir[p][id & PAGE_MASK] = t;
+    }
+
+    // un répertoire agrandi partage les pages existantes avec l'ancien
+    private synchronized Term[][] addPage(int p) {
+        Term[][] dir = pages;
+        if (p >= dir.length) {
+            dir = Arrays.copyOf(dir, Math.max(dir.length << 1, p + 1));
+        }
+        if (dir[p] == null) {
+            dir[p] = new Term[1 << PAGE_BITS];
+        }
+        pages = dir;
+        return dir;
+    }
+
+    private static Term termAt(Term[][] dir, int id) {
+        int p = id >>> PAGE_BITS;
+        Term[] page = p < dir.length ? dir[p] : null;
+        return page == null ? null : page[id & PAGE_MASK];
+    }
+
+    /**
+     * Encode un terme donné par ses octets UTF-8 (valeur brute : IRI sans chevrons, ou forme lexicale
+     * d'un littéral, comme le mode Raw d'Integraal). Si ces octets ont déjà été vus, aucun objet n'est créé ;
+     * sinon le Term est construit une seule fois et encodé comme par {@link #encode(Term)},
+     * donc un terme a le même ID quel que soit le chemin d'encodage.
+     */
+    public int encode(byte[] bytes, int from, int to) {
+        if (byteIds == null) {
+            byteIds = new int[INITIAL_CAPACITY];
+            byteHashes = new int[INITIAL_CAPACITY];
+            byteStarts = new int[INITIAL_CAPACITY];
+            byteLengths = new int[INITIAL_CAPACITY];
+            byteMask = INITIAL_CAPACITY - 1;
+            arena = new byte[1 << 16];
+        }
+
+        int length = to - from;
+        int h = hashBytes(bytes, from, to);
+        int i = mix(h) & byteMask;
+        int id;
+        while ((id = byteIds[i]) != 0) {
+            if (byteHashes[i] == h && byteLengths[i] == length
+                    && Arrays.equals(arena, byteStarts[i], byteStarts[i] + length, bytes, from, to)) {
+                if (!isReleased(id)) return id;
+                // terme libéré depuis : il reprend un nouvel ID, la case pointe dessus
+                id = encode(SameObjectTermFactory.instance().createOrGetLiteral(new String(bytes, from, length, StandardCharsets.UTF_8)));
+                byteIds[i] = id;
+                return id;
+            }
+            i = (i + 1) & byteMask;
+        }
+
+        id = encode(SameObjectTermFactory.instance().createOrGetLiteral(new String(bytes, from, length, StandardCharsets.UTF_8)));
+        if (arenaSize + length > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length << 1, arenaSize + length));
+        }
+        System.arraycopy(bytes, from, arena, arenaSize, length);
+        byteIds[i] = id;
+        byteHashes[i] = h;
+        byteStarts[i] = arenaSize;
+        byteLengths[i] = length;
+        arenaSize += length;
+
+        if (++byteCount * 2 > byteIds.length) {
+            rehashBytes(byteIds.length << 1);
+        }
+        return id;
     }
 
     // renvoie l’ID seulement si le terme est déjà connu, sinon -1
     public int encodeIfExists(Term t) {
-        return term2id.getOrDefault(t, -1);
+        int id = segmentOf(t).table.find(t, published.get());
+        return id != 0 ? id : NO_ID;
     }
 
-    // Retourne le Term pour un id, ou null si absent
+    // Retourne le Term pour un id, ou null si absent (pas encore publié, ou libéré)
     public Term decode(int id) {
-        return id2term.get(id);
+        if (id <= 0 || id >= published.get() || isReleased(id)) return null;
+        return termAt(pages, id);
     }
 
+    /** Le terme qu'avait un ID libéré par {@link #release}, ou null (ID pas libéré, ou réservé sans terme). */
+    public Term releasedTerm(int id) {
+        return isReleased(id) ? termAt(pages, id) : null;
+    }
+
+    /** true si l'ID a été libéré par {@link #release} (ou réservé déjà libéré par {@link #reserve}). */
+    public boolean isReleased(int id) {
+        long[] bits = releasedIds;
+        int w = id >>> 6;
+        return id > 0 && w < bits.length && ((long) BITS.getAcquire(bits, w) & (1L << id)) != 0;
+    }
+
+    // sous tous les verrous
+    private void markReleased(int id) {
+        long[] bits = releasedIds;
+        int w = id >>> 6;
+        if (w >= bits.length) bits = Arrays.copyOf(bits, Math.max(bits.length << 1, w + 1));
+        BITS.setRelease(bits, w, bits[w] | (1L << id));
+        releasedIds = bits;
+        released++;
+    }
+
+    /**
+     * Équivalent de {@link #encodeIfExists} figé sur l'état actuel : les termes encodés ensuite sont inconnus,
+     * et un terme libéré ensuite garde son ID (voir {@link #release(int...)}, qui ne modifie jamais une table publiée).
+     * À prendre quand aucun {@code release} n'a lieu en même temps. Ne recopie rien : un encodeur par version
+     * du store ne coûte qu'une lambda.
+     */
+    public ToIntFunction<Term> encoder() {
+        int limit = published.get();
+        Table[] tables = this.tables;
+        return t -> {
+            int id = tables[mix(t.hashCode()) >>> (32 - SEGMENT_BITS)].find(t, limit);
+            return id != 0 ? id : NO_ID;
+        };
+    }
+
+    /**
+     * Décodeur figé sur l'état actuel : les IDs attribués ensuite sont inconnus, et un ID libéré
+     * ensuite se décode toujours (voir {@link #release(int...)}, qui ne modifie jamais une page publiée).
+     */
+    public IntFunction<Term> decoder() {
+        int limit = published.get();
+        Term[][] dir = pages;
+        return id -> id > 0 && id < limit ? termAt(dir, id) : null;
+    }
+
+    /**
+     * Plus grand ID publié (les IDs libérés restent comptés : les IDs vont de 1 à size()). Un ID en cours
+     * d'attribution par un autre thread n'est pas compté tant que son terme n'est pas rangé.
+     */
     public int size() {
-        return term2id.size();
+        return published.get() - 1;
     }
-/**
-    public boolean contains(Term t) {
-        return term2id.containsKey(t);
+
+    /** Nombre d'IDs libérés par {@link #release}. */
+    public int released() {
+        return released;
+    }
+
+    /**
+     * Retient un ID que l'appelant insérera plus tard (après la validation d'un journal, voir
+     * {@code DurableRDFStorage}) : {@link #release} ne le libère pas avant le {@link #unhold} correspondant.
+     *
+     * @return false si l'ID est inconnu ou déjà libéré : il n'est pas retenu
+     */
+    boolean hold(int id) {
+        synchronized (held) {
+            if (decode(id) == null) return false;
+            held.merge(id, 1, Integer::sum);
+            return true;
+        }
     }
-**/
 
+    /**
+     * Sera prévenu de chaque ID libéré par {@link #release}, avant qu'un terme libéré puisse reprendre
+     * un nouvel ID (pour journaliser les libérations, voir {@code DurableRDFStorage}). Ne doit prendre
+     * aucun verrou que tient un appelant de {@code encode} ou de {@code release}.
+     */
+    void onRelease(IntConsumer listener) {
+        releaseListener = listener;
+    }
+
+    /** Rend un ID retenu par {@link #hold}. */
+    void unhold(int id) {
+        synchronized (held) {
+            held.computeIfPresent(id, (k, n) -> n == 1 ? null : n - 1);
+        }
+    }
+
+    /**
+     * Libère les IDs de termes qui n'apparaissent plus dans aucun triplet : {@link #decode} renvoie ensuite null
+     * et {@link #encodeIfExists} -1. Les pages ne sont pas modifiées (les décodeurs déjà donnés décodent
+     * toujours ces IDs, et {@link #releasedTerm} les retrouve) ; les tables touchées sont recopiées une fois
+     * pour tout le lot (les encodeurs déjà donnés gardent les anciennes). Dans la table term -> id, la case
+     * du terme est gardée (ID 0) pour ne pas déplacer les autres entrées, et disparaît au prochain rehash.
+     * Les IDs retenus ({@link #hold}) sont sautés.
+     */
+    public void release(int... ids) {
+        lockAll();
+        try {
+            Term[][] current = pages;
+            Table[] tables = new Table[SEGMENTS];
+            synchronized (held) {
+                for (int id : ids) {
+                    if (id <= 0 || id >= published.get() || isReleased(id) || held.containsKey(id)) continue;
+                    Term t = termAt(current, id);
+
+                    int s = mix(t.hashCode()) >>> (32 - SEGMENT_BITS);
+                    if (tables[s] == null) tables[s] = segments[s].table.copy();
+                    tables[s].ids[tables[s].slotOf(t)] = 0;
+                    markReleased(id);
+                    releaseListener.accept(id);
+                }
+            }
+            boolean replaced = false;
+            for (int s = 0; s < SEGMENTS; s++) {
+                if (tables[s] != null) {
+                    segments[s].table = tables[s];
+                    replaced = true;
+                }
+            }
+            if (replaced) publishTables();
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Attribue un ID sans terme, déjà libéré : pour relire un dictionnaire qui a des trous
+     * (instantané, journal) en gardant les mêmes IDs.
+     */
+    int reserve() {
+        lockAll();
+        try {
+            int nid = nextId.getAndIncrement();
+            store(nid, null);
+            markReleased(nid);
+            publish(nid);
+            return nid;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    // toujours dans le même ordre : pas d'interblocage entre deux appels
+    private void lockAll() {
+        for (Segment seg : segments) seg.lock();
+    }
+
+    private void unlockAll() {
+        for (int i = SEGMENTS - 1; i >= 0; i--) segments[i].unlock();
+    }
+
+    private void rehashBytes(int capacity) {
+        int[] oldIds = byteIds, oldHashes = byteHashes, oldStarts = byteStarts, oldLengths = byteLengths;
+        byteIds = new int[capacity];
+        byteHashes = new int[capacity];
+        byteStarts = new int[capacity];
+        byteLengths = new int[capacity];
+        byteMask = capacity - 1;
+        for (int j = 0; j < oldIds.length; j++) {
+            if (oldIds[j] == 0) continue;
+            int i = mix(oldHashes[j]) & byteMask;
+            while (byteIds[i] != 0) {
+                i = (i + 1) & byteMask;
+            }
+            byteIds[i] = oldIds[j];
+            byteHashes[i] = oldHashes[j];
+            byteStarts[i] = oldStarts[j];
+            byteLengths[i] = oldLengths[j];
+        }
+    }
+
+    private static int hashBytes(byte[] bytes, int from, int to) {
+        int h = 1;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + bytes[i];
+        }
+        return h;
+    }
+
+    // brasse les bits du hashCode pour que le masque ne garde pas que les bits faibles
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
 }
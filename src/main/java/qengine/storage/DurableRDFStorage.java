@@ -0,0 +1,472 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Term;
+import qengine.model.RDFTriple;
+import qengine.model.StarQuery;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Store encodé ({@link RDFHexaStore}, {@link GiantTable}, ...) dont les ajouts et les suppressions
+ * sont journalisés dans un {@link WriteAheadLog} : après un arrêt brutal, {@link #open} relit le journal
+ * et retrouve toutes les modifications validées.
+ * <p>
+ * Le journal contient les ajouts faits depuis l'état du store passé à {@link #open} : typiquement
+ * un store vide, ou un instantané ouvert par {@link RDFHexaStore#open}. {@link #checkpoint} écrit
+ * un nouvel instantané puis vide le journal.
+ * <p>
+ * Écriture anticipée : une modification est d'abord comparée au store (un doublon, ou la suppression
+ * d'un triplet absent, n'est pas journalisé), puis journalisée et validée, et seulement ensuite appliquée
+ * au store. Une lecture ne voit donc que des triplets déjà sur disque ; si l'écriture du journal échoue,
+ * la modification n'est pas appliquée. Les modifications de plusieurs threads partagent le même
+ * {@code force} (validation groupée), et sont appliquées dans l'ordre du journal par le premier thread
+ * qui les trouve validées ; celles en attente comptent déjà pour les modifications suivantes. Les ajouts
+ * en bloc ({@code addAll}, {@code addAllEncoded}) ne font qu'un {@code force} à la fin.
+ * <p>
+ * Entre l'encodage d'un terme et l'application de l'ajout, une compaction du store pourrait libérer
+ * son ID (voir {@link RDFHexaStore}) : les IDs des ajouts en attente sont retenus ({@link Dictionary#hold}).
+ */
+public final class DurableRDFStorage implements EncodedRDFStorage, Closeable {
+
+    // au-delà, un ajout en bloc est coupé en plusieurs trames
+    private static final int MAX_FRAME_BYTES = 1 << 20;
+
+    /** Sauvegarde de l'état du store, faite par {@link #checkpoint}. */
+    @FunctionalInterface
+    public interface Checkpoint {
+        void save() throws IOException;
+    }
+
+    /** Triplet encodé, clé de {@link #staged}. */
+    private record Triple(int s, int p, int o) {
+    }
+
+    /** Modification journalisée, appliquée au store une fois validée (voir {@link #commit(Pending)}). */
+    private static final class Pending {
+        final boolean removal;
+        int[] ids = new int[3];
+        int size;
+        long lsn;
+
+        Pending(boolean removal) {
+            this.removal = removal;
+        }
+
+        void add(int s, int p, int o) {
+            if (size + 3 > ids.length) ids = Arrays.copyOf(ids, ids.length * 2);
+            ids[size++] = s;
+            ids[size++] = p;
+            ids[size++] = o;
+        }
+    }
+
+    private final EncodedRDFStorage store;
+    private final WriteAheadLog log;
+
+    // sous le verrou de this : modifications journalisées pas encore appliquées, dans l'ordre du journal,
+    // et pour chaque triplet qu'elles touchent, la dernière d'entre elles (sa présence à venir)
+    private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+    private final Map<Triple, Pending> staged = new HashMap<>();
+
+    // les IDs du dictionnaire jusqu'à celui-ci sont déjà dans le journal (ou dans l'état de départ)
+    private int loggedTerms;
+
+    // IDs libérés par les compactions du store, pas encore journalisés (sous leur propre verrou :
+    // la compaction qui les ajoute tient le verrou du store, qu'un thread peut attendre sous celui de this)
+    private final List<Integer> releases = new ArrayList<>();
+
+    private DurableRDFStorage(EncodedRDFStorage store, WriteAheadLog log) {
+        this.store = store;
+        this.log = log;
+        this.loggedTerms = store.getDictionary().size();
+        store.getDictionary().onRelease(id -> {
+            synchronized (releases) {
+                releases.add(id);
+            }
+        });
+    }
+
+    /**
+     * Rejoue le journal (créé s'il n'existe pas) dans le store, puis journalise les modifications suivantes.
+     * Les triplets relus sont ajoutés par blocs ({@link EncodedRDFStorage#addAllEncoded}), un bloc
+     * s'arrêtant à chaque suppression pour garder l'ordre du journal ; ceux déjà présents sont ignorés :
+     * rejouer deux fois le même journal ne change rien. Les compactions automatiques sont suspendues
+     * pendant la relecture : un ID n'est libéré que par les enregistrements 'R' du journal, là où
+     * la compaction d'origine l'avait libéré.
+     */
+    public static DurableRDFStorage open(EncodedRDFStorage store, Path logFile) throws IOException {
+        WriteAheadLog log = new WriteAheadLog(logFile);
+        Dictionary dict = store.getDictionary();
+        store.setAutoCompaction(false);
+        try {
+            int[][] ids = {new int[3 * 1024]};
+            int[] size = {0};
+            log.replay(new WriteAheadLog.Replay() {
+                @Override
+                public void term(int id, Term term) throws IOException {
+                    int encoded = term == null ? dict.reserve() : dict.encode(term);
+                    if (encoded != id) {
+                        throw new IOException(logFile + " : le terme " + term + " a l'ID " + encoded
+                                + " dans le store, " + id + " dans le journal");
+                    }
+                }
+
+                @Override
+                public void triple(int s, int p, int o) {
+                    if (size[0] + 3 > ids[0].length) ids[0] = Arrays.copyOf(ids[0], ids[0].length * 2);
+                    ids[0][size[0]++] = s;
+                    ids[0][size[0]++] = p;
+                    ids[0][size[0]++] = o;
+                }
+
+                @Override
+                public void removal(int s, int p, int o) {
+                    if (size[0] > 0) store.addAllEncoded(ids[0], size[0]);
+                    size[0] = 0;
+                    store.removeEncoded(s, p, o);
+                }
+
+                @Override
+                public void release(int id) throws IOException {
+                    if (id <= 0 || id > dict.size()) {
+                        throw new IOException(logFile + " : libération de l'ID " + id + ", inconnu du dictionnaire");
+                    }
+                    if (size[0] > 0) store.addAllEncoded(ids[0], size[0]);
+                    size[0] = 0;
+                    dict.release(id);
+                }
+            });
+            if (size[0] > 0) store.addAllEncoded(ids[0], size[0]);
+        } catch (IOException | RuntimeException e) {
+            store.setAutoCompaction(true);
+            log.close();
+            throw e;
+        }
+        DurableRDFStorage durable = new DurableRDFStorage(store, log);
+        // les compactions ne reprennent qu'une fois leurs libérations suivies par le journal
+        store.setAutoCompaction(true);
+        return durable;
+    }
+
+    @Override
+    public boolean add(RDFTriple triple) {
+        Dictionary dict = store.getDictionary();
+        Pending op = new Pending(false);
+        synchronized (this) {
+            int s = hold(dict.encode(triple.getTripleSubject()));
+            int p = hold(dict.encode(triple.getTriplePredicate()));
+            int o = hold(dict.encode(triple.getTripleObject()));
+            stageAddition(op, s, p, o);
+            if (!seal(op)) return false;
+        }
+        commit(op);
+        return true;
+    }
+
+    @Override
+    public boolean addEncoded(int s, int p, int o) {
+        Pending op = new Pending(false);
+        synchronized (this) {
+            int[] ids = holdAll(new int[]{s, p, o}, 3);
+            stageAddition(op, ids[0], ids[1], ids[2]);
+            if (!seal(op)) return false;
+        }
+        commit(op);
+        return true;
+    }
+
+    /** Ajout en bloc : une seule validation à la fin. */
+    @Override
+    public boolean addAll(Stream<RDFTriple> atoms) {
+        Dictionary dict = store.getDictionary();
+        Pending op = new Pending(false);
+        synchronized (this) {
+            for (Iterator<RDFTriple> it = atoms.iterator(); it.hasNext(); ) {
+                RDFTriple triple = it.next();
+                int s = hold(dict.encode(triple.getTripleSubject()));
+                int p = hold(dict.encode(triple.getTriplePredicate()));
+                int o = hold(dict.encode(triple.getTripleObject()));
+                stageAddition(op, s, p, o);
+            }
+            if (!seal(op)) return false;
+        }
+        commit(op);
+        return true;
+    }
+
+    /**
+     * Ajout en bloc : seuls les triplets nouveaux sont journalisés, puis validés en une fois,
+     * et appliqués au store d'un seul {@link EncodedRDFStorage#addAllEncoded} (qui peut construire
+     * ses index d'un coup).
+     */
+    @Override
+    public long addAllEncoded(int[] ids, int size) {
+        Pending op = new Pending(false);
+        synchronized (this) {
+            int[] held = holdAll(ids, size);
+            for (int i = 0; i < size; i += 3) {
+                stageAddition(op, held[i], held[i + 1], held[i + 2]);
+            }
+            if (!seal(op)) return 0;
+        }
+        commit(op);
+        return op.size / 3;
+    }
+
+    @Override
+    public boolean remove(RDFTriple triple) {
+        Dictionary dict = store.getDictionary();
+        int s = dict.encodeIfExists(triple.getTripleSubject());
+        int p = dict.encodeIfExists(triple.getTriplePredicate());
+        int o = dict.encodeIfExists(triple.getTripleObject());
+        if (s < 0 || p < 0 || o < 0) return false;
+        return removeEncoded(s, p, o);
+    }
+
+    @Override
+    public boolean removeEncoded(int s, int p, int o) {
+        Pending op = new Pending(true);
+        synchronized (this) {
+            stageRemoval(op, s, p, o);
+            if (!seal(op)) return false;
+        }
+        commit(op);
+        return true;
+    }
+
+    /** Suppression en bloc : une seule validation à la fin. */
+    @Override
+    public boolean removeAll(Collection<RDFTriple> atoms) {
+        Dictionary dict = store.getDictionary();
+        Pending op = new Pending(true);
+        synchronized (this) {
+            for (RDFTriple triple : atoms) {
+                int s = dict.encodeIfExists(triple.getTripleSubject());
+                int p = dict.encodeIfExists(triple.getTriplePredicate());
+                int o = dict.encodeIfExists(triple.getTripleObject());
+                if (s >= 0 && p >= 0 && o >= 0) stageRemoval(op, s, p, o);
+            }
+            if (!seal(op)) return false;
+        }
+        commit(op);
+        return true;
+    }
+
+    // retient l'ID jusqu'à ce que l'ajout soit appliqué (voir Dictionary#hold) ; un ID libéré entre
+    // son encodage et ici redonne son terme, qui reprend un nouvel ID
+    private int hold(int id) {
+        Dictionary dict = store.getDictionary();
+        while (!dict.hold(id)) {
+            Term t = dict.releasedTerm(id);
+            if (t == null) throw new IllegalArgumentException("ID inconnu : " + id);
+            id = dict.encode(t);
+        }
+        return id;
+    }
+
+    // retient tous les IDs (dans une copie) avant de journaliser quoi que ce soit : un ID inconnu
+    // est refusé sans rien laisser dans la trame
+    private int[] holdAll(int[] ids, int size) {
+        int[] held = new int[size];
+        int i = 0;
+        try {
+            for (; i < size; i++) held[i] = hold(ids[i]);
+        } catch (RuntimeException e) {
+            for (int j = 0; j < i; j++) store.getDictionary().unhold(held[j]);
+            throw e;
+        }
+        return held;
+    }
+
+    // présence du triplet une fois appliquées les modifications en attente
+    private boolean contains(int s, int p, int o) {
+        Pending last = staged.get(new Triple(s, p, o));
+        return last != null ? !last.removal : store.containsEncoded(s, p, o);
+    }
+
+    // journalise l'ajout (IDs retenus) s'il change quelque chose ; sinon les IDs sont rendus
+    private void stageAddition(Pending op, int s, int p, int o) {
+        if (contains(s, p, o)) {
+            Dictionary dict = store.getDictionary();
+            dict.unhold(s);
+            dict.unhold(p);
+            dict.unhold(o);
+            return;
+        }
+        logTriple(s, p, o);
+        op.add(s, p, o);
+        staged.put(new Triple(s, p, o), op);
+    }
+
+    private void stageRemoval(Pending op, int s, int p, int o) {
+        if (!store.supportsRemoval()) {
+            throw new UnsupportedOperationException(store.getClass().getSimpleName() + " ne permet pas les suppressions");
+        }
+        if (!contains(s, p, o)) return;
+        log.removal(s, p, o);
+        op.add(s, p, o);
+        staged.put(new Triple(s, p, o), op);
+    }
+
+    // scelle la trame et met la modification en attente ; false si elle ne change rien
+    private boolean seal(Pending op) {
+        op.lsn = log.seal();
+        if (op.size == 0) return false;
+        pending.add(op);
+        return true;
+    }
+
+    // les termes créés depuis le dernier enregistrement, puis le triplet ; coupe la trame quand elle devient grosse
+    private void logTriple(int s, int p, int o) {
+        logDictionary();
+        log.triple(s, p, o);
+        if (log.frameSize() >= MAX_FRAME_BYTES) {
+            log.seal();
+        }
+    }
+
+    /**
+     * Journalise les IDs libérés depuis le dernier enregistrement, puis les termes créés (par add, ou directement
+     * via getDictionary()). Une libération passe avant le nouvel ID de son terme : la taille est lue avant
+     * de prendre les libérations, et un terme libéré ne reprend un ID qu'après que la libération est notée
+     * (voir {@link Dictionary#onRelease}).
+     */
+    private void logDictionary() {
+        Dictionary dict = store.getDictionary();
+        int size = dict.size();
+        synchronized (releases) {
+            for (int id : releases) {
+                // un ID pas encore journalisé le sera comme ID libéré, ci-dessous
+                if (id <= loggedTerms) log.release(id);
+            }
+            releases.clear();
+        }
+        while (loggedTerms < size) {
+            loggedTerms++;
+            // size() ne compte que des IDs publiés : un terme absent a forcément été libéré
+            log.term(loggedTerms, dict.isReleased(loggedTerms) ? null : dict.decode(loggedTerms));
+        }
+    }
+
+    /**
+     * Attend que la modification soit sur disque (validation groupée avec celles des autres threads),
+     * puis applique au store, dans l'ordre du journal, tout ce qui est validé. Si l'écriture échoue,
+     * rien de ce qui reste en attente n'est appliqué : le journal n'accepte plus rien, et le store
+     * garde l'état de ce qui est sur disque.
+     */
+    private void commit(Pending op) {
+        IOException failure = null;
+        try {
+            log.commit(op.lsn);
+        } catch (IOException e) {
+            failure = e;
+        }
+        synchronized (this) {
+            applyDurable();
+            if (failure != null) {
+                while (!pending.isEmpty()) forget(pending.poll());
+            }
+        }
+        if (failure != null) throw new UncheckedIOException(failure);
+    }
+
+    // sous le verrou de this
+    private void applyDurable() {
+        long durable = log.durable();
+        while (!pending.isEmpty() && pending.peek().lsn <= durable) {
+            Pending op = pending.poll();
+            if (op.removal) {
+                for (int i = 0; i < op.size; i += 3) store.removeEncoded(op.ids[i], op.ids[i + 1], op.ids[i + 2]);
+            } else if (op.size == 3) {
+                store.addEncoded(op.ids[0], op.ids[1], op.ids[2]);
+            } else {
+                store.addAllEncoded(op.ids, op.size);
+            }
+            forget(op);
+        }
+    }
+
+    // la modification n'est plus en attente : ses triplets ne sont plus suivis, ses IDs sont rendus
+    private void forget(Pending op) {
+        Dictionary dict = store.getDictionary();
+        for (int i = 0; i < op.size; i += 3) {
+            staged.remove(new Triple(op.ids[i], op.ids[i + 1], op.ids[i + 2]), op);
+        }
+        if (!op.removal) {
+            for (int i = 0; i < op.size; i++) dict.unhold(op.ids[i]);
+        }
+    }
+
+    /**
+     * Sauvegarde l'état complet du store (par exemple {@code () -> hexastore.save(instantané)}),
+     * puis vide le journal. Aucun ajout n'a lieu pendant la sauvegarde.
+     * Si la sauvegarde échoue, le journal est gardé tel quel.
+     */
+    public synchronized void checkpoint(Checkpoint checkpoint) throws IOException {
+        log.commit();
+        applyDurable();
+        checkpoint.save();
+        log.truncate();
+        loggedTerms = store.getDictionary().size();
+    }
+
+    @Override
+    public Dictionary getDictionary() {
+        return store.getDictionary();
+    }
+
+    @Override
+    public void freeze() {
+        store.freeze();
+    }
+
+    @Override
+    public Iterator<Substitution> match(RDFTriple pattern) {
+        return store.match(pattern);
+    }
+
+    @Override
+    public Iterator<Substitution> match(StarQuery q) {
+        return store.match(q);
+    }
+
+    @Override
+    public long howMany(RDFTriple pattern) {
+        return store.howMany(pattern);
+    }
+
+    @Override
+    public long size() {
+        return store.size();
+    }
+
+    @Override
+    public Collection<RDFTriple> getAtoms() {
+        return store.getAtoms();
+    }
+
+    /** Valide ce qui reste, l'applique au store, et ferme le journal. */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            logDictionary();
+            log.commit();
+            applyDurable();
+        } finally {
+            log.close();
+        }
+    }
+}
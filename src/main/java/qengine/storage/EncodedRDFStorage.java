@@ -0,0 +1,69 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Term;
+import qengine.model.RDFTriple;
+
+/**
+ * Stockage dont les triplets sont encodés par un {@link Dictionary}.
+ * L'encodage et l'insertion peuvent alors se faire séparément : d'abord tous les termes dans le
+ * dictionnaire, puis les triplets d'IDs dans les structures du store (ce qui permet de mesurer,
+ * ou de paralléliser, chaque étape à part).
+ */
+public interface EncodedRDFStorage extends RDFStorage {
+
+    /** Le dictionnaire du store ; les IDs passés à {@link #addEncoded} doivent en venir. */
+    Dictionary getDictionary();
+
+    /**
+     * Ajoute un triplet déjà encodé.
+     *
+     * @return true si le triplet a été ajouté, false s'il est déjà présent
+     */
+    boolean addEncoded(int s, int p, int o);
+
+    /**
+     * Ajoute des triplets déjà encodés, rangés par 3 dans ids[0..size) (s, p, o, s, p, o, ...).
+     * Par défaut, un addEncoded par triplet ; un store peut faire mieux en bloc.
+     *
+     * @return le nombre de triplets réellement ajoutés
+     */
+    default long addAllEncoded(int[] ids, int size) {
+        long added = 0;
+        for (int i = 0; i < size; i += 3) {
+            if (addEncoded(ids[i], ids[i + 1], ids[i + 2])) added++;
+        }
+        return added;
+    }
+
+    /**
+     * true si le triplet encodé est dans le store. Par défaut, {@link #howMany} sur le triplet décodé ;
+     * un store qui indexe ses triplets par IDs fait mieux.
+     */
+    default boolean containsEncoded(int s, int p, int o) {
+        Dictionary dict = getDictionary();
+        Term ts = dict.decode(s), tp = dict.decode(p), to = dict.decode(o);
+        return ts != null && tp != null && to != null && howMany(new RDFTriple(ts, tp, to)) > 0;
+    }
+
+    /** true si {@link #removeEncoded} est pris en charge. */
+    default boolean supportsRemoval() {
+        return false;
+    }
+
+    /**
+     * Retire un triplet déjà encodé. Par défaut, le store ne permet pas les suppressions.
+     *
+     * @return true si le triplet était présent
+     */
+    default boolean removeEncoded(int s, int p, int o) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " ne permet pas les suppressions");
+    }
+
+    /**
+     * Suspend ({@code false}) ou reprend les compactions que le store lance de lui-même après des suppressions
+     * (voir {@link RDFHexaStore}) : pendant la relecture d'un journal, les IDs libérés ne doivent pas dépendre
+     * du moment où une compaction en tâche de fond se termine. Par défaut, rien à faire.
+     */
+    default void setAutoCompaction(boolean enabled) {
+    }
+}
@@ -0,0 +1,351 @@
+package qengine.storage;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index (a, b, c) figé en lecture seule, au format CSR :
+ * <pre>
+ *   keys1  : clés a triées                        (une entrée par a distinct)
+ *   start2 : pour la i-ème clé a, ses clés b sont dans keys2[start2[i] .. start2[i+1]-1]
+ *   keys2  : clés b triées à l'intérieur de chaque bloc a
+ *   start3 : pour la j-ème paire (a, b), ses valeurs c sont dans leaves[start3[j] .. start3[j+1]-1]
+ *   leaves : valeurs c triées à l'intérieur de chaque bloc (a, b)
+ * </pre>
+ * Les préfixes communs ne sont stockés qu'une fois : ~4 octets par triplet pour les feuilles,
+ * contre plus de 100 octets pour les HashMap/HashSet boxés. Les recherches se font par dichotomie.
+ * <p>
+ * Les tableaux sont vus comme des {@link IntBuffer} : enveloppes de {@code int[]} pour un index construit
+ * en mémoire, vues d'un fichier projeté en mémoire pour un index ouvert depuis un instantané
+ * (voir {@link Snapshot}), dont les pages ne sont alors lues qu'à la demande.
+ */
+final class FrozenIndex {
+
+    static final FrozenIndex EMPTY = new Builder(0).build();
+
+    private final IntBuffer keys1;
+    private final IntBuffer start2;
+    private final IntBuffer keys2;
+    private final IntBuffer start3;
+    private final IntBuffer leaves;
+
+    FrozenIndex(IntBuffer keys1, IntBuffer start2, IntBuffer keys2, IntBuffer start3, IntBuffer leaves) {
+        this.keys1 = keys1;
+        this.start2 = start2;
+        this.keys2 = keys2;
+        this.start3 = start3;
+        this.leaves = leaves;
+    }
+
+    /** Nombre de triplets de l'index. */
+    int size() {
+        return leaves.limit();
+    }
+
+    /** Les cinq tableaux, dans l'ordre keys1, start2, keys2, start3, leaves (pour {@link Snapshot}). */
+    IntBuffer[] arrays() {
+        return new IntBuffer[]{keys1, start2, keys2, start3, leaves};
+    }
+
+    /** Position de a dans keys1, ou -1. */
+    int find1(int a) {
+        return search(keys1, 0, keys1.limit(), a);
+    }
+
+    /** Position de b dans le bloc de la clé a située en pos1, ou -1. */
+    int find2(int pos1, int b) {
+        return search(keys2, start2.get(pos1), start2.get(pos1 + 1), b);
+    }
+
+    /** Position de la paire (a, b) dans keys2, ou -1. */
+    int find(int a, int b) {
+        int pos1 = find1(a);
+        return pos1 < 0 ? -1 : find2(pos1, b);
+    }
+
+    boolean contains(int a, int b, int c) {
+        int pos2 = find(a, b);
+        return pos2 >= 0 && search(leaves, start3.get(pos2), start3.get(pos2 + 1), c) >= 0;
+    }
+
+    /** Dichotomie dans [from, to) ; position de key, ou -1. */
+    static int search(IntBuffer a, int from, int to, int key) {
+        int lo = from, hi = to - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int v = a.get(mid);
+            if (v < key) lo = mid + 1;
+            else if (v > key) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    /** Nombre de triplets (a, *, *) pour la clé a située en pos1. */
+    int count1(int pos1) {
+        return start3.get(start2.get(pos1 + 1)) - start3.get(start2.get(pos1));
+    }
+
+    /** Nombre de triplets (a, b, *) pour la paire située en pos2. */
+    int count2(int pos2) {
+        return start3.get(pos2 + 1) - start3.get(pos2);
+    }
+
+    int leavesFrom(int pos2) {
+        return start3.get(pos2);
+    }
+
+    int leavesTo(int pos2) {
+        return start3.get(pos2 + 1);
+    }
+
+    int leaf(int i) {
+        return leaves.get(i);
+    }
+
+    /** Toutes les clés a, unies aux clés (triées) du delta. */
+    PostingList firsts(int[] delta) {
+        return new PostingList(keys1, 0, keys1.limit(), delta);
+    }
+
+    /** Les clés b de la clé a située en pos1 (ou d'aucune si pos1 < 0), unies à celles du delta. */
+    PostingList seconds(int pos1, int[] delta) {
+        if (pos1 < 0) return new PostingList(keys2, 0, 0, delta);
+        return new PostingList(keys2, start2.get(pos1), start2.get(pos1 + 1), delta);
+    }
+
+    /** Les valeurs c de la paire située en pos2 (ou d'aucune si pos2 < 0), unies à celles du delta. */
+    PostingList thirds(int pos2, int[] delta) {
+        if (pos2 < 0) return new PostingList(leaves, 0, 0, delta);
+        return new PostingList(leaves, start3.get(pos2), start3.get(pos2 + 1), delta);
+    }
+
+    /**
+     * Comme les trois méthodes précédentes, sans les clés de removed (triée) : les clés gardées de
+     * [from, to) sont alors recopiées. Sert à cacher les clés dont tous les triplets ont été supprimés.
+     */
+    static PostingList without(IntBuffer keys, int from, int to, int[] removed, int[] delta) {
+        int[] kept = new int[to - from];
+        int n = 0;
+        int r = 0;
+        for (int i = from; i < to; i++) {
+            int key = keys.get(i);
+            while (r < removed.length && removed[r] < key) r++;
+            if (r < removed.length && removed[r] == key) continue;
+            kept[n++] = key;
+        }
+        return new PostingList(kept, 0, n, delta);
+    }
+
+    /** Toutes les clés a sauf celles de removed, unies aux clés du delta. */
+    PostingList firsts(int[] delta, int[] removed) {
+        if (removed.length == 0) return firsts(delta);
+        return without(keys1, 0, keys1.limit(), removed, delta);
+    }
+
+    /** Les clés b de la clé a située en pos1, sauf celles de removed, unies à celles du delta. */
+    PostingList seconds(int pos1, int[] delta, int[] removed) {
+        if (removed.length == 0 || pos1 < 0) return seconds(pos1, delta);
+        return without(keys2, start2.get(pos1), start2.get(pos1 + 1), removed, delta);
+    }
+
+    /** Les valeurs c de la paire située en pos2, sauf celles de removed, unies à celles du delta. */
+    PostingList thirds(int pos2, int[] delta, int[] removed) {
+        if (removed.length == 0 || pos2 < 0) return thirds(pos2, delta);
+        return without(leaves, start3.get(pos2), start3.get(pos2 + 1), removed, delta);
+    }
+
+    /** Curseur sur tous les triplets de l'index. */
+    TripleCursor cursor() {
+        return cursor(0, 0, 0, leaves.limit());
+    }
+
+    /** Curseur sur les triplets (a, *, *), a étant la clé située en pos1. */
+    TripleCursor cursor1(int pos1) {
+        return cursor(pos1, start2.get(pos1), start3.get(start2.get(pos1)), start3.get(start2.get(pos1 + 1)));
+    }
+
+    /** Curseur sur les triplets (a, b, *), la paire (a, b) étant située en pos1 / pos2. */
+    TripleCursor cursor2(int pos1, int pos2) {
+        return cursor(pos1, pos2, start3.get(pos2), start3.get(pos2 + 1));
+    }
+
+    /**
+     * Parcourt les feuilles [leafFrom, leafTo) en faisant suivre les positions dans keys1 / keys2.
+     * Chaque bloc (a) ou (a, b) contient au moins une feuille, donc il suffit d'avancer p1 / p2
+     * quand on sort de leur plage.
+     */
+    private TripleCursor cursor(int pos1, int pos2, int leafFrom, int leafTo) {
+        return new TripleCursor() {
+            private int p1 = pos1;
+            private int p2 = pos2;
+            private int i = leafFrom - 1;
+
+            @Override
+            public boolean next() {
+                if (++i >= leafTo) return false;
+                while (i >= start3.get(p2 + 1)) p2++;
+                while (p2 >= start2.get(p1 + 1)) p1++;
+                return true;
+            }
+
+            @Override public int first() { return keys1.get(p1); }
+            @Override public int second() { return keys2.get(p2); }
+            @Override public int third() { return leaves.get(i); }
+        };
+    }
+
+    /**
+     * Fusionne un index figé et un delta mutable (disjoints) dans un nouvel index figé.
+     * Les deux sources sont parcourues dans l'ordre (a, b, c), seules les clés du delta sont triées.
+     */
+    static FrozenIndex merge(FrozenIndex base, Map<Integer, Map<Integer, Set<Integer>>> delta) {
+        return merge(base, delta, Map.of());
+    }
+
+    /**
+     * Idem, en laissant de côté les triplets de base qui figurent dans removed
+     * (supprimés depuis la construction de base, voir {@link TripleIndex#remove}).
+     */
+    static FrozenIndex merge(FrozenIndex base, Map<Integer, Map<Integer, Set<Integer>>> delta,
+                             Map<Integer, Map<Integer, Set<Integer>>> removed) {
+        Builder builder = new Builder(base.size() + countTriples(delta));
+        int[] deltaKeys1 = sortedKeys(delta.keySet());
+
+        int i = 0, j = 0;
+        while (i < base.keys1.limit() || j < deltaKeys1.length) {
+            int a = nextKey(base.keys1, i, deltaKeys1, j);
+            boolean inBase = i < base.keys1.limit() && base.keys1.get(i) == a;
+            boolean inDelta = j < deltaKeys1.length && deltaKeys1[j] == a;
+
+            Map<Integer, Set<Integer>> deltaLevel2 = inDelta ? delta.get(a) : Map.of();
+            Map<Integer, Set<Integer>> removedLevel2 = removed.getOrDefault(a, Map.of());
+            int[] deltaKeys2 = sortedKeys(deltaLevel2.keySet());
+            int k = inBase ? base.start2.get(i) : 0;
+            int kEnd = inBase ? base.start2.get(i + 1) : 0;
+            int l = 0;
+            while (k < kEnd || l < deltaKeys2.length) {
+                int b = nextKey(base.keys2, k, kEnd, deltaKeys2, l);
+                boolean bInBase = k < kEnd && base.keys2.get(k) == b;
+                boolean bInDelta = l < deltaKeys2.length && deltaKeys2[l] == b;
+
+                int[] deltaLeaves = bInDelta ? sortedKeys(deltaLevel2.get(b)) : new int[0];
+                int m = bInBase ? base.start3.get(k) : 0;
+                int mEnd = bInBase ? base.start3.get(k + 1) : 0;
+                Set<Integer> removedLeaves = removedLevel2.getOrDefault(b, Set.of());
+                int n = 0;
+                while (m < mEnd || n < deltaLeaves.length) {
+                    int c = nextKey(base.leaves, m, mEnd, deltaLeaves, n);
+                    if (!removedLeaves.contains(c)) builder.add(a, b, c);
+                    if (m < mEnd && base.leaves.get(m) == c) m++;
+                    if (n < deltaLeaves.length && deltaLeaves[n] == c) n++;
+                }
+
+                if (bInBase) k++;
+                if (bInDelta) l++;
+            }
+
+            if (inBase) i++;
+            if (inDelta) j++;
+        }
+        return builder.build();
+    }
+
+    /**
+     * Construit un index à partir de triplets empaquetés (a, b, c) sur {@code bits} bits chacun
+     * (voir {@link #pack}), déjà triés et sans doublon.
+     */
+    static FrozenIndex fromSortedKeys(long[] keys, int n, int bits) {
+        Builder builder = new Builder(n);
+        long mask = (1L << bits) - 1;
+        for (int i = 0; i < n; i++) {
+            long key = keys[i];
+            builder.add((int) (key >>> (2 * bits)), (int) ((key >>> bits) & mask), (int) (key & mask));
+        }
+        return builder.build();
+    }
+
+    /** Triplet sur une clé de 64 bits ; l'ordre des clés est l'ordre lexicographique (a, b, c). 3 * bits <= 63. */
+    static long pack(int a, int b, int c, int bits) {
+        return ((long) a << (2 * bits)) | ((long) b << bits) | c;
+    }
+
+    private static int nextKey(IntBuffer left, int i, int[] right, int j) {
+        return nextKey(left, i, left.limit(), right, j);
+    }
+
+    // plus petite clé restante parmi left[i..leftEnd) et right[j..)
+    private static int nextKey(IntBuffer left, int i, int leftEnd, int[] right, int j) {
+        if (i >= leftEnd) return right[j];
+        if (j >= right.length) return left.get(i);
+        return Math.min(left.get(i), right[j]);
+    }
+
+    static int[] sortedKeys(Set<Integer> keys) {
+        int[] sorted = new int[keys.size()];
+        int i = 0;
+        for (int key : keys) sorted[i++] = key;
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static int countTriples(Map<Integer, Map<Integer, Set<Integer>>> delta) {
+        int count = 0;
+        for (Map<Integer, Set<Integer>> level2 : delta.values()) {
+            for (Set<Integer> level3 : level2.values()) {
+                count += level3.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Construit un index figé à partir de triplets fournis dans l'ordre lexicographique (a, b, c),
+     * sans doublon.
+     */
+    static final class Builder {
+        private int[] keys1;
+        private int[] start2;
+        private int[] keys2;
+        private int[] start3;
+        private final int[] leaves;
+        private int n1, n2, n3;
+
+        Builder(int capacity) {
+            int initial = Math.max(capacity, 1);
+            keys1 = new int[initial];
+            start2 = new int[initial + 1];
+            keys2 = new int[initial];
+            start3 = new int[initial + 1];
+            leaves = new int[capacity];
+        }
+
+        void add(int a, int b, int c) {
+            boolean newA = n1 == 0 || keys1[n1 - 1] != a;
+            if (newA) {
+                keys1[n1] = a;
+                start2[n1] = n2;
+                n1++;
+            }
+            if (newA || keys2[n2 - 1] != b) {
+                keys2[n2] = b;
+                start3[n2] = n3;
+                n2++;
+            }
+            leaves[n3++] = c;
+        }
+
+        FrozenIndex build() {
+            start2[n1] = n2;
+            start3[n2] = n3;
+            return new FrozenIndex(
+                    IntBuffer.wrap(Arrays.copyOf(keys1, n1)),
+                    IntBuffer.wrap(Arrays.copyOf(start2, n1 + 1)),
+                    IntBuffer.wrap(Arrays.copyOf(keys2, n2)),
+                    IntBuffer.wrap(Arrays.copyOf(start3, n2 + 1)),
+                    IntBuffer.wrap(n3 == leaves.length ? leaves : Arrays.copyOf(leaves, n3)));
+        }
+    }
+}
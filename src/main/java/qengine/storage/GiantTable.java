@@ -1,88 +1,234 @@
 package qengine.storage;
 
 import fr.boreal.model.logicalElements.api.*;
-import fr.boreal.model.logicalElements.impl.ConstantImpl;
-import fr.boreal.model.logicalElements.impl.SubstitutionImpl;
 import qengine.model.RDFTriple;
 import qengine.model.StarQuery;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 
-public class GiantTable implements RDFStorage {
+/**
+ * Table unique de triplets encodés, rangés en trois colonnes d'entiers (sujets, prédicats, objets)
+ * dans l'ordre d'ajout. Le dédoublonnage passe par une table de hachage à adressage ouvert
+ * qui contient des numéros de ligne : aucun objet n'est créé par ajout.
+ * <p>
+ * Un patron se lit par blocs de {@link #BLOCK_SIZE} lignes : pour chaque bloc, {@link ColumnScan}
+ * compare les colonnes liées aux constantes (par vecteurs si possible) et renvoie les lignes retenues.
+ * Au-delà de {@link #PARALLEL_MIN_ROWS} lignes, les blocs sont répartis sur le pool fork-join commun.
+ * Les blocs dont les bornes ({@link ZoneMaps}) excluent une constante du patron ne sont pas lus.
+ */
+public class GiantTable implements EncodedRDFStorage {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    static final int BLOCK_SIZE = 1024;
+
+    // en dessous, une table se parcourt plus vite sur un seul cœur
+    static final int PARALLEL_MIN_ROWS = 16 * BLOCK_SIZE;
+
+    // blocs sélectionnés ensemble par un parcours parallèle
+    private static final int PARALLEL_BATCH = 4 * ForkJoinPool.getCommonPoolParallelism();
 
     private final Dictionary dict = new Dictionary();
-    private final Set<List<Integer>> triples = new LinkedHashSet<>();
+
+    // colonnes : la ligne i est le triplet (subjects[i], predicates[i], objects[i])
+    private int[] subjects = new int[INITIAL_CAPACITY];
+    private int[] predicates = new int[INITIAL_CAPACITY];
+    private int[] objects = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    // min / max de chaque colonne par bloc, pour sauter les blocs sans réponse possible
+    private final ZoneMaps zones = new ZoneMaps(BLOCK_SIZE);
+
+    // numéro de ligne + 1 de chaque triplet, 0 = case libre ; au plus à moitié plein
+    private int[] slots = new int[2 * INITIAL_CAPACITY];
 
     @Override
     public boolean add(RDFTriple triple) {
         int s = dict.encode(triple.getTripleSubject());
         int p = dict.encode(triple.getTriplePredicate());
         int o = dict.encode(triple.getTripleObject());
+        return addEncoded(s, p, o);
+    }
+
+    @Override
+    public Dictionary getDictionary() {
+        return dict;
+    }
 
-        List<Integer> encoded = Arrays.asList(s, p, o);
-        System.out .println(encoded);
-        if (triples.contains(encoded)) {
-            return false;
+    @Override
+    public boolean addEncoded(int s, int p, int o) {
+        int mask = slots.length - 1;
+        int i = hash(s, p, o) & mask;
+        while (slots[i] != 0) {
+            int row = slots[i] - 1;
+            if (subjects[row] == s && predicates[row] == p && objects[row] == o) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+
+        if (size == subjects.length) {
+            subjects = Arrays.copyOf(subjects, size * 2);
+            predicates = Arrays.copyOf(predicates, size * 2);
+            objects = Arrays.copyOf(objects, size * 2);
         }
+        subjects[size] = s;
+        predicates[size] = p;
+        objects[size] = o;
+        zones.add(size, s, p, o);
+        slots[i] = ++size;
 
-        triples.add(encoded);
-        System.out .println(triples);
+        if (2 * size > slots.length) {
+            rehash();
+        }
         return true;
     }
 
     @Override
-    public Iterator<Substitution> match(RDFTriple pattern) {
-        List<Substitution> results = new ArrayList<>();
-
-        // On décode le pattern si besoin
-        int sPatternId = dict.encodeIfExists(pattern.getTripleSubject());
-        int pPatternId = dict.encodeIfExists(pattern.getTriplePredicate());
-        int oPatternId = dict.encodeIfExists(pattern.getTripleObject());
-
-        boolean sIsVar = pattern.getTripleSubject() instanceof Variable;
-        boolean pIsVar = pattern.getTriplePredicate() instanceof Variable;
-        boolean oIsVar = pattern.getTripleObject() instanceof Variable;
-
-        for (List<Integer> encodedTriple : triples) {
-            int s = encodedTriple.get(0);
-            int p = encodedTriple.get(1);
-            int o = encodedTriple.get(2);
-
-            Map<Variable, Term> env = new HashMap<>();
-            boolean match = true;
-
-            // Sujet
-            if (sIsVar) {
-                env.put((Variable) pattern.getTripleSubject(), dict.decode(s));
-            } else if (sPatternId != -1 && sPatternId != s) {
-                match = false;
+    public boolean containsEncoded(int s, int p, int o) {
+        int mask = slots.length - 1;
+        for (int i = hash(s, p, o) & mask; slots[i] != 0; i = (i + 1) & mask) {
+            int row = slots[i] - 1;
+            if (subjects[row] == s && predicates[row] == p && objects[row] == o) {
+                return true;
             }
+        }
+        return false;
+    }
 
-            // Prédicat
-            if (pIsVar) {
-                env.put((Variable) pattern.getTriplePredicate(), dict.decode(p));
-            } else if (pPatternId != -1 && pPatternId != p) {
-                match = false;
-            }
+    private static int hash(int s, int p, int o) {
+        int h = (s * 31 + p) * 31 + o;
+        return h ^ (h >>> 16);
+    }
 
-            // Objet
-            if (oIsVar) {
-                env.put((Variable) pattern.getTripleObject(), dict.decode(o));
-            } else if (oPatternId != -1 && oPatternId != o) {
-                match = false;
-            }
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int row = 0; row < size; row++) {
+            int i = hash(subjects[row], predicates[row], objects[row]) & mask;
+            while (slots[i] != 0) i = (i + 1) & mask;
+            slots[i] = row + 1;
+        }
+    }
+
+    @Override
+    public Iterator<Substitution> match(RDFTriple pattern) {
+        TripleCursor cursor = cursor(pattern);
+        if (cursor == null) return Collections.emptyIterator();
+        // parcours paresseux : on avance dans la table seulement quand on demande la réponse suivante
+        return TripleCursor.substitutions(cursor, dict::decode,
+                pattern.getTripleSubject(), pattern.getTriplePredicate(), pattern.getTripleObject());
+    }
+
+    /**
+     * Curseur sur les lignes compatibles avec les constantes du patron (ANY pour une variable),
+     * ou null si une constante est absente du dictionnaire : elle ne peut correspondre à aucun triplet.
+     */
+    private TripleCursor cursor(RDFTriple pattern) {
+        int s = idOrAny(pattern.getTripleSubject());
+        int p = idOrAny(pattern.getTriplePredicate());
+        int o = idOrAny(pattern.getTripleObject());
+        if (s < 0 || p < 0 || o < 0) return null;
+
+        // parcours complet : rien à comparer, un lot d'un bloc suffit
+        boolean parallel = size >= PARALLEL_MIN_ROWS && !(s == ColumnScan.ANY && p == ColumnScan.ANY && o == ColumnScan.ANY);
+        return new BlockCursor(subjects, predicates, objects, size, zones, s, p, o, parallel ? PARALLEL_BATCH : 1);
+    }
+
+    /**
+     * Lit les lignes par lots de blocs : les blocs d'un lot sont sélectionnés en parallèle, chacun dans
+     * son propre vecteur de sélection (pas de verrou), puis parcourus dans l'ordre. Le lot suivant n'est
+     * calculé que quand le précédent est épuisé : le parcours reste paresseux, et les réponses sortent
+     * dans l'ordre d'ajout.
+     * <p>
+     * Le premier lot n'a qu'un bloc, et chaque lot suivant double jusqu'à la taille maximale : une sonde
+     * sélective (ou qui ne veut savoir que s'il existe une réponse) s'arrête après un bloc, sans allouer
+     * de vecteurs de sélection pour tout le lot. Ils sont créés au premier lot qui en a besoin.
+     */
+    private static final class BlockCursor implements TripleCursor {
+        private final int[] subjects, predicates, objects;
+        private final int end;
+        private final ZoneMaps zones;
+        private final int blockCount;
+        private final int s, p, o;
+
+        private final int[] batchBlocks;        // numéros des blocs du lot courant
+        private final int[][] selections;       // créées à la demande
+        private final int[] counts;
+        private int batch = 1;          // taille du prochain lot
+        private int loaded = 0;         // blocs du lot courant
+        private int block = 0;          // bloc lu dans le lot
+        private int position = 0;       // position dans sa sélection
+        private int nextBlock = 0;      // premier bloc pas encore examiné
+        private int row;
+
+        BlockCursor(int[] subjects, int[] predicates, int[] objects, int end, ZoneMaps zones,
+                    int s, int p, int o, int maxBatch) {
+            this.subjects = subjects;
+            this.predicates = predicates;
+            this.objects = objects;
+            this.end = end;
+            this.zones = zones;
+            this.blockCount = (end + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            this.s = s;
+            this.p = p;
+            this.o = o;
+            this.batchBlocks = new int[maxBatch];
+            this.selections = new int[maxBatch][];
+            this.counts = new int[maxBatch];
+        }
 
-            if (match) {
-                SubstitutionImpl substitution = new SubstitutionImpl();
-                for (Map.Entry<Variable, Term> e : env.entrySet()) {
-                    substitution.add(e.getKey(), e.getValue());
+        @Override
+        public boolean next() {
+            while (block >= loaded || position == counts[block]) {
+                if (block < loaded) {
+                    block++;
+                    position = 0;
+                } else if (!load()) {
+                    return false;
                 }
-                results.add(substitution);
             }
+            row = selections[block][position++];
+            return true;
         }
 
-        return results.iterator();
+        // sélectionne le lot suivant parmi les blocs que les zone maps n'excluent pas ; false en fin de table
+        private boolean load() {
+            int blocks = 0;
+            while (blocks < batch && nextBlock < blockCount) {
+                int b = nextBlock++;
+                if (zones.mayContain(b, s, p, o)) batchBlocks[blocks++] = b;
+            }
+            if (blocks == 0) return false;
+            for (int i = 0; i < blocks; i++) {
+                if (selections[i] == null) selections[i] = new int[BLOCK_SIZE];
+            }
+            batch = Math.min(batch << 1, batchBlocks.length);
+
+            IntStream range = IntStream.range(0, blocks);
+            if (blocks > 1) range = range.parallel();
+            range.forEach(i -> {
+                int from = batchBlocks[i] * BLOCK_SIZE;
+                counts[i] = ColumnScan.select(subjects, predicates, objects, from, Math.min(end, from + BLOCK_SIZE),
+                        s, p, o, selections[i]);
+            });
+            loaded = blocks;
+            block = 0;
+            position = 0;
+            return true;
+        }
+
+        @Override public int first() { return subjects[row]; }
+        @Override public int second() { return predicates[row]; }
+        @Override public int third() { return objects[row]; }
+    }
+
+    // ANY pour une variable (les IDs commencent à 1), -1 pour une constante inconnue
+    private int idOrAny(Term term) {
+        return term instanceof Variable ? ColumnScan.ANY : dict.encodeIfExists(term);
     }
 
 
@@ -93,25 +239,46 @@ public class GiantTable implements RDFStorage {
 
     @Override
     public long howMany(RDFTriple triple) {
-        long count = 0;
-        Iterator<Substitution> it = match(triple);
-        while (it.hasNext()) { it.next(); count++; }
-        return count;
+        Term s = triple.getTripleSubject();
+        Term p = triple.getTriplePredicate();
+        Term o = triple.getTripleObject();
+
+        // une variable répétée impose une égalité : on compte les réponses
+        if ((s instanceof Variable && (s.equals(p) || s.equals(o))) || (p instanceof Variable && p.equals(o))) {
+            long count = 0;
+            Iterator<Substitution> it = match(triple);
+            while (it.hasNext()) { it.next(); count++; }
+            return count;
+        }
+
+        int sId = idOrAny(s);
+        int pId = idOrAny(p);
+        int oId = idOrAny(o);
+        if (sId < 0 || pId < 0 || oId < 0) return 0;
+
+        // un compte par bloc, additionnés : pas besoin de ranger les lignes
+        int[] subjects = this.subjects, predicates = this.predicates, objects = this.objects;
+        int end = size;
+        IntStream blocks = IntStream.range(0, (end + BLOCK_SIZE - 1) / BLOCK_SIZE)
+                .filter(b -> zones.mayContain(b, sId, pId, oId));
+        if (end >= PARALLEL_MIN_ROWS) blocks = blocks.parallel();
+        return blocks.mapToLong(b -> ColumnScan.count(subjects, predicates, objects,
+                b * BLOCK_SIZE, Math.min(end, (b + 1) * BLOCK_SIZE), sId, pId, oId)).sum();
     }
 
     @Override
     public long size() {
-        return triples.size();
+        return size;
     }
 
     @Override
     public Collection<RDFTriple> getAtoms() {
-        List<RDFTriple> decodedTriples = new ArrayList<>();
+        List<RDFTriple> decodedTriples = new ArrayList<>(size);
 
-        for (List<Integer> ids : triples) {
-            Term s = dict.decode(ids.get(0));
-            Term p = dict.decode(ids.get(1));
-            Term o = dict.decode(ids.get(2));
+        for (int row = 0; row < size; row++) {
+            Term s = dict.decode(subjects[row]);
+            Term p = dict.decode(predicates[row]);
+            Term o = dict.decode(objects[row]);
             decodedTriples.add(new RDFTriple(s, p, o));
         }
 
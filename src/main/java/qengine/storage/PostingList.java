@@ -0,0 +1,141 @@
+package qengine.storage;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Liste triée d'IDs distincts, parcourue une seule fois, avec recherche galopante ({@link #seek(int)}).
+ * Elle est l'union de deux sources triées : une tranche d'un tableau de l'index figé
+ * et les IDs (triés) du delta mutable. Les deux sources peuvent avoir des IDs en commun.
+ */
+final class PostingList {
+
+    static final int[] NONE = new int[0];
+    static final PostingList EMPTY = new PostingList(NONE, 0, 0, NONE);
+
+    private final IntBuffer frozen;
+    private final int frozenEnd;
+    private final int[] delta;
+    private int i;
+    private int j;
+
+    PostingList(int[] frozen, int from, int to, int[] delta) {
+        this(IntBuffer.wrap(frozen), from, to, delta);
+    }
+
+    PostingList(IntBuffer frozen, int from, int to, int[] delta) {
+        this.frozen = frozen;
+        this.i = from;
+        this.frozenEnd = to;
+        this.delta = delta;
+    }
+
+    /** Borne supérieure du nombre d'IDs restants (les doublons entre les deux sources sont comptés deux fois). */
+    int sizeEstimate() {
+        return (frozenEnd - i) + (delta.length - j);
+    }
+
+    boolean atEnd() {
+        return i >= frozenEnd && j >= delta.length;
+    }
+
+    int current() {
+        if (i >= frozenEnd) return delta[j];
+        if (j >= delta.length) return frozen.get(i);
+        return Math.min(frozen.get(i), delta[j]);
+    }
+
+    /** Passe à l'ID suivant. */
+    void next() {
+        int c = current();
+        if (i < frozenEnd && frozen.get(i) == c) i++;
+        if (j < delta.length && delta[j] == c) j++;
+    }
+
+    /** Avance jusqu'au premier ID >= target. */
+    void seek(int target) {
+        i = gallop(frozen, i, frozenEnd, target);
+        j = gallop(delta, j, delta.length, target);
+    }
+
+    /**
+     * Première position de [from, to) dont la valeur est >= target :
+     * pas exponentiels depuis from, puis dichotomie sur le dernier intervalle.
+     */
+    static int gallop(int[] a, int from, int to, int target) {
+        if (from >= to || a[from] >= target) return from;
+        int lo = from;   // a[lo] < target
+        int step = 1;
+        while (lo + step < to && a[lo + step] < target) {
+            lo += step;
+            step <<= 1;
+        }
+        int hi = Math.min(lo + step, to);
+        int k = Arrays.binarySearch(a, lo + 1, hi, target);
+        return k >= 0 ? k : -k - 1;
+    }
+
+    /** Même chose sur une tranche de l'index figé. */
+    static int gallop(IntBuffer a, int from, int to, int target) {
+        if (from >= to || a.get(from) >= target) return from;
+        int lo = from;   // a[lo] < target
+        int step = 1;
+        while (lo + step < to && a.get(lo + step) < target) {
+            lo += step;
+            step <<= 1;
+        }
+        // premier élément >= target dans (lo, hi)
+        int hi = Math.min(lo + step, to);
+        int left = lo + 1, right = hi;
+        while (left < right) {
+            int mid = (left + right) >>> 1;
+            if (a.get(mid) < target) left = mid + 1;
+            else right = mid;
+        }
+        return left;
+    }
+
+    static int[] intersect(List<PostingList> lists) {
+        return intersect(lists, 16);
+    }
+
+    /**
+     * Intersection « leapfrog » : la liste la plus courte propose un candidat,
+     * les autres galopent jusqu'à lui ; au premier désaccord, on repart du plus grand ID rencontré.
+     *
+     * @param expected nombre de réponses attendu, pour dimensionner le tableau résultat
+     * @return les IDs présents dans toutes les listes, triés
+     */
+    static int[] intersect(List<PostingList> lists, int expected) {
+        if (lists.isEmpty()) return NONE;
+        PostingList[] sorted = lists.toArray(new PostingList[0]);
+        Arrays.sort(sorted, Comparator.comparingInt(PostingList::sizeEstimate));
+
+        PostingList driver = sorted[0];
+        int[] result = new int[Math.max(0, Math.min(driver.sizeEstimate(), expected))];
+        int n = 0;
+
+        while (!driver.atEnd()) {
+            int candidate = driver.current();
+            boolean inAll = true;
+            for (int k = 1; k < sorted.length; k++) {
+                PostingList other = sorted[k];
+                other.seek(candidate);
+                if (other.atEnd()) return Arrays.copyOf(result, n);
+                if (other.current() != candidate) {
+                    driver.seek(other.current());
+                    inAll = false;
+                    break;
+                }
+            }
+            if (inAll) {
+                if (n == result.length) result = Arrays.copyOf(result, Math.max(16, n * 2));
+                result[n++] = candidate;
+                driver.next();
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+}
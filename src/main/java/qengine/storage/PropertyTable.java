@@ -0,0 +1,165 @@
+package qengine.storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Table de propriétés d'un ensemble caractéristique : une ligne par sujet (triés),
+ * une colonne par prédicat de l'ensemble (triés).
+ * <p>
+ * Chaque case contient l'objet quand le sujet n'a qu'une valeur pour ce prédicat. Sinon elle contient
+ * -(i + 1), et les objets (triés) sont dans {@code multiValued[i]}, la table annexe des prédicats
+ * multi-valués. Les IDs du dictionnaire commençant à 1, les deux cas ne se confondent pas.
+ */
+final class PropertyTable {
+
+    /** Joker des curseurs : n'importe quel prédicat / objet (aucun ID ne vaut 0). */
+    static final int ANY = 0;
+
+    private final int[] predicates;
+    private final int[] subjects;
+    private final int[][] columns;
+    private final int[][] multiValued;
+
+    private PropertyTable(int[] predicates, int[] subjects, int[][] columns, int[][] multiValued) {
+        this.predicates = predicates;
+        this.subjects = subjects;
+        this.columns = columns;
+        this.multiValued = multiValued;
+    }
+
+    int[] predicates() {
+        return predicates;
+    }
+
+    int rows() {
+        return subjects.length;
+    }
+
+    int subject(int row) {
+        return subjects[row];
+    }
+
+    /** Ligne du sujet, ou -1. */
+    int rowOf(int subject) {
+        int row = Arrays.binarySearch(subjects, subject);
+        return row >= 0 ? row : -1;
+    }
+
+    /** Colonne du prédicat, ou -1. */
+    int column(int predicate) {
+        int k = Arrays.binarySearch(predicates, predicate);
+        return k >= 0 ? k : -1;
+    }
+
+    /** @param sortedWanted prédicats distincts et triés */
+    boolean hasAllPredicates(int[] sortedWanted) {
+        if (sortedWanted.length > predicates.length) return false;
+        for (int p : sortedWanted) {
+            if (column(p) < 0) return false;
+        }
+        return true;
+    }
+
+    boolean hasObject(int row, int k, int o) {
+        int v = columns[k][row];
+        return v >= 0 ? v == o : Arrays.binarySearch(multiValued[-v - 1], o) >= 0;
+    }
+
+    /** Les objets (triés) de la case (row, k). */
+    int[] objects(int row, int k) {
+        int v = columns[k][row];
+        return v >= 0 ? new int[]{v} : multiValued[-v - 1];
+    }
+
+    /**
+     * Curseur (sujet, prédicat, objet) sur les lignes [rowFrom, rowTo),
+     * restreint au prédicat p et à l'objet o s'ils ne valent pas {@link #ANY}.
+     */
+    TripleCursor cursor(int rowFrom, int rowTo, int p, int o) {
+        int only = p == ANY ? -1 : column(p);
+        if (p != ANY && only < 0) return TripleCursor.EMPTY;
+        int kFrom = only < 0 ? 0 : only;
+        int kTo = only < 0 ? predicates.length : only + 1;
+
+        return new TripleCursor() {
+            private int row = rowFrom;
+            private int k = kFrom;
+            private int i = -1;        // position dans les objets de la case courante
+            private int object;
+
+            @Override
+            public boolean next() {
+                for (; row < rowTo; row++, k = kFrom) {
+                    for (; k < kTo; k++, i = -1) {
+                        if (o != ANY) {
+                            // objet imposé : une seule réponse possible par case
+                            if (i < 0 && hasObject(row, k, o)) {
+                                i = 0;
+                                object = o;
+                                return true;
+                            }
+                            continue;
+                        }
+                        int v = columns[k][row];
+                        int n = v >= 0 ? 1 : multiValued[-v - 1].length;
+                        if (++i < n) {
+                            object = v >= 0 ? v : multiValued[-v - 1][i];
+                            return true;
+                        }
+                    }
+                }
+                return false;
+            }
+
+            @Override public int first() { return subjects[row]; }
+            @Override public int second() { return predicates[k]; }
+            @Override public int third() { return object; }
+        };
+    }
+
+    /**
+     * Construit une table pour un ensemble de prédicats donné ; les lignes peuvent arriver dans n'importe
+     * quel ordre, elles sont triées par sujet au {@link #build()}.
+     */
+    static final class Builder {
+        private final int[] predicates;
+        private final List<Row> rows = new ArrayList<>();
+
+        Builder(int[] predicates) {
+            this.predicates = predicates;
+        }
+
+        /** @param objects pour chaque prédicat de la table, ses objets triés (au moins un) */
+        void add(int subject, int[][] objects) {
+            rows.add(new Row(subject, objects));
+        }
+
+        PropertyTable build() {
+            rows.sort(Comparator.comparingInt(Row::subject));
+            int[] subjects = new int[rows.size()];
+            int[][] columns = new int[predicates.length][rows.size()];
+            List<int[]> multiValued = new ArrayList<>();
+
+            for (int row = 0; row < rows.size(); row++) {
+                Row r = rows.get(row);
+                subjects[row] = r.subject();
+                for (int k = 0; k < predicates.length; k++) {
+                    int[] objects = r.objects()[k];
+                    if (objects.length == 1) {
+                        columns[k][row] = objects[0];
+                    } else {
+                        multiValued.add(objects);
+                        columns[k][row] = -multiValued.size();
+                    }
+                }
+            }
+            return new PropertyTable(predicates, subjects, columns, multiValued.toArray(new int[0][]));
+        }
+
+        private record Row(int subject, int[][] objects) {
+        }
+    }
+}
@@ -5,184 +5,725 @@ import fr.boreal.model.logicalElements.impl.SubstitutionImpl;
 import qengine.model.RDFTriple;
 import qengine.model.StarQuery;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Implémentation d'un HexaStore pour stocker des RDFAtom.
  * Cette classe utilise six index pour optimiser les recherches.
  * Les index sont basés sur les combinaisons (Sujet, Prédicat, Objet), (Sujet, Objet, Prédicat),
  * (Prédicat, Sujet, Objet), (Prédicat, Objet, Sujet), (Objet, Sujet, Prédicat) et (Objet, Prédicat, Sujet).
+ * <p>
+ * Suppressions : un triplet retiré est marqué dans les six index (pierre tombale sur la partie figée,
+ * voir {@link TripleIndex}) et les lectures l'ignorent aussitôt. Quand les pierres tombales (et les triplets
+ * du delta supprimés, qui restent dans leurs feuilles) deviennent nombreuses, une compaction en tâche de fond
+ * réécrit les index sans elles, puis libère dans le
+ * dictionnaire les IDs qui n'apparaissent plus dans aucun triplet. Les requêtes ne prennent aucun verrou :
+ * pendant la compaction elles lisent les anciens index, et passent aux nouveaux dès qu'ils sont publiés.
+ * Les modifications (ajouts, suppressions, {@link #freeze()}) sont sérialisées, et attendent la fin
+ * d'une compaction en cours.
+ * <p>
+ * Lectures concurrentes (MVCC) : chaque modification écrit à une nouvelle époque (voir {@link TripleIndex}),
+ * puis publie une {@link Version} : les six index vus à cette époque, le nombre de triplets et l'état
+ * du dictionnaire. Une lecture ({@code match}, {@code howMany}, ...) travaille du début à la fin sur la
+ * version publiée quand elle a commencé, même si des triplets arrivent ou partent entre-temps ;
+ * {@link #pin()} donne cette version pour enchaîner plusieurs lectures cohérentes entre elles.
  */
-public class RDFHexaStore implements RDFStorage {
+public class RDFHexaStore implements EncodedRDFStorage {
 
-    private final Dictionary dict = new Dictionary();
+    // compaction automatique quand les suppressions en attente (voir TripleIndex.removedCount) dépassent
+    // 1 / COMPACTION_RATIO des triplets
+    private static final int COMPACTION_RATIO = 8;
+    private static final int MIN_TOMBSTONES_FOR_COMPACTION = 1024;
 
-    private final Set<List<Integer>> encodedTriples = new LinkedHashSet<>();
+    private final Dictionary dict;
 
-    // === Six index ===
-    private final Map<Integer, Map<Integer, Set<Integer>>> spo = new HashMap<>();
-    private final Map<Integer, Map<Integer, Set<Integer>>> sop = new HashMap<>();
-    private final Map<Integer, Map<Integer, Set<Integer>>> pso = new HashMap<>();
-    private final Map<Integer, Map<Integer, Set<Integer>>> pos = new HashMap<>();
-    private final Map<Integer, Map<Integer, Set<Integer>>> osp = new HashMap<>();
-    private final Map<Integer, Map<Integer, Set<Integer>>> ops = new HashMap<>();
+    // === Six index (côté écrivain : remplacés par la compaction) ===
+    // spo sert aussi d'ensemble des triplets (dédoublonnage, getAtoms) : pas de copie à part
+    private TripleIndex spo = new TripleIndex();
+    private TripleIndex sop = new TripleIndex();
+    private TripleIndex pso = new TripleIndex();
+    private TripleIndex pos = new TripleIndex();
+    private TripleIndex osp = new TripleIndex();
+    private TripleIndex ops = new TripleIndex();
 
     private long tripleCount = 0;
 
+    // dernière époque publiée, et ce qu'elle contient
+    private long epoch = 0;
+    private volatile Version current;
+
+    // IDs des triplets supprimés depuis la dernière compaction : ceux qui ne servent plus seront libérés
+    private final Set<Integer> releaseCandidates = new HashSet<>();
+    private CompletableFuture<Void> compaction = CompletableFuture.completedFuture(null);
+    private boolean autoCompaction = true;
+
+    public RDFHexaStore() {
+        this(new Dictionary());
+    }
+
+    private RDFHexaStore(Dictionary dict) {
+        this.dict = dict;
+        this.current = new Version(epoch);
+    }
+
+    /**
+     * Ouvre un instantané écrit par {@link #save} : le dictionnaire est relu, les six index sont
+     * projetés en mémoire et ne sont lus qu'à la demande (voir {@link Snapshot}).
+     * Le store ouvert accepte de nouveaux ajouts, qui vont dans le delta de chaque index.
+     */
+    public static RDFHexaStore open(Path file) throws IOException {
+        Snapshot.Contents contents = Snapshot.read(file);
+        RDFHexaStore store = new RDFHexaStore(contents.dictionary());
+        TripleIndex[] indexes = new TripleIndex[contents.indexes().length];
+        for (int x = 0; x < indexes.length; x++) {
+            indexes[x] = new TripleIndex(contents.indexes()[x]);
+        }
+        synchronized (store) {
+            store.setIndexes(indexes);
+            store.tripleCount = contents.tripleCount();
+            store.publish(store.epoch + 1);
+        }
+        return store;
+    }
+
+    /** Fige le store (voir {@link #freeze()}) puis l'écrit dans un instantané. */
+    public synchronized void save(Path file) throws IOException {
+        freeze();
+        TripleIndex[] indexes = indexes();
+        FrozenIndex[] frozen = new FrozenIndex[indexes.length];
+        for (int x = 0; x < indexes.length; x++) {
+            frozen[x] = indexes[x].frozen();
+        }
+        Snapshot.write(file, dict, tripleCount, frozen);
+    }
+
+    // ordre des index dans un instantané
+    private TripleIndex[] indexes() {
+        return new TripleIndex[]{spo, sop, pso, pos, osp, ops};
+    }
+
+    private void setIndexes(TripleIndex[] indexes) {
+        spo = indexes[0];
+        sop = indexes[1];
+        pso = indexes[2];
+        pos = indexes[3];
+        osp = indexes[4];
+        ops = indexes[5];
+    }
+
+    /** Rend visibles aux lectures toutes les écritures faites jusqu'à l'époque e. */
+    private void publish(long e) {
+        epoch = e;
+        current = new Version(e);
+    }
+
+    /**
+     * La version actuelle du store, en lecture seule : toutes les lectures faites dessus voient
+     * les mêmes données, quels que soient les ajouts et suppressions faits depuis.
+     */
+    public Version pin() {
+        return current;
+    }
+
     @Override
-    public boolean add(RDFTriple triple) {
+    public synchronized boolean add(RDFTriple triple) {
         int s = dict.encode(triple.getTripleSubject());
         int p = dict.encode(triple.getTriplePredicate());
         int o = dict.encode(triple.getTripleObject());
+        return addEncoded(s, p, o);
+    }
 
-        // Triplet encodé [s, p, o] comme dans GiantTable
-        List<Integer> encoded = Arrays.asList(s, p, o);
+    @Override
+    public Dictionary getDictionary() {
+        return dict;
+    }
 
-        // Si déjà présent → on ne touche pas aux index, on ne compte pas
-        if (encodedTriples.contains(encoded)) {
+    @Override
+    public synchronized boolean addEncoded(int s, int p, int o) {
+        s = live(s);
+        p = live(p);
+        o = live(o);
+
+        long e = epoch + 1;
+        // Si déjà présent dans spo → on ne touche pas aux autres index, on ne compte pas
+        if (!spo.insert(s, p, o, e)) {
             return false;
         }
 
-        // Nouveau triplet → on l’ajoute dans le set encodé
-        encodedTriples.add(encoded);
-
-        // Puis on met à jour les 6 index (on sait que c'est un nouveau (s,p,o))
-        insert(spo, s, p, o);  // SPO
-        insert(sop, s, o, p);  // SOP
-        insert(pso, p, s, o);  // PSO
-        insert(pos, p, o, s);  // POS
-        insert(osp, o, s, p);  // OSP
-        insert(ops, o, p, s);  // OPS
+        // Puis on met à jour les 5 autres index (on sait que c'est un nouveau (s,p,o))
+        sop.insert(s, o, p, e);  // SOP
+        pso.insert(p, s, o, e);  // PSO
+        pos.insert(p, o, s, e);  // POS
+        osp.insert(o, s, p, e);  // OSP
+        ops.insert(o, p, s, e);  // OPS
 
-        // On incrémente le compteur logique de triplets
+        // On incrémente le compteur logique de triplets, puis on publie
         tripleCount++;
+        publish(e);
 
         return true;
     }
 
 
-    private boolean insert(Map<Integer, Map<Integer, Set<Integer>>> index, int a, int b, int c) {
-        return index
-                .computeIfAbsent(a, k -> new HashMap<>())
-                .computeIfAbsent(b, k -> new HashSet<>())
-                .add(c);
+    /**
+     * Un ID encodé avant qu'une compaction le libère, et ajouté après (l'encodage se fait hors du verrou
+     * du store, voir {@link #addAllEncoded}) : son terme reprend un nouvel ID. Sous le verrou du store,
+     * qui est aussi celui de la compaction : l'ID rendu ne peut pas être libéré avant l'insertion.
+     */
+    private int live(int id) {
+        if (dict.decode(id) != null) return id;
+        Term t = dict.releasedTerm(id);
+        if (t == null) throw new IllegalArgumentException("ID inconnu : " + id);
+        return dict.encode(t);
     }
 
-
+    /**
+     * Ajout en bloc. Dans un store vide, les index sont construits par tri (voir {@link #bulkLoad}) ;
+     * sinon le dédoublonnage se fait séquentiellement en insérant dans spo, puis les cinq autres index,
+     * indépendants, sont remplis en parallèle. Tout le bloc est publié d'un coup.
+     * <p>
+     * Les IDs ont pu être encodés longtemps avant (tout un fichier, voir {@code NTriplesFastParser#load}),
+     * pendant que des suppressions lançaient des compactions : ceux qui ont été libérés entre-temps sont
+     * ré-encodés (voir {@link #live}), dans une copie du tableau.
+     */
     @Override
-    public Iterator<Substitution> match(RDFTriple pattern) {
-        List<Substitution> results = new ArrayList<>();
-
-        Term sTerm = pattern.getTripleSubject();
-        Term pTerm = pattern.getTriplePredicate();
-        Term oTerm = pattern.getTripleObject();
+    public synchronized long addAllEncoded(int[] ids, int size) {
+        int[] checked = ids;
+        for (int i = 0; i < size; i++) {
+            int id = live(ids[i]);
+            if (id != ids[i]) {
+                if (checked == ids) checked = Arrays.copyOf(ids, size);
+                checked[i] = id;
+            }
+        }
+        ids = checked;
 
-        Integer s = (sTerm instanceof Variable) ? null : dict.encodeIfExists(sTerm);
-        Integer p = (pTerm instanceof Variable) ? null : dict.encodeIfExists(pTerm);
-        Integer o = (oTerm instanceof Variable) ? null : dict.encodeIfExists(oTerm);
+        int bits = 32 - Integer.numberOfLeadingZeros(dict.size());
+        if (tripleCount == 0 && 3 * bits <= 63) {
+            return bulkLoad(ids, size, bits);
+        }
 
-        if (s != null && p != null && o != null) {
-            // cas exact : tous connus
-            if (exists(spo, s, p, o)) {
-                SubstitutionImpl sub = new SubstitutionImpl();
-                results.add(sub);
+        long e = epoch + 1;
+        int[] fresh = new int[size];
+        int n = 0;
+        for (int i = 0; i < size; i += 3) {
+            if (spo.insert(ids[i], ids[i + 1], ids[i + 2], e)) {
+                fresh[n++] = ids[i];
+                fresh[n++] = ids[i + 1];
+                fresh[n++] = ids[i + 2];
             }
-            return results.iterator();
         }
 
-        // on choisit l’index optimal
-        if (s != null && p != null) {
-            matchFromIndex(spo.getOrDefault(s, Map.of()), p, oTerm, results);
-        } else if (p != null && o != null) {
-            matchFromIndex(pos.getOrDefault(p, Map.of()), o, sTerm, results);
-        } else if (s != null && o != null) {
-            matchFromIndex(sop.getOrDefault(s, Map.of()), o, pTerm, results);
-        } else {
-            // sinon -> fallback : scan complet
-            results.addAll(fullScan(pattern));
+        int end = n;
+        Stream.<Runnable>of(
+                () -> sop.insertAll(fresh, end, new int[]{0, 2, 1}, e),
+                () -> pso.insertAll(fresh, end, new int[]{1, 0, 2}, e),
+                () -> pos.insertAll(fresh, end, new int[]{1, 2, 0}, e),
+                () -> osp.insertAll(fresh, end, new int[]{2, 0, 1}, e),
+                () -> ops.insertAll(fresh, end, new int[]{2, 1, 0}, e)
+        ).parallel().forEach(Runnable::run);
+
+        if (n > 0) {
+            tripleCount += n / 3;
+            publish(e);
         }
-
-        return results.iterator();
+        return n / 3;
     }
 
-    private boolean exists(Map<Integer, Map<Integer, Set<Integer>>> index, int a, int b, int c) {
-        return index.containsKey(a)
-                && index.get(a).containsKey(b)
-                && index.get(a).get(b).contains(c);
+    /**
+     * Chargement initial par tri, sans aucune map : chaque triplet devient une clé de 64 bits (s, p, o),
+     * les clés sont triées (Arrays.parallelSort) puis dédoublonnées par comparaison des voisines.
+     * Chaque autre ordre (sop, pso, ...) est obtenu en réempaquetant les clés uniques dans son ordre
+     * et en les triant à son tour ; les six index figés sont construits en parallèle.
+     * Possible tant que les IDs tiennent sur 21 bits (3 * bits <= 63).
+     */
+    private long bulkLoad(int[] ids, int size, int bits) {
+        long[] keys = new long[size / 3];
+        for (int i = 0, k = 0; i < size; i += 3, k++) {
+            keys[k] = FrozenIndex.pack(ids[i], ids[i + 1], ids[i + 2], bits);
+        }
+        Arrays.parallelSort(keys);
+        int n = 0;
+        for (int k = 0; k < keys.length; k++) {
+            if (n == 0 || keys[k] != keys[n - 1]) keys[n++] = keys[k];
+        }
+        long[] unique = keys;
+        int count = n;
+
+        // position de s, p, o dans chaque ordre d'index
+        TripleIndex[] indexes = new TripleIndex[6];
+        int[][] orders = {{0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}};
+        long mask = (1L << bits) - 1;
+        IntStream.range(0, indexes.length).parallel().forEach(x -> {
+            long[] permuted = unique;
+            if (x > 0) {
+                int[] order = orders[x];
+                permuted = new long[count];
+                int[] t = new int[3];
+                for (int k = 0; k < count; k++) {
+                    t[0] = (int) (unique[k] >>> (2 * bits));
+                    t[1] = (int) ((unique[k] >>> bits) & mask);
+                    t[2] = (int) (unique[k] & mask);
+                    permuted[k] = FrozenIndex.pack(t[order[0]], t[order[1]], t[order[2]], bits);
+                }
+                Arrays.parallelSort(permuted);
+            }
+            indexes[x] = new TripleIndex(FrozenIndex.fromSortedKeys(permuted, count, bits));
+        });
+
+        setIndexes(indexes);
+        tripleCount = count;
+        publish(epoch + 1);
+        return count;
     }
 
-    private void matchFromIndex(Map<Integer, Set<Integer>> level2, Integer key,
-                                Term unknownTerm, List<Substitution> results) {
+    /**
+     * Ajoute tous les triplets du flux : ils sont encodés dans un tableau d'entiers, puis insérés
+     * en bloc ({@link #addAllEncoded}).
+     */
+    @Override
+    public synchronized boolean addAll(Stream<RDFTriple> atoms) {
+        int[] ids = new int[3 * 1024];
+        int size = 0;
+        for (Iterator<RDFTriple> it = atoms.iterator(); it.hasNext(); ) {
+            RDFTriple t = it.next();
+            if (size + 3 > ids.length) ids = Arrays.copyOf(ids, ids.length * 2);
+            ids[size++] = dict.encode(t.getTripleSubject());
+            ids[size++] = dict.encode(t.getTriplePredicate());
+            ids[size++] = dict.encode(t.getTripleObject());
+        }
+        return addAllEncoded(ids, size) > 0;
+    }
 
-        if (!level2.containsKey(key)) return;
+    @Override
+    public boolean remove(RDFTriple triple) {
+        int s = dict.encodeIfExists(triple.getTripleSubject());
+        int p = dict.encodeIfExists(triple.getTriplePredicate());
+        int o = dict.encodeIfExists(triple.getTripleObject());
+        if (s < 0 || p < 0 || o < 0) return false;
+        return removeEncoded(s, p, o);
+    }
 
-        for (int val : level2.get(key)) {
-            Map<Variable, Term> env = new HashMap<>();
+    /** Dans la version publiée. */
+    @Override
+    public boolean containsEncoded(int s, int p, int o) {
+        return current.spo.contains(s, p, o);
+    }
 
-            // selon quel terme est une variable
-            if (unknownTerm instanceof Variable v) {
-                env.put(v, dict.decode(val));
-            }
+    @Override
+    public boolean supportsRemoval() {
+        return true;
+    }
 
-            SubstitutionImpl s = new SubstitutionImpl();
-            env.forEach(s::add);
-            results.add(s);
+    @Override
+    public synchronized boolean removeEncoded(int s, int p, int o) {
+        long e = epoch + 1;
+        if (!spo.remove(s, p, o, e)) {
+            return false;
         }
+        sop.remove(s, o, p, e);
+        pso.remove(p, s, o, e);
+        pos.remove(p, o, s, e);
+        osp.remove(o, s, p, e);
+        ops.remove(o, p, s, e);
+
+        tripleCount--;
+        publish(e);
+        releaseCandidates.add(s);
+        releaseCandidates.add(p);
+        releaseCandidates.add(o);
+        compactIfNeeded();
+        return true;
     }
 
-    private List<Substitution> fullScan(RDFTriple pattern) {
-        // on re utilise giant table
-        GiantTable giantTable = new GiantTable();
-        // on remplit la GiantTable avec tous les triplets décodés
-        giantTable.addAll(this.getAtoms());
-        // on réutilise sa fonction match
-        Iterator<Substitution> it = giantTable.match(pattern);
-        List<Substitution> results = new ArrayList<>();
-        it.forEachRemaining(results::add);
-        return results;
+    // compaction automatique, si elle n'est pas suspendue (voir setAutoCompaction)
+    private void compactIfNeeded() {
+        long tombstones = spo.removedCount();
+        if (autoCompaction && tombstones >= MIN_TOMBSTONES_FOR_COMPACTION && tombstones * COMPACTION_RATIO > tripleCount) {
+            compactAsync();
+        }
     }
 
-// me rend la selectivite de la condition
+    /** Une fois reprises, les compactions automatiques rattrapent les suppressions faites entre-temps. */
     @Override
-    public long howMany(RDFTriple pattern) {
-        long count = 0;
-        Iterator<Substitution> it = match(pattern);
-        while (it.hasNext()) {
-            it.next();
-            count++;
+    public synchronized void setAutoCompaction(boolean enabled) {
+        autoCompaction = enabled;
+        compactIfNeeded();
+    }
+
+    /**
+     * Lance une compaction en tâche de fond (voir {@link #compact()}), ou renvoie celle déjà en cours.
+     * Les requêtes continuent pendant ce temps ; les modifications attendent sa fin.
+     */
+    public synchronized CompletableFuture<Void> compactAsync() {
+        if (compaction.isDone()) {
+            compaction = CompletableFuture.runAsync(this::compact);
         }
-        return count;
+        return compaction;
     }
 
+    /**
+     * Réécrit les six index sans les triplets supprimés, en y fusionnant le delta, puis libère
+     * les IDs des termes supprimés qui ne sont plus ni sujet, ni prédicat, ni objet d'aucun triplet.
+     * Les nouveaux index sont publiés ensemble : une requête en cours finit sur les anciens.
+     */
+    public synchronized void compact() {
+        TripleIndex[] indexes = indexes();
+        long e = epoch;
+        setIndexes(Arrays.stream(indexes).parallel().map(index -> index.compacted(e)).toArray(TripleIndex[]::new));
+        publish(e + 1);
+
+        Version v = current;
+        int[] unused = releaseCandidates.stream()
+                .filter(id -> v.spo.count(id) == 0 && v.pso.count(id) == 0 && v.osp.count(id) == 0)
+                .mapToInt(Integer::intValue).toArray();
+        dict.release(unused);
+        releaseCandidates.clear();
+    }
 
+    /**
+     * Fige les six index dans leur forme compacte triée (voir {@link FrozenIndex}).
+     * À appeler après le chargement : les ajouts suivants restent possibles, ils vont dans un
+     * petit delta mutable jusqu'au prochain appel. Les suppressions en attente sont compactées
+     * (voir {@link #compact()}).
+     * Les ensembles caractéristiques sont recalculés au passage.
+     */
     @Override
-    public long size() {
-        return tripleCount;
+    public synchronized void freeze() {
+        compact();
+        current.characteristicSets();
+    }
+
+    /** @return les ensembles caractéristiques de la version actuelle (voir {@link Version#characteristicSets()}) */
+    public CharacteristicSets characteristicSets() {
+        return current.characteristicSets();
+    }
+
+    /** Estimation sur la version actuelle (voir {@link Version#estimate}). */
+    public long estimate(StarQuery q) {
+        return current.estimate(q);
     }
 
     @Override
-    public Collection<RDFTriple> getAtoms() {
-        // On reconstruit les RDFTriple à partir des IDs encodés
-        List<RDFTriple> decoded = new ArrayList<>();
-        for (List<Integer> ids : encodedTriples) {
-            Term s = dict.decode(ids.get(0));
-            Term p = dict.decode(ids.get(1));
-            Term o = dict.decode(ids.get(2));
-            decoded.add(new RDFTriple(s, p, o));
-        }
-        return Collections.unmodifiableList(decoded);
+    public Iterator<Substitution> match(RDFTriple pattern) {
+        return current.match(pattern);
     }
 
-    /*@Override
+    @Override
     public Iterator<Substitution> match(StarQuery q) {
-        throw new UnsupportedOperationException("Non demandé pour le rendu du 15 novembre.");
+        return current.match(q);
+    }
+
+    @Override
+    public long howMany(RDFTriple pattern) {
+        return current.howMany(pattern);
+    }
+
+    @Override
+    public long size() {
+        return current.size();
+    }
+
+    @Override
+    public Collection<RDFTriple> getAtoms() {
+        return current.getAtoms();
     }
-*/
+
     public void printEncodedTriples() {
         System.out.println("=== Encoded Triples (s, p, o) ===");
-        for (List<Integer> triple : encodedTriples) {
-            System.out.println("(" + triple.get(0) + ", " + triple.get(1) + ", " + triple.get(2) + ")");
+        TripleCursor cursor = current.spo.scan();
+        while (cursor.next()) {
+            System.out.println("(" + cursor.first() + ", " + cursor.second() + ", " + cursor.third() + ")");
         }
     }
 
+    /**
+     * Le store tel qu'il était à une époque : six index vus à cette époque, nombre de triplets,
+     * dictionnaire (dans les deux sens) figé au même moment. Rien de ce qu'elle contient ne change ensuite ;
+     * seuls les ensembles caractéristiques sont calculés à la demande. En lecture seule.
+     */
+    public final class Version implements RDFStorage {
+
+        private final TripleIndex.View spo, sop, pso, pos, osp, ops;
+        private final long tripleCount;
+        private final ToIntFunction<Term> encoder;
+        private final IntFunction<Term> terms;
+        private volatile CharacteristicSets characteristicSets;
+
+        private Version(long epoch) {
+            this.spo = RDFHexaStore.this.spo.at(epoch);
+            this.sop = RDFHexaStore.this.sop.at(epoch);
+            this.pso = RDFHexaStore.this.pso.at(epoch);
+            this.pos = RDFHexaStore.this.pos.at(epoch);
+            this.osp = RDFHexaStore.this.osp.at(epoch);
+            this.ops = RDFHexaStore.this.ops.at(epoch);
+            this.tripleCount = RDFHexaStore.this.tripleCount;
+            this.encoder = dict.encoder();
+            this.terms = dict.decoder();
+        }
+
+        @Override
+        public boolean add(RDFTriple t) {
+            throw new UnsupportedOperationException("Version publiée : lecture seule");
+        }
+
+        /**
+         * @return les ensembles caractéristiques des données de cette version (calculés au premier appel,
+         *          ou déjà par {@link #freeze()})
+         */
+        public CharacteristicSets characteristicSets() {
+            CharacteristicSets sets = characteristicSets;
+            if (sets == null) {
+                sets = CharacteristicSets.compute(spo);
+                characteristicSets = sets;
+            }
+            return sets;
+        }
+
+        /**
+         * Estime le nombre de réponses d'une requête en étoile.
+         * Pour une étoile centrée sur le sujet, dont tous les prédicats sont connus, l'estimation vient
+         * des ensembles caractéristiques ; sinon on prend le patron le plus sélectif comme borne.
+         */
+        public long estimate(StarQuery q) {
+            double fromSets = estimateWithCharacteristicSets(q, characteristicSets());
+            if (fromSets >= 0) {
+                return Math.round(fromSets);
+            }
+            return q.getRdfAtoms().stream().mapToLong(this::howMany).min().orElse(0);
+        }
+
+        /** @return l'estimation, ou -1 si la requête n'est pas une étoile sujet à prédicats constants */
+        private double estimateWithCharacteristicSets(StarQuery q, CharacteristicSets sets) {
+            List<RDFTriple> patterns = q.getRdfAtoms();
+            int[] predicates = subjectStarPredicates(q);
+            if (predicates == null) return -1;
+
+            double[] selectivity = new double[patterns.size()];
+            for (int i = 0; i < patterns.size(); i++) {
+                Term oTerm = patterns.get(i).getTripleObject();
+                if (oTerm instanceof Variable) {
+                    selectivity[i] = 1;
+                } else {
+                    long withPredicate = pso.count(predicates[i]);
+                    selectivity[i] = withPredicate == 0 ? 0 : (double) pos.count(predicates[i], encoder.applyAsInt(oTerm)) / withPredicate;
+                }
+            }
+            return sets.estimateStar(predicates, selectivity);
+        }
+
+        /**
+         * @return l'ID du prédicat de chaque patron si la variable centrale est toujours le sujet
+         *          (et jamais l'objet) et que tous les prédicats sont des constantes, sinon null
+         */
+        private int[] subjectStarPredicates(StarQuery q) {
+            Variable center = q.getCentralVariable();
+            List<RDFTriple> patterns = q.getRdfAtoms();
+            int[] predicates = new int[patterns.size()];
+            for (int i = 0; i < patterns.size(); i++) {
+                RDFTriple pattern = patterns.get(i);
+                Term pTerm = pattern.getTriplePredicate();
+                if (!pattern.getTripleSubject().equals(center) || pattern.getTripleObject().equals(center)
+                        || pTerm instanceof Variable) {
+                    return null;
+                }
+                predicates[i] = encoder.applyAsInt(pTerm);
+            }
+            return predicates;
+        }
+
+
+        @Override
+        public Iterator<Substitution> match(RDFTriple pattern) {
+            Term sTerm = pattern.getTripleSubject();
+            Term pTerm = pattern.getTriplePredicate();
+            Term oTerm = pattern.getTripleObject();
+
+            Integer s = (sTerm instanceof Variable) ? null : encoder.applyAsInt(sTerm);
+            Integer p = (pTerm instanceof Variable) ? null : encoder.applyAsInt(pTerm);
+            Integer o = (oTerm instanceof Variable) ? null : encoder.applyAsInt(oTerm);
+
+            if (s != null && p != null && o != null) {
+                // cas exact : tous connus
+                if (spo.contains(s, p, o)) {
+                    return List.<Substitution>of(new SubstitutionImpl()).iterator();
+                }
+                return Collections.emptyIterator();
+            }
+
+            // on choisit l’index dont le préfixe couvre toutes les positions connues
+            if (s != null && p != null) {
+                return matchFromIndex(spo.scan(s, p), sTerm, pTerm, oTerm);
+            } else if (p != null && o != null) {
+                return matchFromIndex(pos.scan(p, o), pTerm, oTerm, sTerm);
+            } else if (s != null && o != null) {
+                return matchFromIndex(sop.scan(s, o), sTerm, oTerm, pTerm);
+            } else if (s != null) {
+                return matchFromIndex(spo.scan(s), sTerm, pTerm, oTerm);
+            } else if (p != null) {
+                return matchFromIndex(pso.scan(p), pTerm, sTerm, oTerm);
+            } else if (o != null) {
+                return matchFromIndex(osp.scan(o), oTerm, sTerm, pTerm);
+            } else {
+                // aucune position connue : parcours de spo
+                return matchFromIndex(spo.scan(), sTerm, pTerm, oTerm);
+            }
+        }
+
+        private Iterator<Substitution> matchFromIndex(TripleCursor cursor, Term firstTerm, Term secondTerm, Term thirdTerm) {
+            return TripleCursor.substitutions(cursor, terms, firstTerm, secondTerm, thirdTerm);
+        }
+
+        /**
+         * Sélectivité d'un patron, lue directement dans les compteurs des index (aucun match n'est évalué) :
+         * nombre de triplets par première clé, par paire de clés, ou au total, selon les positions connues.
+         */
+        @Override
+        public long howMany(RDFTriple pattern) {
+            Term sTerm = pattern.getTripleSubject();
+            Term pTerm = pattern.getTriplePredicate();
+            Term oTerm = pattern.getTripleObject();
+
+            // une variable répétée (ex. ?x p ?x) n'est pas couverte par les compteurs : on compte les réponses
+            if (hasRepeatedVariable(sTerm, pTerm, oTerm)) {
+                long count = 0;
+                Iterator<Substitution> it = match(pattern);
+                while (it.hasNext()) {
+                    it.next();
+                    count++;
+                }
+                return count;
+            }
+
+            Integer s = (sTerm instanceof Variable) ? null : encoder.applyAsInt(sTerm);
+            Integer p = (pTerm instanceof Variable) ? null : encoder.applyAsInt(pTerm);
+            Integer o = (oTerm instanceof Variable) ? null : encoder.applyAsInt(oTerm);
+
+            if (s != null && p != null && o != null) return spo.contains(s, p, o) ? 1 : 0;
+            if (s != null && p != null) return spo.count(s, p);
+            if (p != null && o != null) return pos.count(p, o);
+            if (s != null && o != null) return sop.count(s, o);
+            if (s != null) return spo.count(s);
+            if (p != null) return pso.count(p);   // total par prédicat
+            if (o != null) return osp.count(o);
+            return tripleCount;
+        }
+
+        private static boolean hasRepeatedVariable(Term s, Term p, Term o) {
+            return (s instanceof Variable && (s.equals(p) || s.equals(o)))
+                    || (p instanceof Variable && p.equals(o));
+        }
+
+
+        @Override
+        public long size() {
+            return tripleCount;
+        }
+
+        @Override
+        public Collection<RDFTriple> getAtoms() {
+            // On reconstruit les RDFTriple à partir de spo
+            List<RDFTriple> decoded = new ArrayList<>((int) Math.min(Integer.MAX_VALUE, tripleCount));
+            TripleCursor cursor = spo.scan();
+            while (cursor.next()) {
+                Term s = terms.apply(cursor.first());
+                Term p = terms.apply(cursor.second());
+                Term o = terms.apply(cursor.third());
+                decoded.add(new RDFTriple(s, p, o));
+            }
+            return Collections.unmodifiableList(decoded);
+        }
+
+        /**
+         * Évaluation d'une requête en étoile directement sur les IDs :
+         * les constantes de chaque patron sont encodées une seule fois, chaque patron donne la liste triée
+         * des valeurs possibles de la variable centrale (lue dans l'index adéquat), et ces listes sont
+         * intersectées par galop. Seules les réponses finales sont décodées.
+         * Les formes non couvertes (variable centrale en position prédicat, variable répétée)
+         * repassent par l'évaluation générique de {@link RDFStorage}.
+         */
+        @Override
+        public Iterator<Substitution> match(StarQuery q) {
+            Variable center = q.getCentralVariable();
+
+            // statistiques à jour : aucun sujet n'a tous les prédicats de l'étoile -> pas de réponse,
+            // et l'estimation sert à dimensionner le tableau des réponses
+            int expected = 16;
+            CharacteristicSets sets = characteristicSets;
+            if (sets != null) {
+                int[] predicates = subjectStarPredicates(q);
+                if (predicates != null && sets.subjectsWithAll(predicates) == 0) {
+                    return Collections.emptyIterator();
+                }
+                double estimate = estimateWithCharacteristicSets(q, sets);
+                if (estimate >= 0) {
+                    expected = (int) Math.min(Integer.MAX_VALUE, Math.round(estimate));
+                }
+            }
+
+            List<PostingList> lists = new ArrayList<>();
+            for (RDFTriple pattern : q.getRdfAtoms()) {
+                PostingList list = centerPostings(pattern, center);
+                if (list == null) {
+                    return RDFStorage.super.match(q);
+                }
+                if (list.atEnd()) {
+                    return Collections.emptyIterator();
+                }
+                lists.add(list);
+            }
+
+            int[] answers = PostingList.intersect(lists, expected);
+            return Arrays.stream(answers)
+                    .mapToObj(id -> {
+                        Substitution sub = new SubstitutionImpl();
+                        sub.add(center, terms.apply(id));
+                        return sub;
+                    })
+                    .iterator();
+        }
+
+        /**
+         * Liste triée des IDs que peut prendre la variable centrale dans ce patron,
+         * ou null si la forme du patron n'est pas couverte.
+         * Une constante inconnue du dictionnaire vaut -1, absent de tous les index : la liste est alors vide.
+         */
+        private PostingList centerPostings(RDFTriple pattern, Variable center) {
+            Term sTerm = pattern.getTripleSubject();
+            Term pTerm = pattern.getTriplePredicate();
+            Term oTerm = pattern.getTripleObject();
+
+            boolean centerIsSubject = sTerm.equals(center);
+            boolean centerIsObject = oTerm.equals(center);
+            if (pTerm.equals(center) || centerIsSubject == centerIsObject) return null;
+
+            // l'autre extrémité du patron (objet si le centre est sujet, et inversement)
+            Term other = centerIsSubject ? oTerm : sTerm;
+            boolean pIsVar = pTerm instanceof Variable;
+            boolean otherIsVar = other instanceof Variable;
+            if (pIsVar && pTerm.equals(other)) return null;
+
+            int p = pIsVar ? -1 : encoder.applyAsInt(pTerm);
+            int x = otherIsVar ? -1 : encoder.applyAsInt(other);
+
+            if (centerIsSubject) {
+                if (!pIsVar && !otherIsVar) return pos.thirds(p, x);   // ?c <p> <o>
+                if (!pIsVar) return pso.seconds(p);                     // ?c <p> ?y
+                if (!otherIsVar) return osp.seconds(x);                 // ?c ?y <o>
+                return spo.firsts();                                    // ?c ?y ?z
+            } else {
+                if (!pIsVar && !otherIsVar) return spo.thirds(x, p);   // <s> <p> ?c
+                if (!pIsVar) return pos.seconds(p);                     // ?y <p> ?c
+                if (!otherIsVar) return sop.seconds(x);                 // <s> ?y ?c
+                return osp.firsts();                                    // ?y ?z ?c
+            }
+        }
+    }
 }
@@ -24,6 +24,30 @@ public interface RDFStorage {
      */
     boolean add(RDFTriple t);
 
+    /**
+     * Retire un RDFAtom du store. Par défaut, le store ne permet pas les suppressions.
+     *
+     * @param t le triplet à retirer
+     * @return true si le RDFAtom était présent, false sinon
+     */
+    default boolean remove(RDFTriple t) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " ne permet pas les suppressions");
+    }
+
+    /**
+     * Retire des RDFAtom du store.
+     *
+     * @param atoms les RDFAtom à retirer
+     * @return true si au moins un RDFAtom a été retiré
+     */
+    default boolean removeAll(Collection<RDFTriple> atoms) {
+        boolean removed = false;
+        for (RDFTriple t : atoms) {
+            removed |= remove(t);
+        }
+        return removed;
+    }
+
     /**
      * @param a atom
      * @return un itérateur de substitutions correspondant aux match des atomes
@@ -40,13 +64,15 @@ public interface RDFStorage {
     default Iterator<Substitution> match(StarQuery q) {
 
         Variable center = q.getCentralVariable();
-        List<RDFTriple> patterns = q.getRdfAtoms();
 
-        if (patterns.isEmpty()) {
+        if (q.getRdfAtoms().isEmpty()) {
             return Collections.emptyIterator();
         }
 
-        // 1) Solutions du premier patron
+        // 0) Plan : le patron le plus sélectif d'abord, puis les filtres par cardinalité croissante
+        List<RDFTriple> patterns = StarQueryPlanner.order(q.getRdfAtoms(), this::howMany);
+
+        // 1) Solutions du premier patron (le plus sélectif)
         Set<Term> candidats = new HashSet<>();
 
         Iterator<Substitution> it = match(patterns.getFirst());
@@ -81,8 +107,8 @@ public interface RDFStorage {
 
                 RDFTriple instancie = new RDFTriple(s, p, o);
 
-                // Vérification via howMany (sélectivité)
-                if (howMany(instancie) > 0) {
+                // Vérification d'existence : on s'arrête à la première réponse (match est paresseux)
+                if (match(instancie).hasNext()) {
                     ok.add(val);
                 }
             }
@@ -95,16 +121,14 @@ public interface RDFStorage {
             }
         }
 
-        // 3) Création des substitutions de sortie
-        List<Substitution> results = new ArrayList<>();
-
-        for (Term val : candidats) {
-            SubstitutionImpl s = new SubstitutionImpl();
-            s.add(center, val);
-            results.add(s);
-        }
-
-        return results.iterator();
+        // 3) Création des substitutions de sortie, à la demande
+        return candidats.stream()
+                .map(val -> {
+                    Substitution s = new SubstitutionImpl();
+                    s.add(center, val);
+                    return s;
+                })
+                .iterator();
     }
 
 
@@ -149,4 +173,11 @@ public interface RDFStorage {
     default boolean addAll(Collection<RDFTriple> atoms) {
         return this.addAll(atoms.stream());
     }
+
+    /**
+     * Fige les structures du store après un chargement : les lectures suivantes n'ont plus rien
+     * à reconstruire. Les ajouts restent possibles. Par défaut, rien à faire.
+     */
+    default void freeze() {
+    }
 }
@@ -0,0 +1,193 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+import qengine.model.RDFTriple;
+import qengine.model.StarQuery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Store partitionné par sujet : N {@link RDFHexaStore} indépendants (chacun avec son dictionnaire),
+ * un triplet allant dans la partition de son sujet (voir {@link #shardOf}).
+ * <p>
+ * Tous les triplets d'un même sujet sont donc dans la même partition : une étoile centrée sur le sujet
+ * ({@code ?x p1 o1 . ... ?x pk ok}) s'évalue entièrement dans chaque partition, sans jointure entre
+ * partitions, et les réponses des partitions sont disjointes. {@link #match(StarQuery)} lance alors
+ * une tâche par partition en parallèle, et rend les réponses au fil de l'eau, partition par partition.
+ * <p>
+ * Les autres étoiles (variable centrale en position objet dans un patron, par exemple) n'ont pas cette
+ * propriété : elles passent par l'évaluation générique de {@link RDFStorage}, dont chaque patron
+ * est diffusé à toutes les partitions.
+ */
+public class ShardedRDFStorage implements RDFStorage {
+
+    private final RDFHexaStore[] shards;
+
+    /** Une partition par cœur. */
+    public ShardedRDFStorage() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ShardedRDFStorage(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Nombre de partitions invalide : " + shardCount);
+        }
+        shards = new RDFHexaStore[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new RDFHexaStore();
+        }
+    }
+
+    /**
+     * Partition d'un sujet parmi shardCount : ne dépend que du texte du terme, donc elle est la même
+     * d'une exécution (ou d'un processus) à l'autre.
+     */
+    public static int shardOf(Term subject, int shardCount) {
+        return shardOf(subject.label(), shardCount);
+    }
+
+    /** Partition d'un sujet donné par son étiquette (valeur brute, comme {@link Term#label()}). */
+    public static int shardOf(String subjectLabel, int shardCount) {
+        int h = subjectLabel.hashCode() * 0x9E3779B9;
+        return Math.floorMod(h ^ (h >>> 16), shardCount);
+    }
+
+    /** Nombre de partitions. */
+    public int shardCount() {
+        return shards.length;
+    }
+
+    /** La partition i (pour les statistiques et les tests). */
+    public RDFHexaStore shard(int i) {
+        return shards[i];
+    }
+
+    private RDFHexaStore shardFor(Term subject) {
+        return shards[shardOf(subject, shards.length)];
+    }
+
+    @Override
+    public boolean add(RDFTriple t) {
+        return shardFor(t.getTripleSubject()).add(t);
+    }
+
+    /** Ajout en bloc : les triplets sont répartis, puis chaque partition charge les siens en parallèle. */
+    @Override
+    public boolean addAll(Stream<RDFTriple> atoms) {
+        List<List<RDFTriple>> parts = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) parts.add(new ArrayList<>());
+        atoms.forEach(t -> parts.get(shardOf(t.getTripleSubject(), shards.length)).add(t));
+        return IntStream.range(0, shards.length).parallel()
+                .mapToObj(i -> !parts.get(i).isEmpty() && shards[i].addAll(parts.get(i)))
+                .reduce(false, Boolean::logicalOr);
+    }
+
+    @Override
+    public boolean remove(RDFTriple t) {
+        return shardFor(t.getTripleSubject()).remove(t);
+    }
+
+    /** Fige toutes les partitions, en parallèle (voir {@link RDFHexaStore#freeze()}). */
+    @Override
+    public void freeze() {
+        Arrays.stream(shards).parallel().forEach(RDFHexaStore::freeze);
+    }
+
+    @Override
+    public Iterator<Substitution> match(RDFTriple a) {
+        if (!(a.getTripleSubject() instanceof Variable)) {
+            return shardFor(a.getTripleSubject()).match(a);
+        }
+        // sujet variable : les réponses des partitions sont disjointes, on les enchaîne
+        return new Chain(Arrays.stream(shards).map(shard -> shard.match(a)).iterator());
+    }
+
+    /**
+     * Étoile centrée sur le sujet dans tous ses patrons : évaluée par chaque partition en parallèle.
+     * Les réponses d'une partition sont rendues dès qu'elle a fini, dans l'ordre des partitions.
+     * Sinon, évaluation générique (chaque patron interroge toutes les partitions).
+     */
+    @Override
+    public Iterator<Substitution> match(StarQuery q) {
+        if (q.getRdfAtoms().isEmpty()) {
+            return Collections.emptyIterator();
+        }
+        if (!isSubjectStar(q)) {
+            return RDFStorage.super.match(q);
+        }
+        List<CompletableFuture<List<Substitution>>> answers = Arrays.stream(shards)
+                .map(shard -> CompletableFuture.supplyAsync(() -> {
+                    List<Substitution> list = new ArrayList<>();
+                    shard.match(q).forEachRemaining(list::add);
+                    return list;
+                }))
+                .collect(Collectors.toList());
+        return new Chain(answers.stream().map(answer -> answer.join().iterator()).iterator());
+    }
+
+    /** Tous les patrons ont la variable centrale en sujet : chaque réponse est entière dans une partition. */
+    public static boolean isSubjectStar(StarQuery q) {
+        Variable center = q.getCentralVariable();
+        return q.getRdfAtoms().stream().allMatch(t -> t.getTripleSubject().equals(center));
+    }
+
+    @Override
+    public long howMany(RDFTriple a) {
+        if (!(a.getTripleSubject() instanceof Variable)) {
+            return shardFor(a.getTripleSubject()).howMany(a);
+        }
+        long n = 0;
+        for (RDFHexaStore shard : shards) n += shard.howMany(a);
+        return n;
+    }
+
+    @Override
+    public long size() {
+        long n = 0;
+        for (RDFHexaStore shard : shards) n += shard.size();
+        return n;
+    }
+
+    @Override
+    public Collection<RDFTriple> getAtoms() {
+        List<RDFTriple> atoms = new ArrayList<>();
+        for (RDFHexaStore shard : shards) atoms.addAll(shard.getAtoms());
+        return atoms;
+    }
+
+    /** Enchaîne les réponses des partitions ; chaque partition n'est interrogée qu'une fois la précédente épuisée. */
+    private static final class Chain implements Iterator<Substitution> {
+        private final Iterator<Iterator<Substitution>> parts;
+        private Iterator<Substitution> current = Collections.emptyIterator();
+
+        Chain(Iterator<Iterator<Substitution>> parts) {
+            this.parts = parts;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && parts.hasNext()) {
+                current = parts.next();
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public Substitution next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return current.next();
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Constant;
+import fr.boreal.model.logicalElements.api.Literal;
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.factory.api.TermFactory;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Instantané binaire d'un {@link RDFHexaStore} figé : le dictionnaire puis les six index au format CSR.
+ * <pre>
+ *   en-tête      : "QHEX", version, nombre de triplets, nombre de termes
+ *   dictionnaire : pour chaque ID à partir de 1, genre du terme ('L' littéral, 'C' constante,
+ *                  'X' ID libéré), longueur puis octets UTF-8 de sa valeur (vide pour 'X')
+ *   index        : spo, sop, pso, pos, osp, ops ; pour chacun les cinq tableaux de {@link FrozenIndex},
+ *                  chacun précédé de sa longueur, alignés sur 4 octets
+ * </pre>
+ * Tout est en petit-boutiste. À l'ouverture, seul le dictionnaire est lu (il faut bien recréer les Term) ;
+ * les tableaux des index sont projetés en mémoire ({@link FileChannel#map}) et lus directement :
+ * les pages ne sont chargées qu'au premier accès, et plusieurs JVM qui ouvrent le même fichier
+ * partagent le cache de pages du système.
+ */
+final class Snapshot {
+
+    private static final int MAGIC = 0x58454851;   // "QHEX"
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final byte RELEASED = 'X';
+
+    /** Contenu d'un instantané ouvert. */
+    record Contents(Dictionary dictionary, long tripleCount, FrozenIndex[] indexes) {
+    }
+
+    private Snapshot() {
+    }
+
+    /**
+     * Écrit l'instantané dans un fichier temporaire voisin, renommé à la fin : un fichier déjà présent
+     * (même projeté en mémoire par un store ouvert) n'est jamais vu à moitié écrit.
+     */
+    static void write(Path file, Dictionary dict, long tripleCount, FrozenIndex[] indexes) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putLong(tripleCount);
+            int size = dict.size();
+            out.putInt(size);
+            for (int id = 1; id <= size; id++) {
+                Term term = dict.isReleased(id) ? null : dict.decode(id);
+                byte[] value = valueOf(term).getBytes(StandardCharsets.UTF_8);
+                out.put(kindOf(term));
+                out.putInt(value.length);
+                out.put(value);
+            }
+            out.align();
+            for (FrozenIndex index : indexes) {
+                for (IntBuffer array : index.arrays()) {
+                    if (array.limit() > Integer.MAX_VALUE / Integer.BYTES) {
+                        throw new IOException("Tableau d'index trop grand pour une projection en mémoire : " + array.limit());
+                    }
+                    out.putInt(array.limit());
+                    for (int i = 0; i < array.limit(); i++) {
+                        out.putInt(array.get(i));
+                    }
+                }
+            }
+            out.flush();
+            channel.force(false);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Genre du terme : 'L' littéral, 'C' constante, 'X' pour un ID libéré (terme null)
+     * (aussi utilisé par {@link WriteAheadLog}).
+     */
+    static byte kindOf(Term term) {
+        if (term == null) return RELEASED;
+        return term instanceof Literal ? (byte) 'L' : (byte) 'C';
+    }
+
+    /** Valeur brute du terme, celle qu'on redonne à la fabrique à la relecture. */
+    static String valueOf(Term term) {
+        if (term == null) return "";
+        if (term instanceof Literal<?> literal && literal.value() instanceof String value) return value;
+        if (term instanceof Constant) return term.label();
+        throw new IllegalArgumentException("Terme non pris en charge par l'instantané : " + term);
+    }
+
+    /** Recrée le terme écrit avec {@link #kindOf} / {@link #valueOf} (null pour un ID libéré). */
+    static Term termOf(byte kind, String value) {
+        if (kind == RELEASED) return null;
+        TermFactory factory = SameObjectTermFactory.instance();
+        return kind == 'L' ? factory.createOrGetLiteral(value) : factory.createOrGetConstant(value);
+    }
+
+    static Contents read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Input in = new Input(channel);
+            if (in.getInt() != MAGIC) throw new IOException(file + " : ce n'est pas un instantané");
+            int version = in.getInt();
+            if (version != VERSION) throw new IOException(file + " : version " + version + " non prise en charge");
+            long tripleCount = in.getLong();
+
+            Dictionary dict = new Dictionary();
+            int terms = in.getInt();
+            for (int id = 1; id <= terms; id++) {
+                byte kind = in.get();
+                String value = in.getString(in.getInt());
+                Term term = termOf(kind, value);
+                if ((term == null ? dict.reserve() : dict.encode(term)) != id) throw new IOException(file + " : dictionnaire incohérent (ID " + id + ")");
+            }
+
+            // les tableaux ne sont pas lus : on les projette en mémoire là où ils sont
+            long position = align(in.position());
+            FrozenIndex[] indexes = new FrozenIndex[6];
+            for (int x = 0; x < indexes.length; x++) {
+                IntBuffer[] arrays = new IntBuffer[5];
+                for (int k = 0; k < arrays.length; k++) {
+                    ByteBuffer length = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                    if (channel.read(length, position) != Integer.BYTES) throw new IOException(file + " : fichier tronqué");
+                    int n = length.getInt(0);
+                    position += Integer.BYTES;
+                    if (position + (long) n * Integer.BYTES > channel.size()) throw new IOException(file + " : fichier tronqué");
+                    arrays[k] = channel.map(FileChannel.MapMode.READ_ONLY, position, (long) n * Integer.BYTES)
+                            .order(ByteOrder.LITTLE_ENDIAN)
+                            .asIntBuffer();
+                    position += (long) n * Integer.BYTES;
+                }
+                indexes[x] = new FrozenIndex(arrays[0], arrays[1], arrays[2], arrays[3], arrays[4]);
+            }
+            return new Contents(dict, tripleCount, indexes);
+        }
+    }
+
+    private static long align(long position) {
+        return (position + Integer.BYTES - 1) & -Integer.BYTES;
+    }
+
+    /** Écriture tamponnée en petit-boutiste. */
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long written = 0;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void put(byte b) throws IOException {
+            room(1);
+            buffer.put(b);
+        }
+
+        void putInt(int v) throws IOException {
+            room(Integer.BYTES);
+            buffer.putInt(v);
+        }
+
+        void putLong(long v) throws IOException {
+            room(Long.BYTES);
+            buffer.putLong(v);
+        }
+
+        void put(byte[] bytes) throws IOException {
+            for (int from = 0; from < bytes.length; ) {
+                room(1);
+                int n = Math.min(buffer.remaining(), bytes.length - from);
+                buffer.put(bytes, from, n);
+                from += n;
+            }
+        }
+
+        // complète avec des zéros jusqu'à une position multiple de 4
+        void align() throws IOException {
+            long position = written + buffer.position();
+            for (long pad = Snapshot.align(position) - position; pad > 0; pad--) put((byte) 0);
+        }
+
+        private void room(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) flush();
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) written += channel.write(buffer);
+            buffer.clear();
+        }
+    }
+
+    /** Lecture tamponnée en petit-boutiste, depuis le début du fichier. */
+    private static final class Input {
+        private final FileChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN).limit(0);
+        private long consumed = 0;      // position dans le fichier de buffer[0]
+
+        Input(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /** Position dans le fichier du prochain octet à lire. */
+        long position() {
+            return consumed + buffer.position();
+        }
+
+        byte get() throws IOException {
+            need(1);
+            return buffer.get();
+        }
+
+        int getInt() throws IOException {
+            need(Integer.BYTES);
+            return buffer.getInt();
+        }
+
+        long getLong() throws IOException {
+            need(Long.BYTES);
+            return buffer.getLong();
+        }
+
+        String getString(int length) throws IOException {
+            if (length > buffer.capacity()) {
+                // valeur plus longue que le tampon : on repart d'un tampon assez grand
+                consumed += buffer.position();
+                buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN).put(buffer).flip();
+            }
+            need(length);
+            String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+
+        private void need(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) return;
+            consumed += buffer.position();
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer, consumed + buffer.position()) < 0) throw new IOException("Instantané tronqué");
+            }
+            buffer.flip();
+        }
+    }
+}
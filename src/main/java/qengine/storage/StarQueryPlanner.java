@@ -0,0 +1,44 @@
+package qengine.storage;
+
+import qengine.model.RDFTriple;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Planificateur des requêtes en étoile basé sur les statistiques.
+ * Chaque patron est estimé une seule fois ; le plus sélectif sert à générer les candidats,
+ * les autres sont appliqués comme filtres par cardinalité estimée croissante.
+ */
+public final class StarQueryPlanner {
+
+    private StarQueryPlanner() {
+    }
+
+    /**
+     * Ordonne les patrons par cardinalité estimée croissante.
+     * L'ordre est stable : à estimation égale, on garde l'ordre de la requête.
+     *
+     * @param patterns  les patrons de la requête
+     * @param estimator estimation du nombre de réponses d'un patron (ex. {@link RDFStorage#howMany})
+     * @return une nouvelle liste, le patron le plus sélectif en premier
+     */
+    public static List<RDFTriple> order(List<RDFTriple> patterns, ToLongFunction<RDFTriple> estimator) {
+        List<Estimated> estimated = new ArrayList<>(patterns.size());
+        for (RDFTriple pattern : patterns) {
+            estimated.add(new Estimated(pattern, estimator.applyAsLong(pattern)));
+        }
+        estimated.sort(Comparator.comparingLong(Estimated::cardinality));
+
+        List<RDFTriple> ordered = new ArrayList<>(estimated.size());
+        for (Estimated e : estimated) {
+            ordered.add(e.pattern());
+        }
+        return ordered;
+    }
+
+    private record Estimated(RDFTriple pattern, long cardinality) {
+    }
+}
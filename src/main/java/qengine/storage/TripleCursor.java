@@ -0,0 +1,117 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.logicalElements.impl.SubstitutionImpl;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.IntFunction;
+
+/**
+ * Curseur sur des triplets encodés (a, b, c), dans l'ordre d'un index.
+ * Usage : {@code while (cursor.next()) { ... cursor.first() ... }}.
+ */
+interface TripleCursor {
+
+    TripleCursor EMPTY = new TripleCursor() {
+        @Override public boolean next() { return false; }
+        @Override public int first() { throw new IllegalStateException(); }
+        @Override public int second() { throw new IllegalStateException(); }
+        @Override public int third() { throw new IllegalStateException(); }
+    };
+
+    /** Avance au triplet suivant. @return false s'il n'y en a plus */
+    boolean next();
+
+    int first();
+
+    int second();
+
+    int third();
+
+    /** Enchaîne deux curseurs : tout head, puis tout tail. */
+    static TripleCursor concat(TripleCursor head, TripleCursor tail) {
+        return new TripleCursor() {
+            private TripleCursor current = head;
+
+            @Override
+            public boolean next() {
+                if (current.next()) return true;
+                if (current == tail) return false;
+                current = tail;
+                return current.next();
+            }
+
+            @Override public int first() { return current.first(); }
+            @Override public int second() { return current.second(); }
+            @Override public int third() { return current.third(); }
+        };
+    }
+
+    /** Enchaîne une liste de curseurs, dans l'ordre, sans les imbriquer. */
+    static TripleCursor concat(List<TripleCursor> cursors) {
+        if (cursors.isEmpty()) return EMPTY;
+        return new TripleCursor() {
+            private int k = 0;
+            private TripleCursor current = cursors.get(0);
+
+            @Override
+            public boolean next() {
+                while (!current.next()) {
+                    if (++k >= cursors.size()) return false;
+                    current = cursors.get(k);
+                }
+                return true;
+            }
+
+            @Override public int first() { return current.first(); }
+            @Override public int second() { return current.second(); }
+            @Override public int third() { return current.third(); }
+        };
+    }
+
+    /**
+     * Itérateur paresseux : chaque substitution est construite au moment où on la demande,
+     * directement à partir du curseur.
+     * Les termes sont donnés dans l'ordre du curseur ; seuls les variables sont liées, et une variable
+     * répétée (ex. ?x p ?x) impose l'égalité des valeurs correspondantes. Les IDs sont décodés par terms
+     * ({@code dict::decode}, ou un décodeur figé par {@link Dictionary#decoder()}).
+     */
+    static Iterator<Substitution> substitutions(TripleCursor cursor, IntFunction<Term> terms,
+                                                Term firstTerm, Term secondTerm, Term thirdTerm) {
+        Variable v1 = firstTerm instanceof Variable v ? v : null;
+        Variable v2 = secondTerm instanceof Variable v ? v : null;
+        Variable v3 = thirdTerm instanceof Variable v ? v : null;
+        boolean eq12 = v1 != null && v1.equals(v2);
+        boolean eq13 = v1 != null && v1.equals(v3);
+        boolean eq23 = v2 != null && v2.equals(v3);
+
+        return new Iterator<>() {
+            private boolean ready = false;
+
+            @Override
+            public boolean hasNext() {
+                while (!ready && cursor.next()) {
+                    ready = (!eq12 || cursor.first() == cursor.second())
+                            && (!eq13 || cursor.first() == cursor.third())
+                            && (!eq23 || cursor.second() == cursor.third());
+                }
+                return ready;
+            }
+
+            @Override
+            public Substitution next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                ready = false;
+                SubstitutionImpl sub = new SubstitutionImpl();
+                if (v1 != null) sub.add(v1, terms.apply(cursor.first()));
+                if (v2 != null) sub.add(v2, terms.apply(cursor.second()));
+                if (v3 != null) sub.add(v3, terms.apply(cursor.third()));
+                return sub;
+            }
+        };
+    }
+}
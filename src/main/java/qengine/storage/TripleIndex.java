@@ -0,0 +1,488 @@
+package qengine.storage;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Un des six index de l'hexastore, pour un ordre (a, b, c) donné (spo, pso, ...).
+ * Il est composé de trois parties :
+ * <ul>
+ *     <li>une partie figée ({@link FrozenIndex}), compacte et triée, jamais modifiée ;</li>
+ *     <li>un delta a -> b -> {c} qui reçoit les insertions depuis la construction de l'index ;</li>
+ *     <li>des pierres tombales a -> b -> {c} : les triplets de la partie figée supprimés depuis.</li>
+ * </ul>
+ * {@link #compacted} construit un nouvel index dont la partie figée contient tout, sans les triplets supprimés.
+ * <p>
+ * Versions : chaque écriture se fait à une époque donnée par le store, et chaque valeur du delta ou des
+ * pierres tombales garde l'intervalle d'époques pendant lequel elle compte. Une lecture se fait à une
+ * époque fixe ({@link #at}) et ignore tout ce qui a été écrit après, même pendant qu'elle parcourt l'index.
+ * Un seul thread écrit à la fois dans un index ; les feuilles (a, b) ne font que grandir (voir {@link Leaf})
+ * et les niveaux a et b sont des {@link ConcurrentHashMap} : les lectures ne prennent aucun verrou.
+ * Une valeur supprimée du delta, ou une pierre tombale relevée, reste dans sa feuille avec un intervalle
+ * fermé jusqu'à la compaction ; {@link #removedCount()} les compte avec les pierres tombales.
+ */
+final class TripleIndex {
+
+    /** Époque de fin d'une valeur toujours valable. */
+    private static final long FOREVER = Long.MAX_VALUE;
+
+    /**
+     * Feuille (a, b) : valeurs c, chacune avec l'intervalle d'époques [from, to) pendant lequel elle compte.
+     * Une même valeur peut revenir plusieurs fois, avec des intervalles disjoints.
+     * <p>
+     * C'est une table de hachage à adressage ouvert (sondage linéaire) où l'on ne fait qu'ajouter : une insertion
+     * remplit une case libre, une suppression ferme l'intervalle de sa valeur. Seul l'écrivain la modifie :
+     * la valeur d'une case est écrite en dernier (release) et lue en premier (acquire) par les lectures, et
+     * une table à moitié pleine est remplacée par une copie deux fois plus grande, remplie avant d'être publiée.
+     * Une insertion coûte donc un temps constant (amorti), quelle que soit la taille de la feuille.
+     */
+    private static final class Leaf {
+
+        private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(int[].class);
+        private static final VarHandle EPOCHS = MethodHandles.arrayElementVarHandle(long[].class);
+
+        /** Feuille vide partagée, jamais modifiée (voir {@link Part#leaf}). */
+        static final Leaf EMPTY = new Leaf();
+
+        /** Cases de la table : values[i] == 0 pour une case libre (les IDs commencent à 1). */
+        private record Slots(int[] values, long[] from, long[] to) {
+            Slots(int capacity) {
+                this(new int[capacity], new long[capacity], new long[capacity]);
+            }
+        }
+
+        private volatile Slots slots = new Slots(2);
+        private int used = 0;                       // cases occupées, intervalles fermés compris (écrivain)
+        private volatile Count count = Count.NONE;  // nombre de valeurs valables
+
+        private static int home(int c, int mask) {
+            int h = c * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        // la fin d'un intervalle peut être fermée pendant la lecture : lecture atomique
+        private static boolean visible(Slots t, int i, long epoch) {
+            return t.from[i] <= epoch && epoch < (long) EPOCHS.getOpaque(t.to, i);
+        }
+
+        boolean contains(int c, long epoch) {
+            Slots t = slots;
+            int mask = t.values.length - 1;
+            for (int i = home(c, mask); ; i = (i + 1) & mask) {
+                int v = (int) VALUES.getAcquire(t.values, i);
+                if (v == 0) return false;
+                if (v == c && visible(t, i, epoch)) return true;
+            }
+        }
+
+        int count(long epoch) {
+            Count n = count;
+            if (epoch >= n.epoch()) return n.value();
+            if (epoch >= n.previousEpoch()) return n.previousValue();
+            Slots t = slots;
+            int k = 0;
+            for (int i = 0; i < t.values.length; i++) {
+                if ((int) VALUES.getAcquire(t.values, i) != 0 && visible(t, i, epoch)) k++;
+            }
+            return k;
+        }
+
+        /** Les valeurs visibles à cette époque, triées et distinctes (une seule entrée visible par valeur). */
+        int[] visible(long epoch) {
+            Slots t = slots;
+            int[] kept = new int[t.values.length];
+            int n = 0;
+            for (int i = 0; i < t.values.length; i++) {
+                int v = (int) VALUES.getAcquire(t.values, i);
+                if (v != 0 && visible(t, i, epoch)) kept[n++] = v;
+            }
+            Arrays.sort(kept, 0, n);
+            return n == kept.length ? kept : Arrays.copyOf(kept, n);
+        }
+
+        /** c, qui n'est pas valable dans la feuille, l'est à partir de epoch. */
+        void open(int c, long epoch) {
+            Slots t = slots;
+            if ((used + 1) * 2 > t.values.length) t = grow();
+            int mask = t.values.length - 1;
+            int i = home(c, mask);
+            while (t.values[i] != 0) i = (i + 1) & mask;
+            t.from[i] = epoch;
+            t.to[i] = FOREVER;
+            VALUES.setRelease(t.values, i, c);
+            used++;
+            count = count.plus(1, epoch);
+        }
+
+        /** La valeur c encore valable cesse de l'être à partir de epoch. */
+        void close(int c, long epoch) {
+            Slots t = slots;
+            int mask = t.values.length - 1;
+            for (int i = home(c, mask); t.values[i] != 0; i = (i + 1) & mask) {
+                if (t.values[i] == c && t.to[i] == FOREVER) {
+                    EPOCHS.setOpaque(t.to, i, epoch);
+                    count = count.plus(-1, epoch);
+                    return;
+                }
+            }
+            throw new IllegalStateException("Valeur " + c + " absente de la feuille");
+        }
+
+        // les lectures en cours gardent l'ancienne table, qui ne change plus
+        private Slots grow() {
+            Slots old = slots;
+            Slots t = new Slots(old.values.length << 1);
+            int mask = t.values.length - 1;
+            for (int j = 0; j < old.values.length; j++) {
+                if (old.values[j] == 0) continue;
+                int i = home(old.values[j], mask);
+                while (t.values[i] != 0) i = (i + 1) & mask;
+                t.values[i] = old.values[j];
+                t.from[i] = old.from[j];
+                t.to[i] = old.to[j];
+            }
+            slots = t;
+            return t;
+        }
+    }
+
+    /**
+     * Nombre de valeurs sous une clé : la valeur depuis la dernière modification (époque epoch),
+     * et celle d'avant (depuis previousEpoch). Une lecture plus ancienne que les deux recompte les entrées.
+     */
+    private record Count(long epoch, int value, long previousEpoch, int previousValue) {
+
+        static final Count NONE = new Count(0, 0, 0, 0);
+
+        Count plus(int delta, long at) {
+            if (at == epoch) return new Count(epoch, value + delta, previousEpoch, previousValue);
+            return new Count(at, value + delta, epoch, value);
+        }
+    }
+
+    /** Delta ou pierres tombales : a -> b -> feuille, avec le nombre de valeurs par clé a. */
+    private static final class Part {
+        final ConcurrentHashMap<Integer, ConcurrentHashMap<Integer, Leaf>> leaves = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<Integer, Count> counts = new ConcurrentHashMap<>();
+
+        Leaf leaf(int a, int b) {
+            Map<Integer, Leaf> level2 = leaves.get(a);
+            if (level2 == null) return Leaf.EMPTY;
+            return level2.getOrDefault(b, Leaf.EMPTY);
+        }
+
+        /** c valable dans la feuille (a, b), créée au besoin, à partir de l'époque at. */
+        void open(int a, int b, int c, long at) {
+            leaves.computeIfAbsent(a, k -> new ConcurrentHashMap<>()).computeIfAbsent(b, k -> new Leaf()).open(c, at);
+            counts.put(a, counts.getOrDefault(a, Count.NONE).plus(1, at));
+        }
+
+        /** c, valable dans la feuille (a, b), cesse de l'être à partir de l'époque at. */
+        void close(int a, int b, int c, long at) {
+            leaf(a, b).close(c, at);
+            counts.put(a, counts.get(a).plus(-1, at));
+        }
+
+        boolean isEmpty() {
+            return leaves.isEmpty();
+        }
+
+        /** Nombre de valeurs visibles sous la clé a. */
+        int count(int a, long epoch) {
+            Count count = counts.get(a);
+            if (count == null) return 0;
+            if (epoch >= count.epoch()) return count.value();
+            if (epoch >= count.previousEpoch()) return count.previousValue();
+
+            Map<Integer, Leaf> level2 = leaves.get(a);
+            if (level2 == null) return 0;
+            int n = 0;
+            for (Leaf leaf : level2.values()) n += leaf.count(epoch);
+            return n;
+        }
+
+        /** Les valeurs visibles, sous la forme attendue par {@link FrozenIndex#merge}. */
+        Map<Integer, Map<Integer, Set<Integer>>> asMap(long epoch) {
+            Map<Integer, Map<Integer, Set<Integer>>> map = new HashMap<>();
+            leaves.forEach((a, level2) -> level2.forEach((b, leaf) -> {
+                for (int c : leaf.visible(epoch)) {
+                    map.computeIfAbsent(a, k -> new HashMap<>()).computeIfAbsent(b, k -> new HashSet<>()).add(c);
+                }
+            }));
+            return map;
+        }
+    }
+
+    private final FrozenIndex frozen;
+    private final Part delta = new Part();
+    private final Part removed = new Part();
+
+    // pierres tombales encore valables, et entrées fermées (valeurs du delta supprimées,
+    // pierres tombales relevées) qui attendent la compaction (tenus par l'écrivain)
+    private long tombstones = 0;
+    private long closed = 0;
+
+    TripleIndex() {
+        this(FrozenIndex.EMPTY);
+    }
+
+    TripleIndex(FrozenIndex frozen) {
+        this.frozen = frozen;
+    }
+
+    /**
+     * Ajoute (a, b, c) à l'époque donnée.
+     *
+     * @return true si (a, b, c) n'était pas encore dans l'index
+     */
+    boolean insert(int a, int b, int c, long epoch) {
+        if (frozen.contains(a, b, c)) {
+            // déjà figé : absent seulement s'il a été supprimé depuis, on ferme alors sa pierre tombale
+            if (!removed.leaf(a, b).contains(c, epoch)) return false;
+            removed.close(a, b, c, epoch);
+            tombstones--;
+            closed++;
+            return true;
+        }
+        if (delta.leaf(a, b).contains(c, epoch)) return false;
+        delta.open(a, b, c, epoch);
+        return true;
+    }
+
+    /**
+     * Ajoute un lot de triplets absents de l'index, rangés par 3 dans triples[0..size) ; (a, b, c) est
+     * (triples[i + order[0]], triples[i + order[1]], triples[i + order[2]]).
+     */
+    void insertAll(int[] triples, int size, int[] order, long epoch) {
+        for (int i = 0; i < size; i += 3) {
+            int a = triples[i + order[0]], b = triples[i + order[1]], c = triples[i + order[2]];
+            if (frozen.contains(a, b, c)) {
+                insert(a, b, c, epoch);   // pierre tombale à fermer
+            } else {
+                delta.open(a, b, c, epoch);
+            }
+        }
+    }
+
+    /**
+     * Supprime (a, b, c) à l'époque donnée : pierre tombale s'il est figé, fin de validité s'il est dans le delta.
+     *
+     * @return true si (a, b, c) était dans l'index
+     */
+    boolean remove(int a, int b, int c, long epoch) {
+        if (frozen.contains(a, b, c)) {
+            if (removed.leaf(a, b).contains(c, epoch)) return false;
+            removed.open(a, b, c, epoch);
+            tombstones++;
+            return true;
+        }
+        if (!delta.leaf(a, b).contains(c, epoch)) return false;
+        delta.close(a, b, c, epoch);
+        closed++;
+        return true;
+    }
+
+    /**
+     * Ce que {@link #compacted} ferait disparaître : pierres tombales en attente, et entrées fermées
+     * qui restent dans les feuilles (les lectures les parcourent encore).
+     */
+    long removedCount() {
+        return tombstones + closed;
+    }
+
+    /** La partie figée, sans le delta (complète juste après {@link #compacted}). */
+    FrozenIndex frozen() {
+        return frozen;
+    }
+
+    /**
+     * Nouvel index dont la partie figée contient tout ce qui est visible à cette époque
+     * (delta fusionné, triplets supprimés laissés de côté), ou cet index s'il n'a rien à fusionner.
+     * Aucune écriture ne doit avoir lieu pendant la fusion ; les lectures, elles, continuent sur cet index.
+     */
+    TripleIndex compacted(long epoch) {
+        if (delta.isEmpty() && removed.isEmpty()) return this;
+        return new TripleIndex(FrozenIndex.merge(frozen, delta.asMap(epoch), removed.asMap(epoch)));
+    }
+
+    /** Lecture de l'index tel qu'il était à cette époque. */
+    View at(long epoch) {
+        return new View(epoch);
+    }
+
+    /** L'index vu à une époque fixe. */
+    final class View {
+
+        private final long epoch;
+
+        private View(long epoch) {
+            this.epoch = epoch;
+        }
+
+        /** Nombre total de triplets de l'index. */
+        long count() {
+            long n = frozen.size();
+            for (Integer a : removed.leaves.keySet()) n -= removed.count(a, epoch);
+            for (Integer a : delta.leaves.keySet()) n += delta.count(a, epoch);
+            return n;
+        }
+
+        /** Nombre de triplets (a, *, *). */
+        long count(int a) {
+            int pos1 = frozen.find1(a);
+            return (pos1 >= 0 ? frozen.count1(pos1) : 0) - removed.count(a, epoch) + delta.count(a, epoch);
+        }
+
+        /** Nombre de triplets (a, b, *). */
+        long count(int a, int b) {
+            int pos2 = frozen.find(a, b);
+            return (pos2 >= 0 ? frozen.count2(pos2) : 0)
+                    - removed.leaf(a, b).count(epoch) + delta.leaf(a, b).count(epoch);
+        }
+
+        boolean contains(int a, int b, int c) {
+            return (frozen.contains(a, b, c) && !removed.leaf(a, b).contains(c, epoch))
+                    || delta.leaf(a, b).contains(c, epoch);
+        }
+
+        /** Curseur sur tous les triplets de l'index : partie figée, puis delta. */
+        TripleCursor scan() {
+            return TripleCursor.concat(alive(frozen.cursor()), deltaCursor(delta.leaves));
+        }
+
+        /** Curseur sur les triplets (a, *, *). */
+        TripleCursor scan(int a) {
+            int pos1 = frozen.find1(a);
+            TripleCursor frozenPart = pos1 >= 0 ? alive(frozen.cursor1(pos1)) : TripleCursor.EMPTY;
+            ConcurrentHashMap<Integer, Leaf> level2 = delta.leaves.get(a);
+            TripleCursor deltaPart = level2 != null ? deltaCursor(Map.of(a, level2)) : TripleCursor.EMPTY;
+            return TripleCursor.concat(frozenPart, deltaPart);
+        }
+
+        /** Curseur sur les triplets (a, b, *). */
+        TripleCursor scan(int a, int b) {
+            int pos1 = frozen.find1(a);
+            int pos2 = pos1 >= 0 ? frozen.find2(pos1, b) : -1;
+            TripleCursor frozenPart = pos2 >= 0 ? alive(frozen.cursor2(pos1, pos2)) : TripleCursor.EMPTY;
+            Leaf leaf = delta.leaf(a, b);
+            TripleCursor deltaPart = leaf != Leaf.EMPTY ? deltaCursor(Map.of(a, Map.of(b, leaf))) : TripleCursor.EMPTY;
+            return TripleCursor.concat(frozenPart, deltaPart);
+        }
+
+        /** Liste triée des clés a distinctes. */
+        PostingList firsts() {
+            List<Integer> keys = new ArrayList<>();
+            for (Integer a : delta.leaves.keySet()) {
+                if (delta.count(a, epoch) > 0) keys.add(a);
+            }
+            int[] deltaKeys = sorted(keys);
+            if (removed.isEmpty()) return frozen.firsts(deltaKeys);
+
+            // clés dont tous les triplets figés sont supprimés
+            List<Integer> gone = new ArrayList<>();
+            for (Integer a : removed.leaves.keySet()) {
+                int hidden = removed.count(a, epoch);
+                if (hidden > 0 && hidden == frozen.count1(frozen.find1(a))) gone.add(a);
+            }
+            return frozen.firsts(deltaKeys, sorted(gone));
+        }
+
+        /** Liste triée des b distincts tels que (a, b, *) est dans l'index. */
+        PostingList seconds(int a) {
+            int[] deltaKeys = PostingList.NONE;
+            Map<Integer, Leaf> level2 = delta.leaves.get(a);
+            if (level2 != null) {
+                List<Integer> keys = new ArrayList<>();
+                level2.forEach((b, leaf) -> {
+                    if (leaf.count(epoch) > 0) keys.add(b);
+                });
+                deltaKeys = sorted(keys);
+            }
+            int pos1 = frozen.find1(a);
+            Map<Integer, Leaf> removedLevel2 = removed.leaves.get(a);
+            if (removedLevel2 == null) return frozen.seconds(pos1, deltaKeys);
+
+            List<Integer> gone = new ArrayList<>();
+            removedLevel2.forEach((b, leaf) -> {
+                int hidden = leaf.count(epoch);
+                if (hidden > 0 && hidden == frozen.count2(frozen.find2(pos1, b))) gone.add(b);
+            });
+            return frozen.seconds(pos1, deltaKeys, sorted(gone));
+        }
+
+        /** Liste triée des c tels que (a, b, c) est dans l'index. */
+        PostingList thirds(int a, int b) {
+            int[] deltaValues = delta.leaf(a, b).visible(epoch);
+            int[] hidden = removed.leaf(a, b).visible(epoch);
+            return frozen.thirds(frozen.find(a, b), deltaValues, hidden);
+        }
+
+        /** Le curseur sans les triplets qui ont une pierre tombale à cette époque. */
+        private TripleCursor alive(TripleCursor cursor) {
+            if (removed.isEmpty()) return cursor;
+            return new TripleCursor() {
+                @Override
+                public boolean next() {
+                    while (cursor.next()) {
+                        if (!removed.leaf(cursor.first(), cursor.second()).contains(cursor.third(), epoch)) return true;
+                    }
+                    return false;
+                }
+
+                @Override public int first() { return cursor.first(); }
+                @Override public int second() { return cursor.second(); }
+                @Override public int third() { return cursor.third(); }
+            };
+        }
+
+        private TripleCursor deltaCursor(Map<Integer, ? extends Map<Integer, Leaf>> part) {
+            Iterator<? extends Map.Entry<Integer, ? extends Map<Integer, Leaf>>> level1 = part.entrySet().iterator();
+
+            return new TripleCursor() {
+                private Iterator<Map.Entry<Integer, Leaf>> level2 = Collections.emptyIterator();
+                private int[] level3 = PostingList.NONE;
+                private int k = 0;
+                private int a, b, c;
+
+                @Override
+                public boolean next() {
+                    while (k >= level3.length) {
+                        while (!level2.hasNext()) {
+                            if (!level1.hasNext()) return false;
+                            Map.Entry<Integer, ? extends Map<Integer, Leaf>> e1 = level1.next();
+                            a = e1.getKey();
+                            level2 = e1.getValue().entrySet().iterator();
+                        }
+                        Map.Entry<Integer, Leaf> e2 = level2.next();
+                        b = e2.getKey();
+                        level3 = e2.getValue().visible(epoch);
+                        k = 0;
+                    }
+                    c = level3[k++];
+                    return true;
+                }
+
+                @Override public int first() { return a; }
+                @Override public int second() { return b; }
+                @Override public int third() { return c; }
+            };
+        }
+    }
+
+    private static int[] sorted(List<Integer> keys) {
+        int[] sorted = new int[keys.size()];
+        for (int i = 0; i < sorted.length; i++) sorted[i] = keys.get(i);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+}
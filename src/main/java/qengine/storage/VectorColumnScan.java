@@ -0,0 +1,74 @@
+package qengine.storage;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Sélection par vecteurs pour {@link ColumnScan} : chaque colonne liée est comparée à sa constante
+ * sur toute la largeur d'un registre, les masques sont combinés par "et", puis les bits à 1 du masque
+ * donnent les lignes retenues. Ne pas utiliser directement : la classe ne se charge qu'avec le module
+ * {@code jdk.incubator.vector}.
+ */
+final class VectorColumnScan {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    private VectorColumnScan() {
+    }
+
+    /** Nombre d'entiers comparés à la fois. */
+    static int lanes() {
+        return SPECIES.length();
+    }
+
+    static int select(int[] subjects, int[] predicates, int[] objects, int from, int to,
+                      int s, int p, int o, int[] selection) {
+        int n = 0;
+        int row = from;
+        int upper = from + SPECIES.loopBound(to - from);
+        for (; row < upper; row += SPECIES.length()) {
+            VectorMask<Integer> mask = matches(subjects, predicates, objects, row, s, p, o);
+            if (mask.anyTrue()) {
+                long bits = mask.toLong();
+                while (bits != 0) {
+                    selection[n++] = row + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                }
+            }
+        }
+        return ColumnScan.selectScalar(subjects, predicates, objects, row, to, s, p, o, selection, n);
+    }
+
+    static int count(int[] subjects, int[] predicates, int[] objects, int from, int to, int s, int p, int o) {
+        int n = 0;
+        int row = from;
+        int upper = from + SPECIES.loopBound(to - from);
+        for (; row < upper; row += SPECIES.length()) {
+            n += matches(subjects, predicates, objects, row, s, p, o).trueCount();
+        }
+        for (; row < to; row++) {
+            if ((s == ColumnScan.ANY || subjects[row] == s) && (p == ColumnScan.ANY || predicates[row] == p)
+                    && (o == ColumnScan.ANY || objects[row] == o)) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    // masque des lignes [row, row + lanes) dont les colonnes liées valent les constantes
+    private static VectorMask<Integer> matches(int[] subjects, int[] predicates, int[] objects, int row, int s, int p, int o) {
+        VectorMask<Integer> mask = SPECIES.maskAll(true);
+        if (s != ColumnScan.ANY) {
+            mask = mask.and(IntVector.fromArray(SPECIES, subjects, row).compare(VectorOperators.EQ, s));
+        }
+        if (p != ColumnScan.ANY) {
+            mask = mask.and(IntVector.fromArray(SPECIES, predicates, row).compare(VectorOperators.EQ, p));
+        }
+        if (o != ColumnScan.ANY) {
+            mask = mask.and(IntVector.fromArray(SPECIES, objects, row).compare(VectorOperators.EQ, o));
+        }
+        return mask;
+    }
+}
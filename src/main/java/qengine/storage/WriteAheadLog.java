@@ -0,0 +1,291 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Term;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Journal d'écriture anticipée (WAL) en ajout seul, pour {@link DurableRDFStorage}.
+ * <p>
+ * Le fichier est une suite de trames {@code longueur | contenu | CRC32C du contenu} (petit-boutiste).
+ * Le contenu d'une trame est une suite d'enregistrements :
+ * <pre>
+ *   'T' id genre longueur octets    nouveau terme du dictionnaire (genre et valeur comme dans {@link Snapshot})
+ *   'A' s p o                       triplet encodé ajouté
+ *   'D' s p o                       triplet encodé supprimé
+ *   'R' id                          ID libéré par une compaction (voir {@link Dictionary#release})
+ * </pre>
+ * Une trame est écrite en entier ou pas du tout du point de vue de la relecture : une trame incomplète
+ * ou dont le CRC est faux (écriture interrompue par un arrêt brutal) marque la fin du journal,
+ * qui est tronqué à cet endroit.
+ * <p>
+ * Validation groupée : {@link #commit(long)} attend que tout ce qui précède une position soit sur disque.
+ * Un seul thread à la fois écrit et fait le {@code force} ; les threads qui arrivent pendant ce temps
+ * ajoutent leurs trames au tampon suivant et sont validés ensemble par le {@code force} d'après.
+ */
+final class WriteAheadLog implements Closeable {
+
+    private static final byte TERM = 'T';
+    private static final byte TRIPLE = 'A';
+    private static final byte REMOVAL = 'D';
+    private static final byte RELEASE = 'R';
+    private static final int FRAME_OVERHEAD = 2 * Integer.BYTES;
+
+    /** Reçoit les enregistrements relus, dans l'ordre du journal. */
+    interface Replay {
+        /** term vaut null pour un ID libéré (voir {@link Dictionary#release}). */
+        void term(int id, Term term) throws IOException;
+
+        void triple(int s, int p, int o);
+
+        void removal(int s, int p, int o);
+
+        void release(int id) throws IOException;
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+
+    // trame en cours de construction (un seul thread à la fois, voir DurableRDFStorage)
+    private ByteBuffer frame = newBuffer(1 << 12);
+    private final CRC32C crc = new CRC32C();
+
+    // validation groupée : trames scellées pas encore écrites, positions dans le flux des octets ajoutés
+    private final Object lock = new Object();
+    private ByteBuffer pending = newBuffer(1 << 16);
+    private ByteBuffer spare = newBuffer(1 << 16);
+    private long appended = 0;
+    private long durable = 0;
+    private boolean flushing = false;
+    private long syncs = 0;
+    private IOException failure = null;   // après une écriture ratée, l'état du fichier est inconnu
+
+    WriteAheadLog(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static ByteBuffer newBuffer(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Relit tout le journal depuis le début, tronque une éventuelle fin abîmée
+     * et place l'écriture juste après la dernière trame valide.
+     *
+     * @return le nombre de trames relues
+     */
+    long replay(Replay handler) throws IOException {
+        long position = 0;
+        long frames = 0;
+        long size = channel.size();
+        ByteBuffer header = newBuffer(Integer.BYTES);
+        ByteBuffer content = newBuffer(1 << 12);
+        while (position + FRAME_OVERHEAD <= size) {
+            header.clear();
+            channel.read(header, position);
+            int length = header.getInt(0);
+            if (length < 0 || position + FRAME_OVERHEAD + length > size) break;
+
+            if (content.capacity() < length + Integer.BYTES) content = newBuffer(length + Integer.BYTES);
+            content.clear().limit(length + Integer.BYTES);
+            while (content.hasRemaining()) {
+                if (channel.read(content, position + Integer.BYTES + content.position()) < 0) break;
+            }
+            crc.reset();
+            crc.update(content.array(), 0, length);
+            if (content.position() < length + Integer.BYTES || (int) crc.getValue() != content.getInt(length)) break;
+
+            content.flip().limit(length);
+            decode(content, handler);
+            position += FRAME_OVERHEAD + length;
+            frames++;
+        }
+        if (position < size) {
+            System.err.println(file + " : fin de journal abîmée à l'octet " + position + ", " + (size - position) + " octets ignorés");
+            channel.truncate(position);
+        }
+        channel.position(position);
+        return frames;
+    }
+
+    private void decode(ByteBuffer content, Replay handler) throws IOException {
+        while (content.hasRemaining()) {
+            byte type = content.get();
+            if (type == TERM) {
+                int id = content.getInt();
+                byte kind = content.get();
+                byte[] value = new byte[content.getInt()];
+                content.get(value);
+                handler.term(id, Snapshot.termOf(kind, new String(value, StandardCharsets.UTF_8)));
+            } else if (type == TRIPLE) {
+                handler.triple(content.getInt(), content.getInt(), content.getInt());
+            } else if (type == REMOVAL) {
+                handler.removal(content.getInt(), content.getInt(), content.getInt());
+            } else if (type == RELEASE) {
+                handler.release(content.getInt());
+            } else {
+                throw new IOException(file + " : enregistrement inconnu '" + (char) type + "'");
+            }
+        }
+    }
+
+    /** Ajoute un nouveau terme du dictionnaire à la trame en cours. */
+    void term(int id, Term term) {
+        byte[] value = Snapshot.valueOf(term).getBytes(StandardCharsets.UTF_8);
+        room(1 + Integer.BYTES + 1 + Integer.BYTES + value.length);
+        frame.put(TERM).putInt(id).put(Snapshot.kindOf(term)).putInt(value.length).put(value);
+    }
+
+    /** Ajoute un triplet encodé à la trame en cours. */
+    void triple(int s, int p, int o) {
+        room(1 + 3 * Integer.BYTES);
+        frame.put(TRIPLE).putInt(s).putInt(p).putInt(o);
+    }
+
+    /** Ajoute une suppression de triplet encodé à la trame en cours. */
+    void removal(int s, int p, int o) {
+        room(1 + 3 * Integer.BYTES);
+        frame.put(REMOVAL).putInt(s).putInt(p).putInt(o);
+    }
+
+    /** Ajoute la libération d'un ID du dictionnaire à la trame en cours. */
+    void release(int id) {
+        room(1 + Integer.BYTES);
+        frame.put(RELEASE).putInt(id);
+    }
+
+    /** Taille de la trame en cours, pour couper les gros lots en plusieurs trames. */
+    int frameSize() {
+        return frame.position();
+    }
+
+    private void room(int bytes) {
+        if (frame.remaining() < bytes) {
+            frame = newBuffer(Math.max(frame.capacity() * 2, frame.position() + bytes)).put(frame.flip());
+        }
+    }
+
+    /**
+     * Scelle la trame en cours et la met en attente d'écriture (rien n'est encore sur disque).
+     *
+     * @return la position à passer à {@link #commit(long)} pour attendre cette trame
+     */
+    long seal() {
+        int length = frame.position();
+        crc.reset();
+        crc.update(frame.array(), 0, length);
+        int checksum = (int) crc.getValue();
+        synchronized (lock) {
+            if (length > 0) {
+                if (pending.remaining() < FRAME_OVERHEAD + length) {
+                    pending = newBuffer(Math.max(pending.capacity() * 2, pending.position() + FRAME_OVERHEAD + length)).put(pending.flip());
+                }
+                pending.putInt(length).put(frame.array(), 0, length).putInt(checksum);
+                appended += FRAME_OVERHEAD + length;
+            }
+            frame.clear();
+            return appended;
+        }
+    }
+
+    /**
+     * Attend que tout ce qui a été scellé jusqu'à la position lsn soit écrit et forcé sur disque.
+     * Si aucun autre thread n'écrit, on écrit soi-même tout le tampon (y compris les trames des autres) ;
+     * sinon on attend la fin de son écriture, qui suffit peut-être.
+     */
+    void commit(long lsn) throws IOException {
+        ByteBuffer batch;
+        long target;
+        synchronized (lock) {
+            while (durable < lsn && flushing) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Validation interrompue", e);
+                }
+            }
+            if (durable >= lsn) return;
+            if (failure != null) throw new IOException(file + " : journal inutilisable après une erreur d'écriture", failure);
+            flushing = true;
+            batch = pending;
+            pending = spare;
+            target = appended;
+        }
+
+        IOException error = null;
+        try {
+            batch.flip();
+            while (batch.hasRemaining()) channel.write(batch);
+            channel.force(false);
+        } catch (IOException e) {
+            error = e;
+        }
+        synchronized (lock) {
+            if (error == null) {
+                batch.clear();
+                spare = batch;
+                durable = target;
+                syncs++;
+            } else {
+                // une partie de la trame est peut-être écrite : on ne peut plus rien ajouter derrière
+                failure = error;
+            }
+            flushing = false;
+            lock.notifyAll();
+        }
+        if (error != null) throw error;
+    }
+
+    /** Scelle la trame en cours et attend qu'elle soit sur disque. */
+    void commit() throws IOException {
+        commit(seal());
+    }
+
+    /**
+     * Vide le journal, une fois son contenu sauvegardé ailleurs (instantané).
+     * Tout ce qui a été scellé doit déjà être validé.
+     */
+    void truncate() throws IOException {
+        synchronized (lock) {
+            if (durable < appended || frame.position() > 0) {
+                throw new IllegalStateException("Troncature d'un journal avec des trames non validées");
+            }
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(true);
+        }
+    }
+
+    /** Position jusqu'à laquelle tout est sur disque (voir {@link #commit(long)}). */
+    long durable() {
+        synchronized (lock) {
+            return durable;
+        }
+    }
+
+    /** Nombre de {@code force} effectués : avec la validation groupée, souvent moins que de validations. */
+    long syncs() {
+        synchronized (lock) {
+            return syncs;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            commit();
+        } finally {
+            channel.close();
+        }
+    }
+}
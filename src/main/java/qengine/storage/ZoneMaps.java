@@ -0,0 +1,61 @@
+package qengine.storage;
+
+import java.util.Arrays;
+
+/**
+ * Résumé par bloc d'une table en colonnes : pour chaque bloc de lignes, le plus petit et le plus grand ID
+ * de la colonne des sujets, des prédicats et des objets. Un bloc dont l'intervalle ne contient pas
+ * une constante cherchée n'a pas besoin d'être lu.
+ * <p>
+ * Le gain dépend de l'ordre de chargement : avec un fichier trié par sujet (cas des N-Triples WatDiv),
+ * les IDs de sujets croissent d'un bloc à l'autre et un sujet donné ne touche qu'un ou deux blocs.
+ * Les lignes sont ajoutées dans l'ordre, seul le dernier bloc change.
+ */
+final class ZoneMaps {
+
+    private final int blockSize;
+
+    // par bloc b : [6b] min sujet, [6b+1] max sujet, puis de même pour les prédicats et les objets
+    private int[] bounds = new int[6 * 16];
+    private int blocks = 0;
+
+    ZoneMaps(int blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    /** Prend en compte la ligne row (toujours la ligne qui suit la dernière ajoutée). */
+    void add(int row, int s, int p, int o) {
+        int b = row / blockSize;
+        int i = 6 * b;
+        if (b == blocks) {
+            if (i + 6 > bounds.length) bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            bounds[i] = bounds[i + 1] = s;
+            bounds[i + 2] = bounds[i + 3] = p;
+            bounds[i + 4] = bounds[i + 5] = o;
+            blocks++;
+            return;
+        }
+        widen(i, s);
+        widen(i + 2, p);
+        widen(i + 4, o);
+    }
+
+    private void widen(int i, int value) {
+        if (value < bounds[i]) bounds[i] = value;
+        if (value > bounds[i + 1]) bounds[i + 1] = value;
+    }
+
+    int blocks() {
+        return blocks;
+    }
+
+    /** Faux si le bloc ne peut contenir aucune ligne (s, p, o) ; ANY pour une position libre. */
+    boolean mayContain(int block, int s, int p, int o) {
+        int i = 6 * block;
+        return within(i, s) && within(i + 2, p) && within(i + 4, o);
+    }
+
+    private boolean within(int i, int value) {
+        return value == ColumnScan.ANY || (value >= bounds[i] && value <= bounds[i + 1]);
+    }
+}
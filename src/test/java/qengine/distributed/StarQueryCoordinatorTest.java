@@ -0,0 +1,164 @@
+package qengine.distributed;
+
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.logicalElements.factory.api.TermFactory;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import qengine.model.RDFTriple;
+import qengine.model.StarQuery;
+import qengine.parser.NTriplesFastParser;
+import qengine.storage.RDFHexaStore;
+import qengine.storage.ShardedRDFStorage;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour le mode distribué : découpage par sujet, et réponses du coordinateur
+ * comparées à celles d'un seul hexastore chargé avec tout le fichier.
+ * Les workers tournent dans des threads de ce processus, sauf pour {@link #testLaunchWorkerProcesses()}.
+ */
+class StarQueryCoordinatorTest {
+
+    private static final int WORKERS = 3;
+    private static final String PREFIX = "http://example.org/";
+
+    private final TermFactory factory = SameObjectTermFactory.instance();
+    private Path dir;
+    private Path data;
+    private RDFHexaStore whole;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("distributed");
+        StringBuilder content = new StringBuilder();
+        Random random = new Random(11);
+        for (int i = 0; i < 800; i++) {
+            content.append('<').append(PREFIX).append('s').append(random.nextInt(60))
+                    .append("> <").append(PREFIX).append('p').append(random.nextInt(4))
+                    .append("> <").append(PREFIX).append('s').append(random.nextInt(60)).append("> .\n");
+        }
+        content.append("_:b1 <").append(PREFIX).append("p0> \"valeur\" .\n");
+        data = dir.resolve("data.nt");
+        Files.writeString(data, content);
+
+        whole = new RDFHexaStore();
+        new NTriplesFastParser(data).load(whole);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted((a, b) -> b.compareTo(a)).toList()) Files.deleteIfExists(file);
+        }
+    }
+
+    private Term iri(String name) {
+        return factory.createOrGetLiteral(PREFIX + name);
+    }
+
+    @Test
+    void testPartitionBySubject() throws IOException {
+        List<Path> slices = StarQueryCoordinator.partition(data, WORKERS, dir.resolve("tranches"));
+        assertEquals(WORKERS, slices.size());
+
+        Set<RDFTriple> all = new HashSet<>();
+        for (int i = 0; i < WORKERS; i++) {
+            RDFHexaStore slice = new RDFHexaStore();
+            new NTriplesFastParser(slices.get(i)).load(slice);
+            System.out.println("Tranche " + i + " : " + slice.size() + " triplets");
+            for (RDFTriple t : slice.getAtoms()) {
+                assertEquals(i, ShardedRDFStorage.shardOf(t.getTripleSubject(), WORKERS),
+                        "Triplet dans la mauvaise tranche : " + t);
+                assertTrue(all.add(t), "Triplet dans deux tranches : " + t);
+            }
+        }
+        assertEquals(new HashSet<>(whole.getAtoms()), all);
+    }
+
+    @Test
+    void testAnswersLikeSingleStore() throws Exception {
+        List<Path> slices = StarQueryCoordinator.partition(data, WORKERS, dir.resolve("tranches"));
+        List<StarQueryWorker> workers = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (Path slice : slices) {
+            RDFHexaStore store = new RDFHexaStore();
+            new NTriplesFastParser(slice).load(store);
+            store.freeze();
+            StarQueryWorker worker = new StarQueryWorker(store, 0);
+            workers.add(worker);
+            addresses.add(new InetSocketAddress("127.0.0.1", worker.port()));
+            Thread thread = new Thread(() -> {
+                try {
+                    worker.serve();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        Variable x = factory.createOrGetVariable("?x");
+        Variable y = factory.createOrGetVariable("?y");
+        List<StarQuery> queries = List.of(
+                new StarQuery("sujet", List.of(new RDFTriple(x, iri("p0"), iri("s1")), new RDFTriple(x, iri("p1"), y)), Set.of(x)),
+                new StarQuery("sujet, variables", List.of(new RDFTriple(x, iri("p2"), y), new RDFTriple(x, iri("p3"), factory.createOrGetVariable("?z"))), Set.of(x)),
+                new StarQuery("objet", List.of(new RDFTriple(iri("s3"), iri("p0"), x), new RDFTriple(y, iri("p2"), x)), Set.of(x)),
+                new StarQuery("sujet et objet", List.of(new RDFTriple(x, iri("p0"), y), new RDFTriple(iri("s5"), iri("p1"), x)), Set.of(x)),
+                new StarQuery("littéral", List.of(new RDFTriple(x, iri("p0"), factory.createOrGetLiteral("valeur"))), Set.of(x)),
+                new StarQuery("inconnu", List.of(new RDFTriple(x, iri("inconnu"), y)), Set.of(x)));
+
+        try (StarQueryCoordinator coordinator = new StarQueryCoordinator(addresses)) {
+            assertEquals(WORKERS, coordinator.workerCount());
+            for (StarQuery q : queries) {
+                Set<Substitution> expected = new HashSet<>();
+                whole.match(q).forEachRemaining(expected::add);
+                StarQueryCoordinator.Answer answer = coordinator.match(q);
+                System.out.println(q.getLabel() + " -> " + answer.substitutions().size() + " réponses");
+                assertEquals(expected.size(), answer.substitutions().size(), "Réponses en double ou manquantes pour " + q.getLabel());
+                assertEquals(expected, new HashSet<>(answer.substitutions()), "Réponses différentes pour " + q.getLabel());
+                assertEquals(WORKERS, answer.workerNanos().length);
+                for (int w = 0; w < WORKERS; w++) {
+                    assertTrue(answer.workerNanos()[w] >= answer.workerEvalNanos()[w],
+                            "L'aller-retour contient l'évaluation sur le worker");
+                }
+            }
+        }
+
+        // la fermeture du coordinateur arrête les workers
+        for (Thread thread : threads) {
+            thread.join(10_000);
+            assertFalse(thread.isAlive(), "Worker pas arrêté");
+        }
+        for (StarQueryWorker worker : workers) worker.close();
+    }
+
+    @Test
+    void testLaunchWorkerProcesses() throws IOException {
+        Variable x = factory.createOrGetVariable("?x");
+        StarQuery q = new StarQuery("Q", List.of(new RDFTriple(x, iri("p0"), factory.createOrGetVariable("?y"))), Set.of(x));
+        Set<Substitution> expected = new HashSet<>();
+        whole.match(q).forEachRemaining(expected::add);
+
+        try (StarQueryCoordinator coordinator = StarQueryCoordinator.launch(data, 2, dir.resolve("tranches"), List.of("-Xmx128m"))) {
+            assertEquals(whole.size(), coordinator.workerTriples()[0] + coordinator.workerTriples()[1]);
+            assertEquals(expected, new HashSet<>(coordinator.match(q).substitutions()));
+        }
+    }
+}
@@ -86,6 +86,25 @@ class StarQueryTest {
         assertTrue(exception.getMessage().contains("n'est pas présente dans les triplets RDF"));
     }
 
+    @Test
+    void testStarQueryConstructorWithCentralVariable() {
+        Variable x = termFactory.createOrGetVariable("?x");
+        Variable y = termFactory.createOrGetVariable("?y");
+        Term predicate = termFactory.createOrGetLiteral("http://example.org/predicate");
+        Term object = termFactory.createOrGetLiteral("http://example.org/object");
+
+        // ?x et ?y sont dans tous les triplets : la variable centrale imposée est gardée
+        List<RDFTriple> rdfAtoms = List.of(new RDFTriple(x, predicate, y));
+        assertEquals(x, new StarQuery("Q", rdfAtoms, List.of(x), x).getCentralVariable());
+        assertEquals(y, new StarQuery("Q", rdfAtoms, List.of(x), y).getCentralVariable());
+
+        // une variable absente d'un triplet ne peut pas être centrale
+        List<RDFTriple> star = List.of(new RDFTriple(x, predicate, y), new RDFTriple(x, predicate, object));
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> new StarQuery("Q", star, List.of(x), y));
+        assertTrue(exception.getMessage().contains("n'est pas dans tous les triplets"));
+    }
+
     @Test
     void testStarQueryEqualsAndHashCode() {
         Variable centralVariable = termFactory.createOrGetVariable("?x");
@@ -0,0 +1,134 @@
+package qengine.parser;
+
+import fr.boreal.model.logicalElements.factory.api.TermFactory;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import qengine.model.RDFTriple;
+import qengine.storage.Dictionary;
+import qengine.storage.RDFHexaStore;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour le lecteur N-Triples rapide.
+ */
+class NTriplesFastParserTest {
+
+    private final TermFactory factory = SameObjectTermFactory.instance();
+    private Path file;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (file != null) Files.deleteIfExists(file);
+    }
+
+    private Path write(String content) throws IOException {
+        file = Files.createTempFile("fast-parser", ".nt");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private List<String> parseLabels(Path path) throws IOException {
+        Dictionary dict = new Dictionary();
+        List<String> labels = new ArrayList<>();
+        new NTriplesFastParser(path).parse(dict, (s, p, o) -> {
+            labels.add(dict.decode(s).label());
+            labels.add(dict.decode(p).label());
+            labels.add(dict.decode(o).label());
+        });
+        return labels;
+    }
+
+    @Test
+    void testParseSampleData() throws IOException {
+        List<String> labels = parseLabels(Path.of("src/test/resources/sample_data.nt"));
+        assertEquals(List.of(
+                "http://example.org/subject1", "http://example.org/predicate1", "http://example.org/object1",
+                "http://example.org/subject2", "http://example.org/predicate2", "http://example.org/object2"), labels);
+    }
+
+    @Test
+    void testLiteralsCommentsAndEscapes() throws IOException {
+        Path path = write("""
+                # un commentaire
+
+                <http://ex.org/a>\t<http://ex.org/name>\t"Alice" .
+                <http://ex.org/a> <http://ex.org/born> "1988-09-24"^^<http://www.w3.org/2001/XMLSchema#date> .
+                <http://ex.org/a> <http://ex.org/label> "bonjour"@fr .
+                <http://ex.org/a> <http://ex.org/quote> "il dit \\"oui\\"\\n\\u00e9t\\u00E9" . # fin de ligne
+                _:b1 <http://ex.org/knows> <http://ex.org/a>.
+                """);
+        List<String> labels = parseLabels(path);
+        System.out.println(labels);
+
+        assertEquals(15, labels.size());
+        assertEquals("Alice", labels.get(2));
+        assertEquals("1988-09-24", labels.get(5), "Le type du littéral est ignoré en mode Raw.");
+        assertEquals("bonjour", labels.get(8), "La langue du littéral est ignorée en mode Raw.");
+        assertEquals("il dit \"oui\"\nété", labels.get(11));
+        assertEquals("b1", labels.get(12));
+        assertEquals("http://ex.org/a", labels.get(14));
+    }
+
+    @Test
+    void testSameIdsAsTermEncoding() throws IOException {
+        // un terme déjà encodé comme Term garde son ID quand il est relu sous forme d'octets
+        Dictionary dict = new Dictionary();
+        int known = dict.encode(factory.createOrGetLiteral("http://example.org/subject2"));
+
+        List<Integer> ids = new ArrayList<>();
+        new NTriplesFastParser(Path.of("src/test/resources/sample_data.nt")).parse(dict, (s, p, o) -> {
+            ids.add(s);
+            ids.add(p);
+            ids.add(o);
+        });
+        assertEquals(known, ids.get(3).intValue());
+        assertEquals(ids.get(0).intValue(), dict.encodeIfExists(factory.createOrGetLiteral("http://example.org/subject1")));
+        assertEquals(6, dict.size());
+    }
+
+    @Test
+    void testLoadIntoStore() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            content.append("<http://ex.org/s").append(i % 700).append("> <http://ex.org/p").append(i % 7)
+                    .append("> \"valeur ").append(i % 300).append("\" .\n");
+        }
+        RDFHexaStore store = new RDFHexaStore();
+        long read = new NTriplesFastParser(write(content.toString())).load(store);
+
+        assertEquals(5000, read);
+        // le motif se répète toutes les ppcm(700, 7, 300) = 2100 lignes
+        assertEquals(2100, store.size(), "Les doublons doivent être éliminés.");
+        Dictionary dict = store.getDictionary();
+        assertEquals(700 + 7 + 300, dict.size());
+
+        // "valeur 299" n'a jamais existé comme Term avant le chargement : on le retrouve par son libellé
+        int id = -1;
+        for (int i = 1; i <= dict.size(); i++) {
+            if (dict.decode(i).label().equals("valeur 299")) id = i;
+        }
+        assertTrue(id > 0, "Le terme lu sous forme d'octets doit être dans le dictionnaire.");
+        assertEquals(factory.createOrGetLiteral("valeur 299"), dict.decode(id));
+        assertEquals(id, dict.encodeIfExists(factory.createOrGetLiteral("valeur 299")));
+
+        assertTrue(store.getAtoms().contains(new RDFTriple(factory.createOrGetLiteral("http://ex.org/s0"),
+                factory.createOrGetLiteral("http://ex.org/p0"), factory.createOrGetLiteral("valeur 0"))));
+    }
+
+    @Test
+    void testMalformedLine() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> parseLabels(Path.of("src/test/resources/malformed.nt")));
+        System.out.println(e.getMessage());
+        assertTrue(e.getMessage().contains("ligne 1"));
+    }
+}
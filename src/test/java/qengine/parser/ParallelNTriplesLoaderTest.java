@@ -0,0 +1,114 @@
+package qengine.parser;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import qengine.storage.Dictionary;
+import qengine.storage.GiantTable;
+import qengine.storage.RDFHexaStore;
+import qengine.storage.ShardedRDFStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour le chargement parallèle par morceaux.
+ */
+class ParallelNTriplesLoaderTest {
+
+    private Path file;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (file != null) Files.deleteIfExists(file);
+    }
+
+    private Path writeTriples(int count) throws IOException {
+        StringBuilder content = new StringBuilder();
+        Random random = new Random(3);
+        for (int i = 0; i < count; i++) {
+            content.append("<http://db.uwaterloo.ca/~galuc/wsdbm/User").append(random.nextInt(count / 4))
+                    .append(">\t<http://schema.org/p").append(random.nextInt(12))
+                    .append(">\t\"valeur ").append(random.nextInt(count / 2)).append("\" .\n");
+        }
+        file = Files.createTempFile("parallel-loader", ".nt");
+        Files.writeString(file, content);
+        return file;
+    }
+
+    @Test
+    void testChunksCoverEveryLineOnce() throws IOException {
+        Path path = writeTriples(500);
+        long length = Files.size(path);
+        NTriplesFastParser parser = new NTriplesFastParser(path);
+
+        // bornes quelconques, au milieu des lignes
+        Random random = new Random(1);
+        for (int essai = 0; essai < 10; essai++) {
+            List<Long> bounds = new ArrayList<>(List.of(0L, length));
+            for (int k = 0; k < 6; k++) bounds.add((long) random.nextInt((int) length));
+            bounds.sort(null);
+
+            long total = 0;
+            for (int k = 0; k + 1 < bounds.size(); k++) {
+                total += parser.parse(new Dictionary(), (s, p, o) -> { }, bounds.get(k), bounds.get(k + 1));
+            }
+            assertEquals(500, total, "Chaque ligne doit être lue une et une seule fois, bornes : " + bounds);
+        }
+    }
+
+    @Test
+    void testParallelLoadMatchesSequentialLoad() throws IOException {
+        Path path = writeTriples(60000);   // plusieurs morceaux d'au moins 1 Mo
+
+        RDFHexaStore sequential = new RDFHexaStore();
+        long readSequential = new NTriplesFastParser(path).load(sequential);
+
+        RDFHexaStore parallel = new RDFHexaStore();
+        long start = System.nanoTime();
+        long readParallel = ParallelNTriplesLoader.load(path, parallel, 4);
+        System.out.println("Chargement parallèle : " + readParallel + " triplets en " + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+        assertEquals(readSequential, readParallel);
+        assertEquals(sequential.size(), parallel.size());
+        assertEquals(new HashSet<>(sequential.getAtoms()), new HashSet<>(parallel.getAtoms()));
+        // la fusion dans l'ordre du fichier redonne les mêmes IDs
+        Dictionary seqDict = sequential.getDictionary();
+        Dictionary parDict = parallel.getDictionary();
+        assertEquals(seqDict.size(), parDict.size());
+        for (int id = 1; id <= seqDict.size(); id += 97) {
+            assertEquals(seqDict.decode(id), parDict.decode(id), "ID " + id);
+        }
+    }
+
+    @Test
+    void testParallelLoadIntoOtherStore() throws IOException {
+        Path path = writeTriples(400);
+        GiantTable table = new GiantTable();
+        RDFHexaStore reference = new RDFHexaStore();
+        new NTriplesFastParser(path).load(reference);
+
+        ParallelNTriplesLoader.load(path, table, 2);
+        assertEquals(reference.size(), table.size());
+    }
+
+    @Test
+    void testParallelLoadIntoShardedStore() throws IOException {
+        Path path = writeTriples(400);
+        RDFHexaStore reference = new RDFHexaStore();
+        new NTriplesFastParser(path).load(reference);
+
+        // pas de dictionnaire commun : les triplets sont décodés, répartis, puis chaque partition est figée
+        ShardedRDFStorage sharded = new ShardedRDFStorage(3);
+        ParallelNTriplesLoader.load(path, sharded, 2);
+        sharded.freeze();
+        assertEquals(reference.size(), sharded.size());
+        assertEquals(new HashSet<>(reference.getAtoms()), new HashSet<>(sharded.getAtoms()));
+    }
+}
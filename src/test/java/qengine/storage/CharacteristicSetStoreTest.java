@@ -0,0 +1,210 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.logicalElements.factory.api.TermFactory;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import qengine.model.RDFTriple;
+import qengine.model.StarQuery;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour le stockage par tables de propriétés (CharacteristicSetStore).
+ * Les réponses sont comparées à celles de l'hexastore sur les mêmes données.
+ */
+public class CharacteristicSetStoreTest {
+
+    private final TermFactory factory = SameObjectTermFactory.instance();
+    private CharacteristicSetStore store;
+    private RDFHexaStore hexa;
+    private List<Term> terms;
+
+    @BeforeEach
+    void setUp() {
+        store = new CharacteristicSetStore();
+        hexa = new RDFHexaStore();
+        terms = new ArrayList<>();
+        for (int i = 0; i < 10; i++) terms.add(factory.createOrGetLiteral("n" + i));
+
+        // graphe pseudo-aléatoire ; une lecture au milieu force une première construction des tables
+        Random random = new Random(5);
+        for (int i = 0; i < 200; i++) {
+            if (i == 120) store.tableCount();
+            RDFTriple t = new RDFTriple(terms.get(random.nextInt(10)), terms.get(random.nextInt(4)), terms.get(random.nextInt(10)));
+            assertEquals(hexa.add(t), store.add(t), "Les doublons doivent être détectés de la même façon : " + t);
+        }
+    }
+
+    @Test
+    void testSizeAndAtoms() {
+        assertEquals(hexa.size(), store.size());
+        assertEquals(new HashSet<>(hexa.getAtoms()), new HashSet<>(store.getAtoms()));
+        System.out.println("Tables : " + store.tableCount() + " pour " + store.size() + " triplets");
+        assertTrue(store.tableCount() >= 1);
+    }
+
+    @Test
+    void testMatchAndHowManyLikeHexaStore() {
+        Variable x = factory.createOrGetVariable("?x");
+        Variable y = factory.createOrGetVariable("?y");
+        Variable z = factory.createOrGetVariable("?z");
+        Term a = terms.get(1), b = terms.get(2), c = terms.get(3);
+        List<RDFTriple> patterns = List.of(
+                new RDFTriple(a, b, c), new RDFTriple(a, b, z), new RDFTriple(x, b, c), new RDFTriple(a, y, c),
+                new RDFTriple(a, y, z), new RDFTriple(x, b, z), new RDFTriple(x, y, c), new RDFTriple(x, y, z),
+                new RDFTriple(x, b, x), new RDFTriple(x, factory.createOrGetLiteral("inconnu"), z));
+
+        for (RDFTriple pattern : patterns) {
+            Set<Substitution> expected = new HashSet<>();
+            hexa.match(pattern).forEachRemaining(expected::add);
+            Set<Substitution> actual = new HashSet<>();
+            store.match(pattern).forEachRemaining(actual::add);
+            assertEquals(expected, actual, "Réponses différentes pour " + pattern);
+            assertEquals(hexa.howMany(pattern), store.howMany(pattern), "howMany différent pour " + pattern);
+        }
+    }
+
+    @Test
+    void testMatchStarQueryLikeHexaStore() {
+        Variable x = factory.createOrGetVariable("?x");
+        Variable y = factory.createOrGetVariable("?y");
+        Term p0 = terms.get(0), p1 = terms.get(1), p2 = terms.get(2), p3 = terms.get(3);
+        Term a = terms.get(4), b = terms.get(7);
+        List<StarQuery> queries = List.of(
+                new StarQuery("constantes", List.of(new RDFTriple(x, p0, a), new RDFTriple(x, p1, b)), Set.of(x)),
+                new StarQuery("variables", List.of(new RDFTriple(x, p2, y), new RDFTriple(x, p3, factory.createOrGetVariable("?z"))), Set.of(x)),
+                new StarQuery("mixte", List.of(new RDFTriple(x, p0, y), new RDFTriple(x, p0, a), new RDFTriple(x, p1, y)), Set.of(x)),
+                new StarQuery("objet", List.of(new RDFTriple(a, p0, x), new RDFTriple(y, p2, x)), Set.of(x)),
+                new StarQuery("inconnu", List.of(new RDFTriple(x, p0, factory.createOrGetLiteral("inconnu"))), Set.of(x)));
+
+        for (StarQuery q : queries) {
+            Set<Substitution> expected = new HashSet<>();
+            hexa.match(q).forEachRemaining(expected::add);
+            Set<Substitution> actual = new HashSet<>();
+            store.match(q).forEachRemaining(actual::add);
+            System.out.println(q.getLabel() + " -> " + actual);
+            assertEquals(expected, actual, "Réponses différentes pour la requête " + q.getLabel());
+        }
+    }
+
+    @Test
+    void testSubjectChangesTableAfterAdd() {
+        Variable x = factory.createOrGetVariable("?x");
+        Term s = factory.createOrGetLiteral("nouveau");
+        Term knows = factory.createOrGetLiteral("knows");
+        Term likes = factory.createOrGetLiteral("likes");
+        StarQuery q = new StarQuery("Q", List.of(new RDFTriple(x, knows, terms.get(0)), new RDFTriple(x, likes, terms.get(1))), Set.of(x));
+
+        store.add(new RDFTriple(s, knows, terms.get(0)));
+        assertFalse(store.match(q).hasNext());
+
+        // le sujet passe de la table {knows} à la table {knows, likes}
+        store.add(new RDFTriple(s, likes, terms.get(1)));
+        Iterator<Substitution> it = store.match(q);
+        assertTrue(it.hasNext());
+        assertEquals(s, it.next().toMap().get(x));
+        assertFalse(it.hasNext());
+        assertFalse(store.add(new RDFTriple(s, knows, terms.get(0))), "Le triplet est déjà dans une table.");
+    }
+
+    @Test
+    void testAddKeepsUntouchedTables() {
+        store.freeze();
+        Map<Term, PropertyTable> before = new HashMap<>();
+        for (Term t : terms) before.put(t, store.tableOf(t));
+
+        // un sujet nouveau dans une table nouvelle : aucune table existante ne bouge
+        Term likes = factory.createOrGetLiteral("likes");
+        store.add(new RDFTriple(factory.createOrGetLiteral("nouveau"), likes, terms.get(0)));
+        for (Term t : terms) {
+            assertSame(before.get(t), store.tableOf(t), "La table de " + t + " ne devait pas être reconstruite.");
+        }
+
+        // terms[0] quitte sa table : seule celle-ci est refaite, les autres restent les mêmes objets
+        PropertyTable left = before.get(terms.get(0));
+        assertNotNull(left);
+        store.add(new RDFTriple(terms.get(0), likes, terms.get(1)));
+        hexa.add(new RDFTriple(factory.createOrGetLiteral("nouveau"), likes, terms.get(0)));
+        hexa.add(new RDFTriple(terms.get(0), likes, terms.get(1)));
+        assertNotSame(left, store.tableOf(terms.get(0)));
+        for (Term t : terms.subList(1, terms.size())) {
+            PropertyTable table = before.get(t);
+            if (table == null) continue;
+            if (table == left) {
+                assertNotSame(left, store.tableOf(t), "La table quittée par le sujet doit être refaite.");
+                assertArrayEquals(left.predicates(), store.tableOf(t).predicates());
+            } else {
+                assertSame(table, store.tableOf(t), "La table de " + t + " ne devait pas être reconstruite.");
+            }
+        }
+        assertEquals(new HashSet<>(hexa.getAtoms()), new HashSet<>(store.getAtoms()));
+    }
+
+    @Test
+    void testConcurrentReadsWhileAdding() throws Exception {
+        Variable x = factory.createOrGetVariable("?x");
+        Variable y = factory.createOrGetVariable("?y");
+        Variable z = factory.createOrGetVariable("?z");
+        RDFTriple all = new RDFTriple(x, y, z);
+        List<RDFTriple> added = new ArrayList<>();
+        Random random = new Random(11);
+        for (int i = 0; i < 3000; i++) {
+            added.add(new RDFTriple(factory.createOrGetLiteral("s" + random.nextInt(400)),
+                    terms.get(random.nextInt(6)), terms.get(random.nextInt(10))));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        AtomicBoolean done = new AtomicBoolean();
+        try {
+            List<Future<Integer>> readers = new ArrayList<>();
+            for (int r = 0; r < 3; r++) {
+                readers.add(pool.submit(() -> {
+                    // le nombre de triplets vus ne peut que croître, et chaque lecture doit aboutir
+                    long seen = 0;
+                    int reads = 0;
+                    while (!done.get()) {
+                        long count = store.howMany(all);
+                        assertTrue(count >= seen, "Un lecteur a vu des triplets disparaître.");
+                        seen = count;
+                        store.getAtoms();
+                        reads++;
+                    }
+                    return reads;
+                }));
+            }
+            pool.submit(() -> {
+                for (RDFTriple t : added) store.add(t);
+                done.set(true);
+            }).get(30, TimeUnit.SECONDS);
+            for (Future<Integer> reader : readers) {
+                System.out.println("Lectures concurrentes : " + reader.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            done.set(true);
+            pool.shutdownNow();
+        }
+
+        for (RDFTriple t : added) hexa.add(t);
+        assertEquals(hexa.size(), store.size());
+        assertEquals(new HashSet<>(hexa.getAtoms()), new HashSet<>(store.getAtoms()));
+        assertEquals(hexa.howMany(all), store.howMany(all));
+    }
+}
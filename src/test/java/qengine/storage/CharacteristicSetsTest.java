@@ -0,0 +1,103 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.logicalElements.factory.api.TermFactory;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import qengine.model.RDFTriple;
+import qengine.model.StarQuery;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour les ensembles caractéristiques et l'estimation des requêtes en étoile.
+ */
+public class CharacteristicSetsTest {
+
+    private final TermFactory factory = SameObjectTermFactory.instance();
+    private RDFHexaStore store;
+    private Term type, name, likes, user, product, pizza;
+
+    @BeforeEach
+    void setUp() {
+        store = new RDFHexaStore();
+        type = factory.createOrGetLiteral("type");
+        name = factory.createOrGetLiteral("name");
+        likes = factory.createOrGetLiteral("likes");
+        user = factory.createOrGetLiteral("User");
+        product = factory.createOrGetLiteral("Product");
+        pizza = factory.createOrGetLiteral("Pizza");
+
+        // 6 utilisateurs {type, name}, dont 2 aiment aussi 2 produits {type, name, likes}
+        for (int i = 0; i < 6; i++) {
+            Term u = factory.createOrGetLiteral("user" + i);
+            store.add(new RDFTriple(u, type, user));
+            store.add(new RDFTriple(u, name, factory.createOrGetLiteral("nom" + i)));
+        }
+        for (int i = 0; i < 2; i++) {
+            Term u = factory.createOrGetLiteral("user" + i);
+            store.add(new RDFTriple(u, likes, pizza));
+            store.add(new RDFTriple(u, likes, factory.createOrGetLiteral("Pasta")));
+        }
+        // 3 produits {type}
+        for (int i = 0; i < 3; i++) {
+            store.add(new RDFTriple(factory.createOrGetLiteral("product" + i), type, product));
+        }
+        store.freeze();
+    }
+
+    @Test
+    void testComputeSets() {
+        CharacteristicSets sets = store.characteristicSets();
+        System.out.println("Ensembles caractéristiques : " + sets.size() + ", sujets : " + sets.distinctSubjects());
+
+        assertEquals(3, sets.size(), "{type, name}, {type, name, likes} et {type}");
+        assertEquals(9, sets.distinctSubjects());
+    }
+
+    @Test
+    void testEstimateSubjectStar() {
+        Variable x = factory.createOrGetVariable("?x");
+        Variable y = factory.createOrGetVariable("?y");
+
+        // sans objet lié, l'estimation est exacte : nombre de sujets ayant tous les prédicats
+        StarQuery withLikes = new StarQuery("Q1", List.of(new RDFTriple(x, name, y), new RDFTriple(x, likes, factory.createOrGetVariable("?z"))), Set.of(x));
+        assertEquals(2, store.estimate(withLikes));
+
+        StarQuery withName = new StarQuery("Q2", List.of(new RDFTriple(x, type, y), new RDFTriple(x, name, factory.createOrGetVariable("?z"))), Set.of(x));
+        assertEquals(6, store.estimate(withName));
+
+        // type = User : 6 triplets type sur 9 ont l'objet User -> 6 * 6/9 + 2 * 6/9 ~ 5
+        StarQuery users = new StarQuery("Q3", List.of(new RDFTriple(x, type, user), new RDFTriple(x, name, y)), Set.of(x));
+        long estimate = store.estimate(users);
+        System.out.println("Estimation de Q3 : " + estimate);
+        assertTrue(estimate >= 4 && estimate <= 6, "Estimation attendue proche de 6, obtenue " + estimate);
+    }
+
+    @Test
+    void testNoCharacteristicSetMeansNoAnswer() {
+        Variable x = factory.createOrGetVariable("?x");
+        // aucun produit n'a de nom : aucun ensemble ne contient {likes} et {type = Product}... ni {name, likes} pour un produit
+        StarQuery q = new StarQuery("Q", List.of(new RDFTriple(x, likes, pizza), new RDFTriple(x, factory.createOrGetLiteral("price"), factory.createOrGetVariable("?p"))), Set.of(x));
+
+        assertEquals(0, store.estimate(q));
+        assertFalse(store.match(q).hasNext());
+    }
+
+    @Test
+    void testStatisticsRefreshAfterAdd() {
+        Variable x = factory.createOrGetVariable("?x");
+        StarQuery q = new StarQuery("Q", List.of(new RDFTriple(x, likes, pizza), new RDFTriple(x, type, product)), Set.of(x));
+        assertFalse(store.match(q).hasNext());
+
+        // un produit qui aime la pizza : les statistiques figées ne doivent pas masquer la réponse
+        store.add(new RDFTriple(factory.createOrGetLiteral("product0"), likes, pizza));
+        assertTrue(store.match(q).hasNext(), "Les statistiques doivent être invalidées par un ajout.");
+        assertEquals(4, store.characteristicSets().size());
+    }
+}
@@ -0,0 +1,61 @@
+package qengine.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColumnScanTest {
+
+    private static final int ROWS = 1000;   // pas un multiple de la largeur des vecteurs : la fin passe en scalaire
+
+    private final int[] subjects = new int[ROWS];
+    private final int[] predicates = new int[ROWS];
+    private final int[] objects = new int[ROWS];
+
+    ColumnScanTest() {
+        Random random = new Random(3);
+        for (int i = 0; i < ROWS; i++) {
+            subjects[i] = 1 + random.nextInt(40);
+            predicates[i] = 1 + random.nextInt(5);
+            objects[i] = 1 + random.nextInt(60);
+        }
+    }
+
+    @Test
+    void testSelectMatchesScalarLoop() {
+        System.out.println("testSelectMatchesScalarLoop (vectorisé : " + ColumnScan.VECTORIZED + ")");
+
+        int[][] patterns = {
+                {0, 0, 0}, {7, 0, 0}, {0, 3, 0}, {0, 0, 12},
+                {7, 3, 0}, {7, 0, 12}, {0, 3, 12}, {subjects[5], predicates[5], objects[5]}, {99, 0, 0}
+        };
+        for (int[] pattern : patterns) {
+            int[] expected = new int[ROWS];
+            int n = ColumnScan.selectScalar(subjects, predicates, objects, 3, ROWS, pattern[0], pattern[1], pattern[2], expected, 0);
+
+            int[] selection = new int[ROWS];
+            int m = ColumnScan.select(subjects, predicates, objects, 3, ROWS, pattern[0], pattern[1], pattern[2], selection);
+            assertArrayEquals(Arrays.copyOf(expected, n), Arrays.copyOf(selection, m),
+                    "Sélection différente pour " + Arrays.toString(pattern));
+        }
+    }
+
+    @Test
+    void testVectorSelectMatchesScalarLoop() {
+        System.out.println("testVectorSelectMatchesScalarLoop");
+        if (!ColumnScan.VECTORIZED) {
+            System.out.println("module jdk.incubator.vector absent : test sauté");
+            return;
+        }
+        int[] expected = new int[ROWS];
+        int[] selection = new int[ROWS];
+        for (int s = 1; s <= 40; s++) {
+            int n = ColumnScan.selectScalar(subjects, predicates, objects, 0, ROWS, s, 2, 0, expected, 0);
+            int m = VectorColumnScan.select(subjects, predicates, objects, 0, ROWS, s, 2, 0, selection);
+            assertArrayEquals(Arrays.copyOf(expected, n), Arrays.copyOf(selection, m), "Sujet " + s);
+        }
+    }
+}
@@ -4,6 +4,10 @@ import fr.boreal.model.logicalElements.api.Term;
 import fr.boreal.model.logicalElements.factory.api.TermFactory;
 import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
 import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class DictionaryTest {
@@ -82,6 +86,166 @@ public class DictionaryTest {
 
     }
 
+    @Test
+    void testDecodeUnknownId() {
+        Dictionary dict = new Dictionary();
+        dict.encode(termFactory.createOrGetLiteral("Bob"));
+
+        // 0 et les IDs jamais attribués ne correspondent à aucun terme
+        assertNull(dict.decode(0), "L'ID 0 n'est jamais attribué");
+        assertNull(dict.decode(2), "Un ID non attribué doit renvoyer null");
+        assertNull(dict.decode(-1), "Un ID négatif doit renvoyer null");
+    }
+
+    @Test
+    void testEncodeManyTermsWithGrowth() {
+        Dictionary dict = new Dictionary();
+        int n = 10_000; // bien au-delà de la capacité initiale -> plusieurs redimensionnements
+
+        for (int i = 0; i < n; i++) {
+            int id = dict.encode(termFactory.createOrGetLiteral("term" + i));
+            assertEquals(i + 1, id, "Les IDs doivent être denses et commencer à 1");
+        }
+        assertEquals(n, dict.size());
+
+        // après les redimensionnements, tout doit toujours être retrouvé dans les deux sens
+        for (int i = 0; i < n; i++) {
+            Term t = termFactory.createOrGetLiteral("term" + i);
+            assertEquals(i + 1, dict.encodeIfExists(t));
+            assertEquals(t, dict.decode(i + 1));
+        }
+        System.out.println("Taille après " + n + " encodages : " + dict.size());
+    }
+
+    @Test
+    void testEncoderAndDecoderAreFrozen() {
+        Dictionary dict = new Dictionary();
+        Term bob = termFactory.createOrGetLiteral("Bob");
+        Term alice = termFactory.createOrGetLiteral("Alice");
+        int bobId = dict.encode(bob);
+        var encoder = dict.encoder();
+        var decoder = dict.decoder();
+
+        int aliceId = dict.encode(alice);
+        dict.release(bobId);
+
+        // le décodeur voit le dictionnaire du moment où il a été pris
+        assertEquals(bob, decoder.apply(bobId), "Un ID libéré ensuite se décode toujours.");
+        assertNull(decoder.apply(aliceId), "Un ID attribué ensuite est inconnu.");
+        assertEquals(bobId, encoder.applyAsInt(bob), "Un terme libéré ensuite garde son ID.");
+        assertEquals(-1, encoder.applyAsInt(alice), "Un terme encodé ensuite est inconnu.");
+        assertEquals(-1, dict.encodeIfExists(bob));
+        assertNull(dict.decode(bobId));
+        assertEquals(alice, dict.decoder().apply(aliceId));
+    }
+
+    @Test
+    void testReadsDuringEncoding() throws Exception {
+        // un écrivain encode (avec plusieurs redimensionnements) pendant qu'un lecteur cherche les termes déjà publiés
+        Dictionary dict = new Dictionary();
+        int n = 50_000;
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < n; i++) dict.encode(termFactory.createOrGetLiteral("t" + i));
+        });
+        writer.start();
+        int checked = 0;
+        while (writer.isAlive() || checked == 0) {
+            int known = dict.size();
+            for (int i = 0; i < known; i += 97) {
+                Term t = termFactory.createOrGetLiteral("t" + i);
+                assertEquals(i + 1, dict.encodeIfExists(t), "Terme publié introuvable : " + t);
+                assertEquals(t, dict.decode(i + 1));
+                checked++;
+            }
+        }
+        writer.join();
+        System.out.println(checked + " lectures pendant l'encodage");
+    }
+
+    @Test
+    void testConcurrentEncoding() throws Exception {
+        // plusieurs threads encodent les mêmes termes dans des ordres différents :
+        // chaque terme a un seul ID, et les IDs restent denses (1..n)
+        int n = 20_000;
+        int threads = 4;
+        Term[] terms = new Term[n];
+        for (int i = 0; i < n; i++) terms[i] = termFactory.createOrGetLiteral("c" + i);
+
+        Dictionary dict = new Dictionary();
+        int[][] ids = new int[threads][n];
+        List<Thread> workers = new ArrayList<>();
+        for (int w = 0; w < threads; w++) {
+            int worker = w;
+            workers.add(new Thread(() -> {
+                for (int k = 0; k < n; k++) {
+                    int i = worker % 2 == 0 ? k : n - 1 - k;
+                    ids[worker][i] = dict.encode(terms[i]);
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        for (Thread worker : workers) worker.join();
+
+        assertEquals(n, dict.size(), "Des IDs ont été attribués en double");
+        boolean[] seen = new boolean[n + 1];
+        for (int i = 0; i < n; i++) {
+            int id = ids[0][i];
+            for (int w = 1; w < threads; w++) {
+                assertEquals(id, ids[w][i], "Deux IDs pour le même terme : " + terms[i]);
+            }
+            assertFalse(seen[id], "ID attribué à deux termes : " + id);
+            seen[id] = true;
+            assertEquals(terms[i], dict.decode(id));
+            assertEquals(id, dict.encodeIfExists(terms[i]));
+        }
+        System.out.println(n + " termes encodés par " + threads + " threads");
+    }
 
+    @Test
+    void testSizeCountsOnlyPublishedIds() throws Exception {
+        // plusieurs écrivains à la fois : tout ID compté par size() se décode déjà, dans les deux sens
+        Dictionary dict = new Dictionary();
+        int n = 20_000;
+        int threads = 3;
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < threads; w++) {
+            int writer = w;
+            writers.add(new Thread(() -> {
+                for (int i = 0; i < n; i++) dict.encode(termFactory.createOrGetLiteral("w" + writer + "-" + i));
+            }));
+        }
+        writers.forEach(Thread::start);
+        int checked = 0;
+        do {
+            int size = dict.size();
+            Term last = dict.decode(size);
+            if (size > 0) {
+                assertNotNull(last, "ID compté mais pas encore décodable : " + size);
+                assertEquals(size, dict.encodeIfExists(last));
+                assertFalse(dict.isReleased(size));
+                checked++;
+            }
+        } while (writers.stream().anyMatch(Thread::isAlive));
+        for (Thread writer : writers) writer.join();
+
+        assertEquals(threads * n, dict.size());
+        assertNull(dict.decode(dict.size() + 1));
+        System.out.println(checked + " lectures de size() pendant l'encodage");
+    }
 
+    @Test
+    void testReleasedIdsAreTracked() {
+        Dictionary dict = new Dictionary();
+        int a = dict.encode(termFactory.createOrGetLiteral("a"));
+        int b = dict.encode(termFactory.createOrGetLiteral("b"));
+        int reserved = dict.reserve();
+        dict.release(a, a);
+
+        assertTrue(dict.isReleased(a));
+        assertFalse(dict.isReleased(b));
+        assertTrue(dict.isReleased(reserved), "Un ID réservé est libéré dès le départ.");
+        assertFalse(dict.isReleased(reserved + 1), "Pas encore attribué.");
+        assertEquals(2, dict.released());
+        assertEquals(3, dict.size());
+    }
 }
@@ -0,0 +1,286 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.factory.api.TermFactory;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import qengine.model.RDFTriple;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests unitaires pour le journal d'écriture anticipée et la reprise après arrêt.
+ */
+class DurableRDFStorageTest {
+
+    private final TermFactory factory = SameObjectTermFactory.instance();
+    private Path log;
+    private Path snapshot;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        log = Files.createTempFile("wal", ".log");
+        snapshot = Files.createTempFile("wal", ".snap");
+        Files.delete(snapshot);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(log);
+        Files.deleteIfExists(snapshot);
+    }
+
+    private RDFTriple triple(int i) {
+        return new RDFTriple(factory.createOrGetLiteral("http://example.org/s" + i % 37),
+                factory.createOrGetLiteral("http://example.org/p" + i % 5),
+                factory.createOrGetLiteral("objet " + i));
+    }
+
+    @Test
+    void testReplayAfterRestart() throws IOException {
+        List<RDFTriple> added = new ArrayList<>();
+        try (DurableRDFStorage store = DurableRDFStorage.open(new RDFHexaStore(), log)) {
+            for (int i = 0; i < 300; i++) {
+                assertTrue(store.add(triple(i)));
+                added.add(triple(i));
+            }
+            assertFalse(store.add(triple(5)), "Un doublon n'est pas journalisé.");
+        }
+
+        // « redémarrage » : un store vide et le même journal
+        try (DurableRDFStorage reopened = DurableRDFStorage.open(new RDFHexaStore(), log)) {
+            assertEquals(300, reopened.size(), "Tous les ajouts validés doivent être retrouvés.");
+            assertEquals(new HashSet<>(added), new HashSet<>(reopened.getAtoms()));
+            assertTrue(reopened.add(triple(1000)));
+        }
+        try (DurableRDFStorage again = DurableRDFStorage.open(new GiantTable(), log)) {
+            assertEquals(301, again.size(), "Le journal se relit aussi dans une GiantTable.");
+        }
+    }
+
+    @Test
+    void testTornTailIsDropped() throws IOException {
+        try (DurableRDFStorage store = DurableRDFStorage.open(new RDFHexaStore(), log)) {
+            for (int i = 0; i < 10; i++) store.add(triple(i));
+        }
+        // arrêt brutal au milieu de l'écriture de la dernière trame
+        long size = Files.size(log);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 5);
+        }
+
+        try (DurableRDFStorage reopened = DurableRDFStorage.open(new RDFHexaStore(), log)) {
+            assertEquals(9, reopened.size(), "Seule la trame incomplète est perdue.");
+            assertTrue(reopened.add(triple(9)), "On peut de nouveau ajouter derrière la dernière trame valide.");
+        }
+        try (DurableRDFStorage reopened = DurableRDFStorage.open(new RDFHexaStore(), log)) {
+            assertEquals(10, reopened.size());
+        }
+    }
+
+    @Test
+    void testCheckpointThenLog() throws IOException {
+        RDFHexaStore hexastore = new RDFHexaStore();
+        try (DurableRDFStorage store = DurableRDFStorage.open(hexastore, log)) {
+            store.addAll(List.of(triple(0), triple(1), triple(2)));
+            store.checkpoint(() -> hexastore.save(snapshot));
+            assertEquals(0, Files.size(log), "Le journal est vidé après l'instantané.");
+            store.add(triple(3));
+        }
+
+        // instantané + fin du journal
+        try (DurableRDFStorage reopened = DurableRDFStorage.open(RDFHexaStore.open(snapshot), log)) {
+            assertEquals(4, reopened.size());
+            assertEquals(1, reopened.howMany(triple(3)));
+        }
+    }
+
+    @Test
+    void testGroupCommitFromSeveralThreads() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try (DurableRDFStorage store = DurableRDFStorage.open(new GiantTable(), log)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 100; i++) store.add(triple(1000 * thread + i));
+                }));
+            }
+            for (Future<?> future : futures) future.get();
+            assertEquals(400, store.size());
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+        }
+
+        try (DurableRDFStorage reopened = DurableRDFStorage.open(new GiantTable(), log)) {
+            assertEquals(400, reopened.size(), "Aucun ajout validé ne doit manquer.");
+        }
+    }
+
+    @Test
+    void testRemovalsAreReplayed() throws IOException {
+        RDFHexaStore hexastore = new RDFHexaStore();
+        try (DurableRDFStorage store = DurableRDFStorage.open(hexastore, log)) {
+            for (int i = 0; i < 100; i++) store.add(triple(i));
+            assertTrue(store.remove(triple(3)));
+            assertTrue(store.removeAll(List.of(triple(4), triple(5))));
+            assertFalse(store.remove(triple(3)));
+
+            // compaction : l'ID de « objet 3 » est libéré, puis le terme revient avec un nouvel ID
+            hexastore.compact();
+            assertTrue(store.add(triple(3)));
+            assertTrue(store.add(triple(1000)));
+        }
+
+        try (DurableRDFStorage reopened = DurableRDFStorage.open(new RDFHexaStore(), log)) {
+            assertEquals(99, reopened.size());
+            assertTrue(reopened.match(triple(3)).hasNext(), "Ajouté après sa suppression.");
+            assertFalse(reopened.match(triple(4)).hasNext());
+            assertFalse(reopened.match(triple(5)).hasNext());
+            assertTrue(reopened.match(triple(1000)).hasNext());
+        }
+    }
+
+    @Test
+    void testReleasesAreLogged() throws IOException {
+        // « objet 3 » est journalisé, libéré par une compaction, et ne revient pas : seul un enregistrement
+        // de libération permet à la relecture de le libérer aussi
+        RDFHexaStore hexastore = new RDFHexaStore();
+        int releasedId;
+        try (DurableRDFStorage store = DurableRDFStorage.open(hexastore, log)) {
+            for (int i = 0; i < 10; i++) store.add(triple(i));
+            releasedId = hexastore.getDictionary().encodeIfExists(triple(3).getTripleObject());
+            assertTrue(store.remove(triple(3)));
+            hexastore.compact();
+            assertTrue(hexastore.getDictionary().isReleased(releasedId));
+            assertTrue(store.add(triple(100)));
+        }
+
+        RDFHexaStore replayed = new RDFHexaStore();
+        try (DurableRDFStorage reopened = DurableRDFStorage.open(replayed, log)) {
+            Dictionary dict = replayed.getDictionary();
+            assertTrue(dict.isReleased(releasedId), "La libération doit être rejouée telle quelle.");
+            assertEquals(hexastore.getDictionary().released(), dict.released());
+            assertEquals(hexastore.getDictionary().size(), dict.size());
+
+            // le terme revient : même nouvel ID que dans le store d'origine
+            assertTrue(reopened.add(triple(3)));
+            assertTrue(hexastore.add(triple(3)));
+            assertEquals(hexastore.getDictionary().encodeIfExists(triple(3).getTripleObject()),
+                    dict.encodeIfExists(triple(3).getTripleObject()));
+        }
+        try (DurableRDFStorage again = DurableRDFStorage.open(new RDFHexaStore(), log)) {
+            assertEquals(new HashSet<>(hexastore.getAtoms()), new HashSet<>(again.getAtoms()));
+        }
+    }
+
+    @Test
+    void testReplayDoesNotCompactInBackground() throws IOException {
+        // assez de suppressions pour lancer une compaction automatique pendant la relecture ;
+        // les triplets reviennent ensuite avec les mêmes IDs, qui ne doivent pas avoir été libérés entre-temps
+        RDFHexaStore hexastore = new RDFHexaStore();
+        try (DurableRDFStorage store = DurableRDFStorage.open(hexastore, log)) {
+            for (int i = 0; i < 2000; i++) store.add(triple(i));
+            hexastore.freeze();
+            hexastore.setAutoCompaction(false);
+            for (int i = 0; i < 1500; i++) assertTrue(store.remove(triple(i)));
+            for (int i = 0; i < 1500; i++) assertTrue(store.add(triple(i)));
+            hexastore.setAutoCompaction(true);
+        }
+
+        RDFHexaStore replayed = new RDFHexaStore();
+        try (DurableRDFStorage reopened = DurableRDFStorage.open(replayed, log)) {
+            assertEquals(2000, reopened.size());
+            assertEquals(new HashSet<>(hexastore.getAtoms()), new HashSet<>(reopened.getAtoms()));
+            assertEquals(0, replayed.getDictionary().released(), "Tous les termes servent encore.");
+        }
+    }
+
+    @Test
+    void testFailedWriteIsNotApplied() throws IOException {
+        // /dev/full refuse toute écriture : le journal échoue, le store ne doit rien voir
+        Path full = Path.of("/dev/full");
+        assumeTrue(Files.isWritable(full), "Pas de /dev/full sur ce système");
+        RDFHexaStore hexastore = new RDFHexaStore();
+        DurableRDFStorage store = DurableRDFStorage.open(hexastore, full);
+        assertThrows(UncheckedIOException.class, () -> store.add(triple(0)));
+        assertEquals(0, hexastore.size(), "Un ajout qui n'est pas sur disque n'est pas appliqué.");
+        assertFalse(hexastore.match(triple(0)).hasNext());
+
+        // le journal n'accepte plus rien, et le store reste dans l'état du journal
+        assertThrows(UncheckedIOException.class, () -> store.addAll(List.of(triple(1), triple(2))));
+        assertEquals(0, hexastore.size());
+        assertThrows(IOException.class, store::close);
+    }
+
+    @Test
+    void testPendingWritesCountForLaterOnes() throws Exception {
+        // plusieurs threads ajoutent et suppriment les mêmes triplets : une modification en attente de validation
+        // compte déjà pour les suivantes, et tout est appliqué dans l'ordre du journal
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        RDFHexaStore hexastore = new RDFHexaStore();
+        AtomicIntegerArray net = new AtomicIntegerArray(20);
+        try (DurableRDFStorage store = DurableRDFStorage.open(hexastore, log)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 400; i++) {
+                        int j = (i * 7 + thread) % 20;
+                        if ((i + thread) % 2 == 0) {
+                            if (store.add(triple(j))) net.incrementAndGet(j);
+                        } else {
+                            if (store.remove(triple(j))) net.decrementAndGet(j);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) future.get();
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+        }
+
+        // ajouts réussis - suppressions réussies = présence finale : un doublon n'est jamais compté comme un ajout
+        for (int j = 0; j < 20; j++) {
+            assertEquals(hexastore.match(triple(j)).hasNext() ? 1 : 0, net.get(j), "Triplet " + j);
+        }
+        try (DurableRDFStorage reopened = DurableRDFStorage.open(new RDFHexaStore(), log)) {
+            assertEquals(new HashSet<>(hexastore.getAtoms()), new HashSet<>(reopened.getAtoms()),
+                    "La relecture doit redonner exactement le store.");
+        }
+    }
+
+    @Test
+    void testSnapshotWithReleasedIds() throws IOException {
+        RDFHexaStore store = new RDFHexaStore();
+        for (int i = 0; i < 50; i++) store.add(triple(i));
+        store.remove(triple(7));
+        store.save(snapshot);   // freeze : compaction, l'ID de « objet 7 » est libéré
+
+        RDFHexaStore reopened = RDFHexaStore.open(snapshot);
+        assertEquals(49, reopened.size());
+        assertEquals(store.getDictionary().size(), reopened.getDictionary().size(), "Les IDs sont gardés, trous compris.");
+        assertEquals(1, reopened.getDictionary().released());
+        assertEquals(new HashSet<>(store.getAtoms()), new HashSet<>(reopened.getAtoms()));
+        assertTrue(reopened.add(triple(7)));
+    }
+}
@@ -0,0 +1,84 @@
+package qengine.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour FrozenIndex : construction, fusion avec un delta et recherches.
+ */
+public class FrozenIndexTest {
+
+    private static Map<Integer, Map<Integer, Set<Integer>>> delta(int[]... triples) {
+        Map<Integer, Map<Integer, Set<Integer>>> delta = new HashMap<>();
+        for (int[] t : triples) {
+            delta.computeIfAbsent(t[0], k -> new HashMap<>()).computeIfAbsent(t[1], k -> new HashSet<>()).add(t[2]);
+        }
+        return delta;
+    }
+
+    private static List<Integer> leaves(FrozenIndex index, int a, int b) {
+        List<Integer> values = new ArrayList<>();
+        int pos2 = index.find(a, b);
+        if (pos2 >= 0) {
+            for (int i = index.leavesFrom(pos2); i < index.leavesTo(pos2); i++) values.add(index.leaf(i));
+        }
+        return values;
+    }
+
+    @Test
+    void testEmpty() {
+        assertEquals(0, FrozenIndex.EMPTY.size());
+        assertEquals(-1, FrozenIndex.EMPTY.find1(1));
+        assertFalse(FrozenIndex.EMPTY.contains(1, 2, 3));
+    }
+
+    @Test
+    void testMergeIntoEmpty() {
+        FrozenIndex index = FrozenIndex.merge(FrozenIndex.EMPTY,
+                delta(new int[]{5, 2, 9}, new int[]{1, 3, 4}, new int[]{5, 2, 1}, new int[]{5, 1, 7}));
+
+        System.out.println("Feuilles de (5, 2) : " + leaves(index, 5, 2));
+        assertEquals(4, index.size());
+        assertTrue(index.contains(5, 2, 9));
+        assertTrue(index.contains(1, 3, 4));
+        assertFalse(index.contains(5, 2, 4));
+        assertFalse(index.contains(2, 2, 9));
+        assertEquals(List.of(1, 9), leaves(index, 5, 2), "Les feuilles doivent être triées.");
+        assertEquals(List.of(7), leaves(index, 5, 1));
+        assertEquals(List.of(), leaves(index, 5, 3));
+    }
+
+    @Test
+    void testMergeWithExistingBase() {
+        FrozenIndex base = FrozenIndex.merge(FrozenIndex.EMPTY,
+                delta(new int[]{1, 1, 1}, new int[]{1, 1, 5}, new int[]{3, 2, 2}));
+        FrozenIndex merged = FrozenIndex.merge(base,
+                delta(new int[]{1, 1, 3}, new int[]{2, 1, 1}, new int[]{3, 1, 8}, new int[]{3, 2, 9}));
+
+        assertEquals(7, merged.size());
+        assertEquals(List.of(1, 3, 5), leaves(merged, 1, 1), "Fusion de feuilles de la base et du delta.");
+        assertEquals(List.of(1), leaves(merged, 2, 1), "Nouvelle clé a provenant du delta.");
+        assertEquals(List.of(8), leaves(merged, 3, 1), "Nouvelle clé b provenant du delta.");
+        assertEquals(List.of(2, 9), leaves(merged, 3, 2));
+        // la base n'est pas modifiée
+        assertEquals(3, base.size());
+    }
+
+    @Test
+    void testBuilder() {
+        FrozenIndex.Builder builder = new FrozenIndex.Builder(4);
+        builder.add(1, 2, 3);
+        builder.add(1, 2, 4);
+        builder.add(1, 5, 1);
+        builder.add(2, 2, 2);
+        FrozenIndex index = builder.build();
+
+        assertEquals(4, index.size());
+        assertEquals(List.of(3, 4), leaves(index, 1, 2));
+        assertTrue(index.contains(2, 2, 2));
+        assertEquals(-1, index.find(2, 5));
+    }
+}
@@ -187,4 +187,94 @@ public class GiantTableTest {
         assertFalse(results.hasNext(), "Il ne doit y avoir qu’un seul résultat.");
     }
 
+    @Test
+    void testMatchUnknownConstant() {
+        System.out.println("testMatchUnknownConstant");
+
+        // "Paris" n'est pas dans le dictionnaire : aucun triplet ne peut correspondre
+        var x = termFactory.createOrGetVariable("?x");
+        Term paris = termFactory.createOrGetLiteral("Paris");
+
+        assertFalse(table.match(new RDFTriple(x, knows, paris)).hasNext(),
+                "Une constante inconnue ne doit pas être traitée comme une variable.");
+        assertEquals(0, table.howMany(new RDFTriple(x, knows, paris)));
+    }
+
+    @Test
+    void testMatchIsLazy() {
+        System.out.println("testMatchIsLazy");
+
+        var x = termFactory.createOrGetVariable("?x");
+        var y = termFactory.createOrGetVariable("?y");
+        var z = termFactory.createOrGetVariable("?z");
+
+        // on ne consomme qu'une réponse sur trois, puis l'itérateur doit rester cohérent
+        Iterator<Substitution> results = table.match(new RDFTriple(x, y, z));
+        assertTrue(results.hasNext());
+        assertTrue(results.hasNext(), "hasNext() ne doit pas consommer de réponse.");
+        results.next();
+        results.next();
+        results.next();
+        assertFalse(results.hasNext());
+        assertThrows(NoSuchElementException.class, results::next);
+    }
+
+    @Test
+    void testManyAddsWithDuplicates() {
+        System.out.println("testManyAddsWithDuplicates");
+
+        // assez de triplets pour agrandir plusieurs fois les colonnes et la table de hachage
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 1000; i++) {
+                table.add(new RDFTriple(termFactory.createOrGetLiteral("s" + (i % 50)), knows,
+                        termFactory.createOrGetLiteral("o" + i)));
+            }
+        }
+        assertEquals(1003, table.size(), "Le deuxième passage ne doit ajouter que des doublons.");
+        assertEquals(1003, table.getAtoms().size());
+        assertEquals(20, table.howMany(new RDFTriple(termFactory.createOrGetLiteral("s7"), knows, VAR_X)));
+    }
+
+    @Test
+    void testMatchRepeatedVariable() {
+        System.out.println("testMatchRepeatedVariable");
+
+        table.add(new RDFTriple(bob, likes, bob));
+        // ?x likes ?x : seul (Bob, likes, Bob) convient, pas (Bob, likes, Pizza)
+        Iterator<Substitution> results = table.match(new RDFTriple(VAR_X, likes, VAR_X));
+        assertTrue(results.hasNext());
+        assertEquals(bob, results.next().toMap().get(VAR_X));
+        assertFalse(results.hasNext());
+        assertEquals(1, table.howMany(new RDFTriple(VAR_X, likes, VAR_X)));
+    }
+
+    @Test
+    void testParallelScanOnLargeTable() {
+        System.out.println("testParallelScanOnLargeTable");
+
+        // assez de lignes pour que les parcours soient découpés en blocs et lancés en parallèle
+        GiantTable large = new GiantTable();
+        int rows = 2 * GiantTable.PARALLEL_MIN_ROWS + 123;
+        for (int i = 0; i < rows; i++) {
+            large.add(new RDFTriple(termFactory.createOrGetLiteral("s" + i),
+                    i % 3 == 0 ? knows : likes, termFactory.createOrGetLiteral("o" + (i % 1000))));
+        }
+
+        // les réponses sortent dans l'ordre d'ajout : s0, s3, s6, ...
+        Term y = termFactory.createOrGetVariable("?y");
+        Iterator<Substitution> results = large.match(new RDFTriple(VAR_X, knows, y));
+        int answers = 0;
+        while (results.hasNext()) {
+            assertEquals(termFactory.createOrGetLiteral("s" + 3 * answers), results.next().toMap().get(VAR_X),
+                    "Les réponses doivent suivre l'ordre des lignes.");
+            answers++;
+        }
+        assertEquals((rows + 2) / 3, answers, "Toutes les lignes avec knows doivent être rendues.");
+
+        assertEquals((rows + 2) / 3, large.howMany(new RDFTriple(VAR_X, knows, y)));
+        long withObject = 0;
+        for (int i = 0; i < rows; i++) if (i % 1000 == 7 && i % 3 != 0) withObject++;
+        assertEquals(withObject, large.howMany(new RDFTriple(VAR_X, likes, termFactory.createOrGetLiteral("o7"))));
+    }
+
 }
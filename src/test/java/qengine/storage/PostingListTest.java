@@ -0,0 +1,57 @@
+package qengine.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour PostingList : union des deux sources, galop et intersection.
+ */
+public class PostingListTest {
+
+    @Test
+    void testGallop() {
+        int[] a = {1, 3, 5, 7, 9, 11, 13, 15, 17};
+        assertEquals(0, PostingList.gallop(a, 0, a.length, 0));
+        assertEquals(0, PostingList.gallop(a, 0, a.length, 1));
+        assertEquals(3, PostingList.gallop(a, 0, a.length, 6));
+        assertEquals(3, PostingList.gallop(a, 0, a.length, 7));
+        assertEquals(8, PostingList.gallop(a, 2, a.length, 17));
+        assertEquals(a.length, PostingList.gallop(a, 0, a.length, 18), "Au-delà du dernier élément");
+        assertEquals(5, PostingList.gallop(a, 2, 5, 100), "On ne dépasse pas la borne de fin");
+    }
+
+    @Test
+    void testUnionOfFrozenAndDelta() {
+        // 5 est présent dans les deux sources : il ne doit être vu qu'une fois
+        PostingList list = new PostingList(new int[]{0, 2, 5, 8, 99}, 1, 4, new int[]{1, 5, 9});
+        StringBuilder seen = new StringBuilder();
+        while (!list.atEnd()) {
+            seen.append(list.current()).append(' ');
+            list.next();
+        }
+        System.out.println("Union : " + seen);
+        assertEquals("1 2 5 8 9 ", seen.toString());
+    }
+
+    @Test
+    void testIntersect() {
+        PostingList small = new PostingList(new int[]{4, 8, 15}, 0, 3, PostingList.NONE);
+        PostingList large = new PostingList(new int[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14}, 0, 14, new int[]{15});
+        PostingList other = new PostingList(new int[]{4, 15, 16}, 0, 3, new int[]{8});
+
+        assertArrayEquals(new int[]{4, 8, 15}, PostingList.intersect(List.of(large, small, other)));
+    }
+
+    @Test
+    void testIntersectEmpty() {
+        PostingList a = new PostingList(new int[]{1, 2, 3}, 0, 3, PostingList.NONE);
+        PostingList b = new PostingList(new int[]{4, 5}, 0, 2, PostingList.NONE);
+
+        assertEquals(0, PostingList.intersect(List.of(a, b)).length);
+        assertEquals(0, PostingList.intersect(List.of()).length);
+        assertEquals(0, PostingList.intersect(List.of(PostingList.EMPTY)).length);
+    }
+}
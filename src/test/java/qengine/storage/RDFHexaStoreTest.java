@@ -14,9 +14,13 @@ import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
 import qengine.model.RDFTriple;
 import qengine.model.StarQuery;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Tests unitaires pour la classe RDFHexaStore.
@@ -233,5 +237,507 @@ public class RDFHexaStoreTest {
         assertFalse(results.hasNext(), "Il ne doit y avoir qu'une seule solution.");
     }
 
+    @Test
+    void testFreeze() {
+        var bob = factory.createOrGetLiteral(S1);
+        var alice = factory.createOrGetLiteral(S2);
+        var knows = factory.createOrGetLiteral(P1);
+        var pizza = factory.createOrGetLiteral(O2);
+        var x = factory.createOrGetVariable("?x");
+        var y = factory.createOrGetVariable("?y");
+
+        store.freeze();
+        System.out.println("Store figé, taille = " + store.size());
+
+        // les index figés répondent comme avant
+        assertEquals(3, store.size());
+        assertEquals(1, store.howMany(new RDFTriple(bob, knows, alice)));
+        assertEquals(1, store.howMany(new RDFTriple(x, knows, alice)));
+        assertEquals(1, store.howMany(new RDFTriple(bob, knows, y)));
+
+        // un doublon d'un triplet figé est toujours refusé
+        assertFalse(store.add(new RDFTriple(bob, knows, alice)), "Un triplet déjà figé ne doit pas être ré-ajouté.");
+
+        // un ajout après freeze() va dans le delta et reste visible avec la partie figée
+        assertTrue(store.add(new RDFTriple(alice, knows, pizza)));
+        assertEquals(2, store.howMany(new RDFTriple(alice, knows, y)), "Alice knows ?y : un triplet figé + un du delta.");
+
+        // un second freeze() fusionne le delta avec la partie figée
+        store.freeze();
+        assertEquals(4, store.size());
+        assertEquals(2, store.howMany(new RDFTriple(alice, knows, y)));
+        assertEquals(1, store.howMany(new RDFTriple(x, knows, pizza)));
+        assertEquals(1, store.howMany(new RDFTriple(alice, x, pizza)));
+    }
+
+    @Test
+    void testMatchIsLazy() {
+        var bob = factory.createOrGetLiteral(S1);
+        var x = factory.createOrGetVariable("?x");
+        var y = factory.createOrGetVariable("?y");
+
+        // parcours des feuilles figées, réponse par réponse
+        store.freeze();
+        Iterator<Substitution> it = store.match(new RDFTriple(bob, factory.createOrGetLiteral(P1), y));
+        assertTrue(it.hasNext());
+        assertEquals(factory.createOrGetLiteral(S2), it.next().toMap().get(y));
+        assertFalse(it.hasNext());
+
+        assertFalse(store.match(new RDFTriple(x, factory.createOrGetLiteral(P2), bob)).hasNext(),
+                "Personne n'aime Bob.");
+    }
+
+    @Test
+    void testMatchSingleBoundAndFullScan() {
+        var bob = factory.createOrGetLiteral(S1);
+        var alice = factory.createOrGetLiteral(S2);
+        var knows = factory.createOrGetLiteral(P1);
+        var x = factory.createOrGetVariable("?x");
+        var y = factory.createOrGetVariable("?y");
+        var z = factory.createOrGetVariable("?z");
+
+        // une moitié figée, une moitié dans le delta
+        store.freeze();
+        store.add(new RDFTriple(alice, knows, alice));
+
+        System.out.println("Bob ?y ?z -> " + store.howMany(new RDFTriple(bob, y, z)));
+        assertEquals(2, store.howMany(new RDFTriple(bob, y, z)), "<Bob> ?p ?o : index spo");
+        assertEquals(3, store.howMany(new RDFTriple(x, knows, z)), "?s <knows> ?o : index pso");
+        assertEquals(2, store.howMany(new RDFTriple(x, y, alice)), "?s ?p <Alice> : index osp");
+        assertEquals(4, store.howMany(new RDFTriple(x, y, z)), "?s ?p ?o : parcours de spo");
+
+        // les valeurs liées sont les bonnes
+        Iterator<Substitution> it = store.match(new RDFTriple(x, y, alice));
+        Set<Term> subjects = new HashSet<>();
+        while (it.hasNext()) {
+            var map = it.next().toMap();
+            assertEquals(knows, map.get(y));
+            subjects.add(map.get(x));
+        }
+        assertEquals(Set.of(bob, alice), subjects);
+
+        // variable répétée : seul Alice knows Alice convient
+        it = store.match(new RDFTriple(x, knows, x));
+        assertTrue(it.hasNext());
+        assertEquals(alice, it.next().toMap().get(x));
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    void testHowManyMatchesMatchCount() {
+        // petit graphe pseudo-aléatoire, une partie figée et une partie dans le delta
+        RDFHexaStore big = new RDFHexaStore();
+        Random random = new Random(7);
+        List<Term> terms = new ArrayList<>();
+        for (int i = 0; i < 8; i++) terms.add(factory.createOrGetLiteral("t" + i));
+        for (int i = 0; i < 150; i++) {
+            if (i == 100) big.freeze();
+            big.add(new RDFTriple(terms.get(random.nextInt(8)), terms.get(random.nextInt(4)), terms.get(random.nextInt(8))));
+        }
+
+        var x = factory.createOrGetVariable("?x");
+        var y = factory.createOrGetVariable("?y");
+        var z = factory.createOrGetVariable("?z");
+        Term a = terms.get(1), b = terms.get(2), c = terms.get(3);
+        List<RDFTriple> patterns = List.of(
+                new RDFTriple(a, b, c), new RDFTriple(a, b, z), new RDFTriple(x, b, c), new RDFTriple(a, y, c),
+                new RDFTriple(a, y, z), new RDFTriple(x, b, z), new RDFTriple(x, y, c), new RDFTriple(x, y, z),
+                new RDFTriple(x, b, x), new RDFTriple(x, factory.createOrGetLiteral("inconnu"), z));
+
+        for (RDFTriple pattern : patterns) {
+            long count = 0;
+            for (Iterator<Substitution> it = big.match(pattern); it.hasNext(); it.next()) count++;
+            System.out.println(pattern + " -> howMany = " + big.howMany(pattern) + ", match = " + count);
+            assertEquals(count, big.howMany(pattern), "howMany doit être égal au nombre de réponses de " + pattern);
+        }
+    }
+
+    @Test
+    void testMatchStarQueryAgainstGenericEvaluation() {
+        // mêmes données dans un hexastore (une partie figée) et dans une GiantTable (évaluation générique)
+        RDFHexaStore hexa = new RDFHexaStore();
+        GiantTable reference = new GiantTable();
+        Random random = new Random(11);
+        List<Term> terms = new ArrayList<>();
+        for (int i = 0; i < 10; i++) terms.add(factory.createOrGetLiteral("n" + i));
+        for (int i = 0; i < 200; i++) {
+            if (i == 120) hexa.freeze();
+            RDFTriple t = new RDFTriple(terms.get(random.nextInt(10)), terms.get(random.nextInt(3)), terms.get(random.nextInt(10)));
+            hexa.add(t);
+            reference.add(t);
+        }
+
+        Variable x = factory.createOrGetVariable("?x");
+        Variable y = factory.createOrGetVariable("?y");
+        Term p0 = terms.get(0), p1 = terms.get(1), p2 = terms.get(2);
+        Term a = terms.get(4), b = terms.get(7);
+        List<StarQuery> queries = List.of(
+                new StarQuery("sujet", List.of(new RDFTriple(x, p0, a), new RDFTriple(x, p1, b)), Set.of(x)),
+                new StarQuery("objet", List.of(new RDFTriple(a, p0, x), new RDFTriple(y, p2, x)), Set.of(x)),
+                new StarQuery("mixte", List.of(new RDFTriple(x, p1, y), new RDFTriple(b, y, x), new RDFTriple(x, y, a)), Set.of(x)),
+                new StarQuery("inconnu", List.of(new RDFTriple(x, p0, factory.createOrGetLiteral("inconnu"))), Set.of(x)));
+
+        for (StarQuery q : queries) {
+            Set<Substitution> expected = new HashSet<>();
+            reference.match(q).forEachRemaining(expected::add);
+            Set<Substitution> actual = new HashSet<>();
+            hexa.match(q).forEachRemaining(actual::add);
+            System.out.println(q.getLabel() + " -> " + actual);
+            assertEquals(expected, actual, "Réponses différentes pour la requête " + q.getLabel());
+        }
+
+        // variable centrale répétée : repli sur l'évaluation générique, qui doit rester exacte
+        StarQuery repli = new StarQuery("repli", List.of(new RDFTriple(x, p0, x)), Set.of(x));
+        Set<Substitution> expected = new HashSet<>();
+        hexa.match(new RDFTriple(x, p0, x)).forEachRemaining(expected::add);
+        Set<Substitution> actual = new HashSet<>();
+        hexa.match(repli).forEachRemaining(actual::add);
+        assertEquals(expected, actual, "Réponses différentes pour la requête repli");
+    }
+
+    @Test
+    void testAddEncoded() {
+        // encodage puis insertion séparés, comme dans le banc d'essai WatDiv
+        Dictionary dict = store.getDictionary();
+        int bob = dict.encode(factory.createOrGetLiteral(S1));
+        int likes = dict.encode(factory.createOrGetLiteral(P2));
+        int tea = dict.encode(factory.createOrGetLiteral("Tea"));
+
+        assertTrue(store.addEncoded(bob, likes, tea));
+        assertFalse(store.addEncoded(bob, likes, tea), "Le triplet encodé est déjà présent.");
+        assertFalse(store.add(new RDFTriple(factory.createOrGetLiteral(S1), factory.createOrGetLiteral(P2), factory.createOrGetLiteral("Tea"))));
+        assertEquals(4, store.size());
+        assertEquals(2, store.howMany(new RDFTriple(factory.createOrGetLiteral(S1), factory.createOrGetLiteral(P2), factory.createOrGetVariable("?o"))));
+    }
+
+    @Test
+    void testBulkLoadMatchesIncrementalAdds() {
+        // même flux de triplets (avec doublons) : chargement par tri d'un côté, add() un par un de l'autre
+        Random random = new Random(13);
+        List<RDFTriple> triples = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            triples.add(new RDFTriple(factory.createOrGetLiteral("b" + random.nextInt(300)),
+                    factory.createOrGetLiteral("q" + random.nextInt(6)), factory.createOrGetLiteral("b" + random.nextInt(500))));
+        }
+        RDFHexaStore bulk = new RDFHexaStore();
+        assertTrue(bulk.addAll(triples));
+        RDFHexaStore incremental = new RDFHexaStore();
+        triples.forEach(incremental::add);
+
+        assertEquals(incremental.size(), bulk.size());
+        assertEquals(new HashSet<>(incremental.getAtoms()), new HashSet<>(bulk.getAtoms()));
+
+        var x = factory.createOrGetVariable("?x");
+        var y = factory.createOrGetVariable("?y");
+        Term s0 = factory.createOrGetLiteral("b7"), q1 = factory.createOrGetLiteral("q1"), o0 = factory.createOrGetLiteral("b11");
+        for (RDFTriple pattern : List.of(new RDFTriple(s0, y, x), new RDFTriple(x, q1, y), new RDFTriple(x, y, o0),
+                new RDFTriple(s0, q1, x), new RDFTriple(x, q1, o0), new RDFTriple(s0, y, o0))) {
+            Set<Substitution> expected = new HashSet<>();
+            incremental.match(pattern).forEachRemaining(expected::add);
+            Set<Substitution> actual = new HashSet<>();
+            bulk.match(pattern).forEachRemaining(actual::add);
+            assertEquals(expected, actual, "Réponses différentes pour " + pattern);
+            assertEquals(incremental.howMany(pattern), bulk.howMany(pattern));
+        }
+
+        // le store chargé en bloc accepte encore des ajouts, et refuse les doublons
+        assertFalse(bulk.add(triples.get(0)));
+        assertTrue(bulk.add(new RDFTriple(s0, q1, factory.createOrGetLiteral("nouveau"))));
+        assertEquals(incremental.size() + 1, bulk.size());
+    }
+
+    @Test
+    void testRemove() {
+        var bob = factory.createOrGetLiteral(S1);
+        var alice = factory.createOrGetLiteral(S2);
+        var knows = factory.createOrGetLiteral(P1);
+        var likes = factory.createOrGetLiteral(P2);
+        var pizza = factory.createOrGetLiteral(O2);
+        var x = factory.createOrGetVariable("?x");
+
+        // (Bob knows Alice) est figé, (Bob likes Tea) est dans le delta
+        store.freeze();
+        var tea = factory.createOrGetLiteral("Tea");
+        assertTrue(store.add(new RDFTriple(bob, likes, tea)));
+
+        assertTrue(store.remove(new RDFTriple(bob, knows, alice)), "Triplet figé : pierre tombale.");
+        assertTrue(store.remove(new RDFTriple(bob, likes, tea)), "Triplet du delta : retiré directement.");
+        assertFalse(store.remove(new RDFTriple(bob, knows, alice)), "Déjà retiré.");
+        assertFalse(store.remove(new RDFTriple(bob, knows, factory.createOrGetLiteral("Inconnu"))));
+        assertEquals(2, store.size());
+
+        assertFalse(store.match(new RDFTriple(bob, knows, alice)).hasNext());
+        assertEquals(0, store.howMany(new RDFTriple(bob, knows, x)));
+        assertEquals(1, store.howMany(new RDFTriple(x, knows, factory.createOrGetVariable("?y"))));
+        assertEquals(1, store.howMany(new RDFTriple(bob, x, factory.createOrGetVariable("?y"))));
+
+        // Bob ne connaît plus personne : il disparaît aussi des listes de l'étoile
+        StarQuery star = new StarQuery("connaît et aime la pizza", List.of(
+                new RDFTriple(x, knows, factory.createOrGetVariable("?y")), new RDFTriple(x, likes, pizza)), List.of(x));
+        assertFalse(store.match(star).hasNext());
+
+        // un triplet retiré peut revenir
+        assertTrue(store.add(new RDFTriple(bob, knows, alice)));
+        assertEquals(3, store.size());
+        assertTrue(store.match(new RDFTriple(bob, knows, alice)).hasNext());
+        assertTrue(store.match(star).hasNext());
+        assertTrue(store.getAtoms().contains(new RDFTriple(bob, likes, pizza)));
+    }
+
+    @Test
+    void testRemoveMatchesRebuild() {
+        // suppressions aléatoires, dans la partie figée comme dans le delta : mêmes réponses qu'un store
+        // reconstruit avec les seuls triplets restants, avant et après compaction
+        Random random = new Random(21);
+        List<RDFTriple> triples = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            triples.add(new RDFTriple(factory.createOrGetLiteral("r" + random.nextInt(200)),
+                    factory.createOrGetLiteral("q" + random.nextInt(5)), factory.createOrGetLiteral("r" + random.nextInt(300))));
+        }
+        RDFHexaStore removing = new RDFHexaStore();
+        removing.addAll(triples.subList(0, 2000));
+        removing.freeze();
+        removing.addAll(triples.subList(2000, 3000));
+
+        Set<RDFTriple> kept = new HashSet<>(triples);
+        for (int i = 0; i < 1500; i++) {
+            RDFTriple t = triples.get(random.nextInt(triples.size()));
+            assertEquals(kept.remove(t), removing.remove(t));
+        }
+        RDFHexaStore rebuilt = new RDFHexaStore();
+        rebuilt.addAll(kept.stream());
+
+        var x = factory.createOrGetVariable("?x");
+        var y = factory.createOrGetVariable("?y");
+        Term s0 = factory.createOrGetLiteral("r7"), q1 = factory.createOrGetLiteral("q1"), o0 = factory.createOrGetLiteral("r11");
+        List<RDFTriple> patterns = List.of(new RDFTriple(s0, y, x), new RDFTriple(x, q1, y), new RDFTriple(x, y, o0),
+                new RDFTriple(s0, q1, x), new RDFTriple(x, q1, o0), new RDFTriple(s0, y, o0), new RDFTriple(x, y, factory.createOrGetVariable("?z")));
+        StarQuery star = new StarQuery("étoile", List.of(new RDFTriple(x, q1, y), new RDFTriple(x, factory.createOrGetLiteral("q2"), o0)), List.of(x));
+
+        for (int pass = 0; pass < 2; pass++) {
+            assertEquals(rebuilt.size(), removing.size());
+            assertEquals(new HashSet<>(rebuilt.getAtoms()), new HashSet<>(removing.getAtoms()));
+            for (RDFTriple pattern : patterns) {
+                Set<Substitution> expected = new HashSet<>();
+                rebuilt.match(pattern).forEachRemaining(expected::add);
+                Set<Substitution> actual = new HashSet<>();
+                removing.match(pattern).forEachRemaining(actual::add);
+                assertEquals(expected, actual, "Réponses différentes pour " + pattern);
+                assertEquals(rebuilt.howMany(pattern), removing.howMany(pattern));
+            }
+            Set<Substitution> expected = new HashSet<>();
+            rebuilt.match(star).forEachRemaining(expected::add);
+            Set<Substitution> actual = new HashSet<>();
+            removing.match(star).forEachRemaining(actual::add);
+            assertEquals(expected, actual);
+
+            removing.compactAsync().join();
+        }
+    }
+
+    @Test
+    void testCompactionReleasesUnusedIds() {
+        var bob = factory.createOrGetLiteral(S1);
+        var knows = factory.createOrGetLiteral(P1);
+        var alone = factory.createOrGetLiteral("Seul");
+        Dictionary dict = store.getDictionary();
+
+        store.add(new RDFTriple(bob, knows, alone));
+        store.freeze();
+        int aloneId = dict.encodeIfExists(alone);
+        int bobId = dict.encodeIfExists(bob);
+
+        assertTrue(store.remove(new RDFTriple(bob, knows, alone)));
+        assertEquals(alone, dict.decode(aloneId), "L'ID n'est libéré qu'à la compaction.");
+        store.compactAsync().join();
+
+        assertNull(dict.decode(aloneId), "Plus aucun triplet n'utilise ce terme.");
+        assertEquals(-1, dict.encodeIfExists(alone));
+        assertEquals(bob, dict.decode(bobId), "Bob est encore sujet d'autres triplets.");
+        assertEquals(1, dict.released());
+
+        // le terme revient avec un nouvel ID, l'ancien n'est jamais réattribué
+        assertTrue(store.add(new RDFTriple(bob, knows, alone)));
+        assertNotEquals(aloneId, dict.encodeIfExists(alone));
+        assertTrue(store.match(new RDFTriple(factory.createOrGetVariable("?s"), knows, alone)).hasNext());
+        // un ID libéré, encodé avant la compaction : son terme reprend son nouvel ID
+        assertEquals(alone, dict.releasedTerm(aloneId));
+        assertTrue(store.addEncoded(bobId, bobId, aloneId));
+        assertTrue(store.match(new RDFTriple(bob, bob, alone)).hasNext());
+        assertEquals(0, store.addAllEncoded(new int[]{bobId, dict.encodeIfExists(knows), aloneId}, 3));
+        assertThrows(IllegalArgumentException.class, () -> store.addEncoded(bobId, bobId, dict.size() + 1));
+    }
+
+    @Test
+    void testBulkLoadSurvivesConcurrentDeletes() {
+        // un chargement encode tout son fichier avant d'insérer ; entre-temps, des suppressions lancent
+        // une compaction qui libère des IDs que le chargement a déjà encodés
+        var bob = factory.createOrGetLiteral(S1);
+        var alice = factory.createOrGetLiteral(S2);
+        var knows = factory.createOrGetLiteral(P1);
+        var likes = factory.createOrGetLiteral(P2);
+        Dictionary dict = store.getDictionary();
+        for (int i = 0; i < 2000; i++) {
+            store.add(new RDFTriple(bob, knows, factory.createOrGetLiteral("churn" + i)));
+        }
+        store.freeze();
 
+        int[] ids = new int[3 * 2000];
+        for (int i = 0; i < 2000; i++) {
+            ids[3 * i] = dict.encode(alice);
+            ids[3 * i + 1] = dict.encode(likes);
+            ids[3 * i + 2] = dict.encode(factory.createOrGetLiteral("churn" + i));
+        }
+        int[] encoded = ids.clone();
+
+        for (int i = 0; i < 2000; i++) {
+            assertTrue(store.remove(new RDFTriple(bob, knows, factory.createOrGetLiteral("churn" + i))));
+        }
+        store.compactAsync().join();
+        System.out.println(dict.released() + " IDs libérés pendant le chargement");
+        assertTrue(dict.isReleased(ids[2]), "La compaction doit avoir libéré des IDs déjà encodés.");
+
+        long before = store.size();
+        assertEquals(2000, store.addAllEncoded(ids, ids.length), "Le chargement ne doit pas échouer.");
+        assertArrayEquals(encoded, ids, "Le tableau de l'appelant n'est pas modifié.");
+        assertEquals(before + 2000, store.size());
+        for (int i = 0; i < 2000; i += 97) {
+            assertTrue(store.match(new RDFTriple(alice, likes, factory.createOrGetLiteral("churn" + i))).hasNext());
+        }
+    }
+
+    @Test
+    void testDeltaChurnTriggersCompaction() throws InterruptedException {
+        // ajoutés puis supprimés sans passer par la partie figée : ils comptent pour la compaction automatique,
+        // qui libère ensuite leurs termes
+        var bob = factory.createOrGetLiteral(S1);
+        var knows = factory.createOrGetLiteral(P1);
+        Dictionary dict = store.getDictionary();
+        for (int i = 0; i < 1500; i++) {
+            RDFTriple t = new RDFTriple(bob, knows, factory.createOrGetLiteral("churn" + i));
+            assertTrue(store.add(t));
+            assertTrue(store.remove(t));
+        }
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (dict.released() < 1024 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        System.out.println(dict.released() + " IDs libérés");
+        assertTrue(dict.released() >= 1024, "Une compaction automatique doit avoir eu lieu.");
+        assertFalse(store.match(new RDFTriple(bob, knows, factory.createOrGetLiteral("churn7"))).hasNext());
+        assertTrue(store.add(new RDFTriple(bob, knows, factory.createOrGetLiteral("churn7"))));
+    }
+
+    @Test
+    void testPinnedVersionIgnoresLaterWrites() {
+        var bob = factory.createOrGetLiteral(S1);
+        var alice = factory.createOrGetLiteral(S2);
+        var knows = factory.createOrGetLiteral(P1);
+        var likes = factory.createOrGetLiteral(P2);
+        var pizza = factory.createOrGetLiteral(O2);
+        var x = factory.createOrGetVariable("?x");
+        var y = factory.createOrGetVariable("?y");
+
+        store.freeze();
+        RDFHexaStore.Version pinned = store.pin();
+        Set<RDFTriple> before = new HashSet<>(pinned.getAtoms());
+
+        store.add(new RDFTriple(alice, likes, pizza));
+        store.remove(new RDFTriple(bob, likes, pizza));
+        store.compact();   // nouveaux index, et l'ID de Pizza reste utilisé par Alice
+
+        assertEquals(3, pinned.size());
+        assertEquals(before, new HashSet<>(pinned.getAtoms()));
+        assertEquals(1, pinned.howMany(new RDFTriple(x, likes, y)));
+        assertTrue(pinned.match(new RDFTriple(bob, likes, pizza)).hasNext());
+        assertFalse(pinned.match(new RDFTriple(alice, likes, pizza)).hasNext());
+        assertThrows(UnsupportedOperationException.class, () -> pinned.add(new RDFTriple(bob, likes, alice)));
+
+        // le store, lui, voit les écritures
+        assertFalse(store.match(new RDFTriple(bob, likes, pizza)).hasNext());
+        assertTrue(store.match(new RDFTriple(alice, likes, pizza)).hasNext());
+        assertEquals(3, store.size());
+
+        // un terme libéré après la prise de version se décode toujours dans celle-ci
+        int pizzaId = store.getDictionary().encodeIfExists(pizza);
+        RDFHexaStore.Version beforeRelease = store.pin();
+        store.remove(new RDFTriple(alice, likes, pizza));
+        store.compact();
+        assertNull(store.getDictionary().decode(pizzaId), "Pizza n'est plus utilisé, son ID est libéré.");
+        Set<Substitution> liked = new HashSet<>();
+        beforeRelease.match(new RDFTriple(alice, likes, x)).forEachRemaining(liked::add);
+        SubstitutionImpl expected = new SubstitutionImpl();
+        expected.add(x, pizza);
+        assertEquals(Set.of(expected), liked);
+    }
+
+    @Test
+    void testConcurrentReadsDuringIngestion() throws Exception {
+        // un écrivain ajoute (en lots et un par un) et supprime pendant que des lecteurs interrogent :
+        // chaque version lue doit être cohérente (taille = nombre de triplets parcourus = somme par prédicat)
+        RDFHexaStore live = new RDFHexaStore();
+        List<Term> predicates = new ArrayList<>();
+        for (int i = 0; i < 4; i++) predicates.add(factory.createOrGetLiteral("cp" + i));
+        Random random = new Random(5);
+        List<RDFTriple> triples = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            triples.add(new RDFTriple(factory.createOrGetLiteral("cs" + random.nextInt(2000)),
+                    predicates.get(random.nextInt(predicates.size())), factory.createOrGetLiteral("co" + random.nextInt(3000))));
+        }
+        live.addAll(triples.subList(0, 5000));
+        live.freeze();
+
+        Thread writer = new Thread(() -> {
+            for (int from = 5000; from < triples.size(); from += 1000) {
+                live.addAll(triples.subList(from, from + 500));
+                for (int i = from + 500; i < from + 1000; i++) live.add(triples.get(i));
+                for (int i = from - 1000; i < from - 800; i++) live.remove(triples.get(i));
+                if (from % 5000 == 0) live.compact();
+            }
+        });
+
+        var s = factory.createOrGetVariable("?s");
+        var o = factory.createOrGetVariable("?o");
+        var p = factory.createOrGetVariable("?p");
+        List<Throwable> failures = new ArrayList<>();
+        List<Thread> readers = new ArrayList<>();
+        int[] checks = new int[1];
+        AtomicBoolean done = new AtomicBoolean(false);
+        for (int r = 0; r < 3; r++) {
+            readers.add(new Thread(() -> {
+                try {
+                    // au moins une version lue par lecteur, même si l'écrivain a déjà fini
+                    do {
+                        RDFHexaStore.Version v = live.pin();
+                        long scanned = 0;
+                        for (Iterator<Substitution> it = v.match(new RDFTriple(s, p, o)); it.hasNext(); it.next()) scanned++;
+                        long byPredicate = 0;
+                        for (Term predicate : predicates) byPredicate += v.howMany(new RDFTriple(s, predicate, o));
+                        assertEquals(v.size(), scanned, "Parcours incohérent avec la taille de la version");
+                        assertEquals(v.size(), byPredicate, "Compteurs incohérents avec la taille de la version");
+                        synchronized (checks) {
+                            checks[0]++;
+                        }
+                    } while (!done.get());
+                } catch (Throwable t) {
+                    synchronized (failures) {
+                        failures.add(t);
+                    }
+                }
+            }));
+        }
+        writer.start();
+        readers.forEach(Thread::start);
+        writer.join();
+        done.set(true);
+        for (Thread reader : readers) reader.join();
+
+        if (!failures.isEmpty()) throw new AssertionError(failures.get(0));
+        assertTrue(checks[0] >= readers.size(), "Chaque lecteur doit avoir vérifié au moins une version");
+        Set<RDFTriple> expected = new HashSet<>(triples);
+        for (int from = 5000; from < triples.size(); from += 1000) {
+            for (int i = from - 1000; i < from - 800; i++) expected.remove(triples.get(i));
+        }
+        assertEquals(expected, new HashSet<>(live.getAtoms()));
+        System.out.println(checks[0] + " versions vérifiées pendant l'ingestion");
+    }
 }
@@ -0,0 +1,131 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.logicalElements.factory.api.TermFactory;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import qengine.model.RDFTriple;
+import qengine.model.StarQuery;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour le store partitionné par sujet (ShardedRDFStorage).
+ * Les réponses sont comparées à celles d'un seul hexastore sur les mêmes données.
+ */
+public class ShardedRDFStorageTest {
+
+    private final TermFactory factory = SameObjectTermFactory.instance();
+    private ShardedRDFStorage store;
+    private RDFHexaStore hexa;
+    private List<Term> terms;
+
+    @BeforeEach
+    void setUp() {
+        store = new ShardedRDFStorage(4);
+        hexa = new RDFHexaStore();
+        terms = new ArrayList<>();
+        for (int i = 0; i < 30; i++) terms.add(factory.createOrGetLiteral("n" + i));
+
+        // une moitié triplet par triplet, l'autre en bloc
+        Random random = new Random(9);
+        List<RDFTriple> bulk = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            RDFTriple t = new RDFTriple(terms.get(random.nextInt(30)), terms.get(random.nextInt(4)), terms.get(random.nextInt(30)));
+            if (i < 300) {
+                assertEquals(hexa.add(t), store.add(t), "Les doublons doivent être détectés de la même façon : " + t);
+            } else {
+                bulk.add(t);
+            }
+        }
+        hexa.addAll(bulk);
+        store.addAll(bulk);
+        store.freeze();
+    }
+
+    @Test
+    void testTriplesArePartitionedBySubject() {
+        assertEquals(hexa.size(), store.size());
+        assertEquals(new HashSet<>(hexa.getAtoms()), new HashSet<>(store.getAtoms()));
+
+        long total = 0;
+        for (int i = 0; i < store.shardCount(); i++) {
+            for (RDFTriple t : store.shard(i).getAtoms()) {
+                assertEquals(i, ShardedRDFStorage.shardOf(t.getTripleSubject(), store.shardCount()),
+                        "Triplet dans la mauvaise partition : " + t);
+            }
+            System.out.println("Partition " + i + " : " + store.shard(i).size() + " triplets");
+            total += store.shard(i).size();
+        }
+        assertEquals(store.size(), total);
+    }
+
+    @Test
+    void testMatchAndHowManyLikeHexaStore() {
+        Variable x = factory.createOrGetVariable("?x");
+        Variable y = factory.createOrGetVariable("?y");
+        Variable z = factory.createOrGetVariable("?z");
+        Term a = terms.get(1), b = terms.get(2), c = terms.get(3);
+        List<RDFTriple> patterns = List.of(
+                new RDFTriple(a, b, c), new RDFTriple(a, b, z), new RDFTriple(x, b, c), new RDFTriple(a, y, c),
+                new RDFTriple(a, y, z), new RDFTriple(x, b, z), new RDFTriple(x, y, c), new RDFTriple(x, y, z),
+                new RDFTriple(x, b, x), new RDFTriple(x, factory.createOrGetLiteral("inconnu"), z));
+
+        for (RDFTriple pattern : patterns) {
+            Set<Substitution> expected = new HashSet<>();
+            hexa.match(pattern).forEachRemaining(expected::add);
+            List<Substitution> actual = new ArrayList<>();
+            store.match(pattern).forEachRemaining(actual::add);
+            assertEquals(expected.size(), actual.size(), "Réponses en double ou manquantes pour " + pattern);
+            assertEquals(expected, new HashSet<>(actual), "Réponses différentes pour " + pattern);
+            assertEquals(hexa.howMany(pattern), store.howMany(pattern), "howMany différent pour " + pattern);
+        }
+    }
+
+    @Test
+    void testMatchStarQueryLikeHexaStore() {
+        Variable x = factory.createOrGetVariable("?x");
+        Variable y = factory.createOrGetVariable("?y");
+        Term p0 = terms.get(0), p1 = terms.get(1), p2 = terms.get(2), p3 = terms.get(3);
+        Term a = terms.get(4), b = terms.get(7);
+        List<StarQuery> queries = List.of(
+                new StarQuery("constantes", List.of(new RDFTriple(x, p0, a), new RDFTriple(x, p1, b)), Set.of(x)),
+                new StarQuery("variables", List.of(new RDFTriple(x, p2, y), new RDFTriple(x, p3, factory.createOrGetVariable("?z"))), Set.of(x)),
+                new StarQuery("mixte", List.of(new RDFTriple(x, p0, y), new RDFTriple(x, p0, a), new RDFTriple(x, p1, y)), Set.of(x)),
+                // variable centrale en objet : diffusée à toutes les partitions
+                new StarQuery("objet", List.of(new RDFTriple(a, p0, x), new RDFTriple(y, p2, x)), Set.of(x)),
+                new StarQuery("sujet et objet", List.of(new RDFTriple(x, p0, a), new RDFTriple(b, p1, x)), Set.of(x)),
+                new StarQuery("inconnu", List.of(new RDFTriple(x, p0, factory.createOrGetLiteral("inconnu"))), Set.of(x)));
+
+        for (StarQuery q : queries) {
+            Set<Substitution> expected = new HashSet<>();
+            hexa.match(q).forEachRemaining(expected::add);
+            List<Substitution> actual = new ArrayList<>();
+            store.match(q).forEachRemaining(actual::add);
+            System.out.println(q.getLabel() + " -> " + actual);
+            assertEquals(expected.size(), actual.size(), "Réponses en double ou manquantes pour la requête " + q.getLabel());
+            assertEquals(expected, new HashSet<>(actual), "Réponses différentes pour la requête " + q.getLabel());
+        }
+    }
+
+    @Test
+    void testRemove() {
+        RDFTriple t = hexa.getAtoms().iterator().next();
+        assertTrue(store.remove(t));
+        assertFalse(store.remove(t), "Un triplet absent ne se retire pas deux fois");
+        hexa.remove(t);
+
+        assertEquals(hexa.size(), store.size());
+        assertFalse(store.match(t).hasNext());
+        assertEquals(new HashSet<>(hexa.getAtoms()), new HashSet<>(store.getAtoms()));
+    }
+}
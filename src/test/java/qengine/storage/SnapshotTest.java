@@ -0,0 +1,104 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.logicalElements.factory.api.TermFactory;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import qengine.model.RDFTriple;
+import qengine.model.StarQuery;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour l'instantané sur disque de l'hexastore.
+ */
+class SnapshotTest {
+
+    private final TermFactory factory = SameObjectTermFactory.instance();
+    private RDFHexaStore store;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        store = new RDFHexaStore();
+        Random random = new Random(11);
+        for (int i = 0; i < 2000; i++) {
+            store.add(new RDFTriple(factory.createOrGetLiteral("http://example.org/s" + random.nextInt(300)),
+                    factory.createOrGetLiteral("http://example.org/p" + random.nextInt(8)),
+                    factory.createOrGetLiteral("valeur é" + random.nextInt(500))));
+        }
+        file = Files.createTempFile("hexastore", ".snap");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void testOpenGivesSameStore() throws IOException {
+        store.save(file);
+        RDFHexaStore opened = RDFHexaStore.open(file);
+
+        assertEquals(store.size(), opened.size(), "Même nombre de triplets après réouverture.");
+        assertEquals(new HashSet<>(store.getAtoms()), new HashSet<>(opened.getAtoms()), "Mêmes triplets après réouverture.");
+        for (int id = 1; id <= store.getDictionary().size(); id++) {
+            assertEquals(store.getDictionary().decode(id), opened.getDictionary().decode(id), "Même terme pour l'ID " + id);
+        }
+
+        Variable x = factory.createOrGetVariable("?x");
+        Variable y = factory.createOrGetVariable("?y");
+        Term p1 = factory.createOrGetLiteral("http://example.org/p1");
+        Term p2 = factory.createOrGetLiteral("http://example.org/p2");
+        RDFTriple pattern = new RDFTriple(x, p1, y);
+        assertEquals(store.howMany(pattern), opened.howMany(pattern));
+        assertEquals(answers(store.match(pattern)), answers(opened.match(pattern)));
+
+        StarQuery q = new StarQuery("étoile", List.of(new RDFTriple(x, p1, y), new RDFTriple(x, p2, y)), Set.of(x));
+        assertEquals(answers(store.match(q)), answers(opened.match(q)), "Même réponse à la requête en étoile.");
+    }
+
+    @Test
+    void testAddAfterOpen() throws IOException {
+        store.save(file);
+        RDFHexaStore opened = RDFHexaStore.open(file);
+
+        RDFTriple existing = opened.getAtoms().iterator().next();
+        assertFalse(opened.add(existing), "Un triplet de l'instantané est un doublon.");
+
+        RDFTriple fresh = new RDFTriple(factory.createOrGetLiteral("nouveau"), existing.getTriplePredicate(), existing.getTripleObject());
+        assertTrue(opened.add(fresh));
+        assertEquals(store.size() + 1, opened.size());
+
+        // fusion du delta avec les index projetés, puis nouvel instantané à la même place
+        opened.save(file);
+        RDFHexaStore reopened = RDFHexaStore.open(file);
+        assertEquals(store.size() + 1, reopened.size());
+        assertEquals(1, reopened.howMany(fresh));
+    }
+
+    @Test
+    void testRejectsOtherFiles() throws IOException {
+        Files.writeString(file, "<a> <b> <c> .\n");
+        assertThrows(IOException.class, () -> RDFHexaStore.open(file), "Un fichier quelconque doit être refusé.");
+    }
+
+    private static Set<Substitution> answers(Iterator<Substitution> it) {
+        Set<Substitution> set = new HashSet<>();
+        it.forEachRemaining(set::add);
+        return set;
+    }
+}
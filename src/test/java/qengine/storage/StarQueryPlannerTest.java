@@ -0,0 +1,65 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.api.Variable;
+import fr.boreal.model.logicalElements.factory.api.TermFactory;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
+import org.junit.jupiter.api.Test;
+import qengine.model.RDFTriple;
+import qengine.model.StarQuery;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour StarQueryPlanner.
+ */
+public class StarQueryPlannerTest {
+
+    private final TermFactory factory = SameObjectTermFactory.instance();
+
+    @Test
+    void testOrderByEstimatedCardinality() {
+        Variable x = factory.createOrGetVariable("?x");
+        RDFTriple typeUser = new RDFTriple(x, factory.createOrGetLiteral("type"), factory.createOrGetLiteral("User"));
+        RDFTriple likes = new RDFTriple(x, factory.createOrGetLiteral("likes"), factory.createOrGetLiteral("Product0"));
+        RDFTriple gender = new RDFTriple(x, factory.createOrGetLiteral("gender"), factory.createOrGetLiteral("Gender1"));
+        RDFTriple nationality = new RDFTriple(x, factory.createOrGetLiteral("nationality"), factory.createOrGetLiteral("Country3"));
+
+        Map<RDFTriple, Long> stats = Map.of(typeUser, 100_000L, likes, 12L, gender, 50_000L, nationality, 12L);
+        List<RDFTriple> ordered = StarQueryPlanner.order(List.of(typeUser, likes, gender, nationality), stats::get);
+
+        System.out.println("Plan : " + ordered);
+        // à égalité (likes / nationality), l'ordre de la requête est conservé
+        assertEquals(List.of(likes, nationality, gender, typeUser), ordered);
+    }
+
+    @Test
+    void testOrderDoesNotChangeAnswers() {
+        GiantTable store = new GiantTable();
+        Term type = factory.createOrGetLiteral("type");
+        Term user = factory.createOrGetLiteral("User");
+        Term likes = factory.createOrGetLiteral("likes");
+        Term pizza = factory.createOrGetLiteral("Pizza");
+        for (int i = 0; i < 20; i++) {
+            store.add(new RDFTriple(factory.createOrGetLiteral("u" + i), type, user));
+        }
+        store.add(new RDFTriple(factory.createOrGetLiteral("u3"), likes, pizza));
+        store.add(new RDFTriple(factory.createOrGetLiteral("u7"), likes, pizza));
+
+        // le patron peu sélectif est écrit en premier : le planificateur doit le passer en filtre
+        Variable x = factory.createOrGetVariable("?x");
+        RDFTriple typeUser = new RDFTriple(x, type, user);
+        RDFTriple likesPizza = new RDFTriple(x, likes, pizza);
+        StarQuery q = new StarQuery("Q", List.of(typeUser, likesPizza), Set.of(x));
+        assertEquals(List.of(likesPizza, typeUser), StarQueryPlanner.order(q.getRdfAtoms(), store::howMany),
+                "Le patron le plus sélectif doit passer en premier");
+
+        Set<Term> answers = new HashSet<>();
+        Iterator<Substitution> it = store.match(q);
+        it.forEachRemaining(sub -> answers.add(sub.toMap().get(x)));
+        assertEquals(Set.of(factory.createOrGetLiteral("u3"), factory.createOrGetLiteral("u7")), answers);
+    }
+}
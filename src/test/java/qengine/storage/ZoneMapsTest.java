@@ -0,0 +1,60 @@
+package qengine.storage;
+
+import fr.boreal.model.logicalElements.api.Substitution;
+import fr.boreal.model.logicalElements.api.Term;
+import fr.boreal.model.logicalElements.factory.api.TermFactory;
+import fr.boreal.model.logicalElements.factory.impl.SameObjectTermFactory;
+import org.junit.jupiter.api.Test;
+import qengine.model.RDFTriple;
+
+import java.util.Iterator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ZoneMapsTest {
+
+    @Test
+    void testBoundsPerBlock() {
+        System.out.println("testBoundsPerBlock");
+
+        // blocs de 4 lignes, sujets triés : 1..4, 5..8, 9..10
+        ZoneMaps zones = new ZoneMaps(4);
+        for (int row = 0; row < 10; row++) {
+            zones.add(row, row + 1, 100 + row % 2, 50 - row);
+        }
+        assertEquals(3, zones.blocks());
+
+        assertTrue(zones.mayContain(0, 3, ColumnScan.ANY, ColumnScan.ANY));
+        assertFalse(zones.mayContain(1, 3, ColumnScan.ANY, ColumnScan.ANY), "Le sujet 3 n'est que dans le premier bloc.");
+        assertFalse(zones.mayContain(2, 3, ColumnScan.ANY, ColumnScan.ANY));
+
+        assertTrue(zones.mayContain(2, ColumnScan.ANY, 101, 41));
+        assertFalse(zones.mayContain(2, ColumnScan.ANY, 102, ColumnScan.ANY), "Prédicat hors des bornes.");
+        assertFalse(zones.mayContain(0, ColumnScan.ANY, ColumnScan.ANY, 41), "Objet hors des bornes.");
+        assertTrue(zones.mayContain(1, ColumnScan.ANY, ColumnScan.ANY, ColumnScan.ANY), "Sans constante, tout bloc peut répondre.");
+    }
+
+    @Test
+    void testPruningKeepsAllAnswers() {
+        System.out.println("testPruningKeepsAllAnswers");
+
+        // table triée par sujet sur plusieurs blocs : chaque sujet a 5 triplets
+        TermFactory factory = SameObjectTermFactory.instance();
+        GiantTable table = new GiantTable();
+        for (int i = 0; i < 3 * GiantTable.BLOCK_SIZE; i++) {
+            table.add(new RDFTriple(factory.createOrGetLiteral("s" + i / 5),
+                    factory.createOrGetLiteral("p" + i % 5), factory.createOrGetLiteral("o" + i)));
+        }
+        Term x = factory.createOrGetVariable("?x");
+        Term y = factory.createOrGetVariable("?y");
+
+        // s204 est à cheval sur les blocs 0 et 1 (lignes 1020 à 1024)
+        for (String subject : new String[]{"s0", "s204", "s613"}) {
+            RDFTriple pattern = new RDFTriple(factory.createOrGetLiteral(subject), x, y);
+            assertEquals(5, table.howMany(pattern), "Réponses manquantes pour " + subject);
+            int n = 0;
+            for (Iterator<Substitution> it = table.match(pattern); it.hasNext(); it.next()) n++;
+            assertEquals(5, n, "Réponses manquantes pour " + subject);
+        }
+    }
+}